@@ -0,0 +1,23 @@
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class Bench {
+	/**
+	 * Run the benchmarks with the allocation profiler, i.e. the same as the
+	 * JMH command line with "-prof gc", e.g. "Bench ExploreBenchmark -p
+	 * power=1" for some of them. The benchmarks read the influence matrices
+	 * in inf/, so they should run from the root of the project.
+	 * 
+	 * @param args
+	 *            the options of the JMH command line
+	 * @throws Exception
+	 *             if the options are invalid or a benchmark fails
+	 */
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions options = new CommandLineOptions(args);
+		new Runner(new OptionsBuilder().parent(options)
+				.addProfiler(GCProfiler.class).build()).run();
+	}
+}
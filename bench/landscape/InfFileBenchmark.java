@@ -0,0 +1,67 @@
+package landscape;
+
+import util.ConfigReader;
+import util.RandomGen;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InfFileBenchmark {
+	@Param({ "inf/n4k3.txt", "inf/n16k0.txt", "inf/n16k3.txt",
+			"inf/n16k15.txt", "inf/n20k19.txt" })
+	private String infFile;
+
+	private InfluenceMatrix myInf;
+	private FitnessContributionTable myFit;
+
+	/**
+	 * Read the influence matrix of the file, relative to the directory the
+	 * benchmarks run in, and generate its fitness contribution table of 1
+	 * shock.
+	 */
+	@Setup
+	public void setUp() {
+		this.myInf = ConfigReader.readInf(this.infFile);
+		RandomGen.setSeed(0);
+		this.myFit = new FitnessContributionTable(this.myInf, 0.5, 1);
+	}
+
+	/**
+	 * Measure the construction of the final landscape of shock 0 of the
+	 * influence matrix of the file.
+	 * 
+	 * @return the landscape
+	 */
+	@Benchmark
+	public Landscape constructLandscape() {
+		return new Landscape(this.myInf, 0.5, 0, this.myInf.getN(), this.myFit);
+	}
+
+	/**
+	 * Measure the construction of the fitness contribution table of 1 shock
+	 * of the influence matrix of the file.
+	 * 
+	 * @return the fitness contribution table
+	 */
+	@Benchmark
+	public FitnessContributionTable constructContributionTable() {
+		return new FitnessContributionTable(this.myInf, 0.5, 1);
+	}
+}
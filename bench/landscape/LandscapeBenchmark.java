@@ -0,0 +1,66 @@
+package landscape;
+
+import util.RandomGen;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LandscapeBenchmark {
+	@Param({ "8", "12", "16", "20" })
+	private int n;
+	@Param({ "0", "3", "7" })
+	private int k;
+
+	private InfluenceMatrix myInf;
+	private FitnessContributionTable myFit;
+
+	/**
+	 * Generate the influence matrix of N and K, and the fitness contribution
+	 * table of 1 shock, whose construction is not measured.
+	 */
+	@Setup
+	public void setUp() {
+		this.myInf = new InfluenceMatrix(this.n, this.k);
+		RandomGen.setSeed(0);
+		this.myFit = new FitnessContributionTable(this.myInf, 0.5, 1);
+	}
+
+	/**
+	 * Measure the construction of the final landscape of shock 0, i.e. 2^N
+	 * fitness values.
+	 * 
+	 * @return the landscape
+	 */
+	@Benchmark
+	public Landscape constructLandscape() {
+		return new Landscape(this.myInf, 0.5, 0, this.n, this.myFit);
+	}
+
+	/**
+	 * Measure the construction of the fitness contribution table of 1 shock,
+	 * i.e. 2 layers of N x 2^(K+1) contributions.
+	 * 
+	 * @return the fitness contribution table
+	 */
+	@Benchmark
+	public FitnessContributionTable constructContributionTable() {
+		return new FitnessContributionTable(this.myInf, 0.5, 1);
+	}
+}
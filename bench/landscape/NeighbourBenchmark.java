@@ -0,0 +1,81 @@
+package landscape;
+
+import util.RandomGen;
+
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NeighbourBenchmark {
+	/**
+	 * the number of changeable elements, i.e. the size of the mask
+	 */
+	@Param({ "2", "4", "8", "12" })
+	private int elementNum;
+	@Param({ "1", "2", "3" })
+	private int power;
+
+	private Landscape myLandscape;
+	private HashSet<Integer> myElements;
+	private int myLocId;
+	private int myLocIdMask;
+
+	/**
+	 * Generate a landscape of N = 16 and K = 3, and take the first elements
+	 * as the changeable elements.
+	 */
+	@Setup
+	public void setUp() {
+		InfluenceMatrix inf = new InfluenceMatrix(16, 3);
+		RandomGen.setSeed(0);
+		FitnessContributionTable fit = new FitnessContributionTable(inf, 0.5,
+				0);
+		this.myLandscape = new Landscape(inf, 0.5, 0, 16, fit);
+		this.myElements = new HashSet<Integer>();
+		for (int i = 0; i < this.elementNum; i++) {
+			this.myElements.add(i);
+		}
+		this.myLocId = 0x5a5a;
+		this.myLocIdMask = 0xa5a5;
+	}
+
+	/**
+	 * Measure the neighbours within the processing power over the changeable
+	 * elements.
+	 * 
+	 * @return the set of neighbours
+	 */
+	@Benchmark
+	public HashSet<Integer> getNeighboursInclusive() {
+		return this.myLandscape.getNeighboursInclusive(this.myLocId,
+				this.myElements, this.power);
+	}
+
+	/**
+	 * Measure copying the changeable elements from a mask location.
+	 * 
+	 * @return the changed location id
+	 */
+	@Benchmark
+	public int changeElements() {
+		return this.myLandscape.changeElements(this.myLocId, this.myLocIdMask,
+				this.myElements);
+	}
+}
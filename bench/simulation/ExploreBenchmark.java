@@ -0,0 +1,118 @@
+package simulation;
+
+import agent.Agent;
+import landscape.InfluenceMatrix;
+import util.ConfigReader;
+import util.OutputListener;
+import util.OutputWriter;
+import util.RandomGen;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExploreBenchmark {
+	@Param({ "inf/n16k3.txt", "inf/n16k15.txt" })
+	private String infFile;
+	/**
+	 * the exploration strategy, i.e. which explore method of the simulator is
+	 * measured
+	 */
+	@Param({ "random", "exhaustive", "randomAveraging",
+			"exhaustiveAveraging", "steepest" })
+	private String strategy;
+	@Param({ "1", "2" })
+	private int power;
+
+	private Simulator mySimulator;
+	private Agent myAgent;
+	private int myLocId;
+	private int myLocIdNum;
+
+	/**
+	 * Generate the landscapes of a case of the influence matrix of the file,
+	 * with 1 shock and 1 agent of the strategy whose plan implements the
+	 * first and the second half of the elements in 2 iterations. The output
+	 * of the simulator is discarded.
+	 */
+	@Setup
+	public void setUp() {
+		InfluenceMatrix inf = ConfigReader.readInf(this.infFile);
+		int n = inf.getN();
+		ArrayList<HashSet<Integer>> plan = new ArrayList<HashSet<Integer>>();
+		for (int i = 0; i < 2; i++) {
+			HashSet<Integer> iteration = new HashSet<Integer>();
+			for (int j = i * n / 2; j < (i + 1) * n / 2; j++) {
+				iteration.add(j);
+			}
+			plan.add(iteration);
+		}
+		this.myAgent = new Agent(inf, plan, this.power, "bench", 1,
+				this.strategy.equals("random")
+						|| this.strategy.equals("randomAveraging") ? 0.5 : 1,
+				this.strategy.endsWith("Averaging"),
+				this.strategy.startsWith("exhaustive"), false,
+				this.strategy.equals("steepest"));
+		ArrayList<Agent> agents = new ArrayList<Agent>();
+		agents.add(this.myAgent);
+		TreeSet<Integer> tauList = new TreeSet<Integer>();
+		tauList.add(100000);
+		Case c = new Case(1, inf, 0.5, 0.5, tauList, agents, "full", false,
+				false, "uniform", null, new ArrayList<PlanRace>());
+		OutputWriter.listen(new OutputListener() {
+			@Override
+			public void begin(String fileName) {
+			}
+
+			@Override
+			public void line(String line) {
+			}
+		});
+		RandomGen.setSeed(0);
+		this.mySimulator = new Simulator(c, agents);
+		this.myLocId = 0;
+		this.myLocIdNum = 1 << n;
+	}
+
+	/**
+	 * Stop discarding the output of the benchmark thread.
+	 */
+	@TearDown
+	public void tearDown() {
+		OutputWriter.listen(null);
+		Simulator.releaseContributionTable();
+	}
+
+	/**
+	 * Measure the first iteration of the agent from the next start location.
+	 * 
+	 * @return the location of the agent after the iteration
+	 */
+	@Benchmark
+	public int exploreIteration() {
+		this.myLocId = (this.myLocId + 0x9e37) % this.myLocIdNum;
+		this.mySimulator.startAgent(this.myAgent, this.myLocId);
+		this.mySimulator.exploreIteration();
+		return this.myAgent.getLocId();
+	}
+}
@@ -0,0 +1,101 @@
+package util;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OutputWriterBenchmark {
+	/**
+	 * the lines written for each unit, i.e. from setOutputFile to close
+	 */
+	private static final int LINES = 1000;
+
+	/**
+	 * where the output goes: "file" for a file, "buffer" for a captured
+	 * output buffer and "listener" for an output listener
+	 */
+	@Param({ "file", "buffer", "listener" })
+	private String target;
+
+	private File myFile;
+	private String myLine;
+
+	/**
+	 * Create a temporary output file, and direct the output of the benchmark
+	 * thread to the target.
+	 * 
+	 * @throws Exception
+	 *             if the temporary file can not be created
+	 */
+	@Setup
+	public void setUp() throws Exception {
+		this.myFile = File.createTempFile("bench_", ".txt");
+		this.myLine = "12\t3\t45\t1\t2\t0.6543210987654321\t0.8123456789012345\t0.2123456789012345";
+		if (this.target.equals("listener")) {
+			OutputWriter.listen(new OutputListener() {
+				@Override
+				public void begin(String fileName) {
+				}
+
+				@Override
+				public void line(String line) {
+				}
+			});
+		}
+	}
+
+	/**
+	 * Empty the output file between the iterations, so that it does not grow
+	 * without bound.
+	 */
+	@Setup(Level.Iteration)
+	public void truncate() {
+		this.myFile.delete();
+	}
+
+	/**
+	 * Stop directing the output and remove the output file.
+	 */
+	@TearDown
+	public void tearDown() {
+		OutputWriter.listen(null);
+		OutputWriter.capture(null);
+		this.myFile.delete();
+	}
+
+	/**
+	 * Measure the lines per second of one unit of output.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(LINES)
+	public void writeLines() {
+		if (this.target.equals("buffer")) {
+			OutputWriter.capture(new OutputBuffer());
+		}
+		OutputWriter.setOutputFile(this.myFile.getPath());
+		for (int i = 0; i < LINES; i++) {
+			OutputWriter.writeLine(this.myLine);
+		}
+		OutputWriter.close();
+	}
+}
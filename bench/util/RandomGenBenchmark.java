@@ -0,0 +1,40 @@
+package util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RandomGenBenchmark {
+	/**
+	 * the run number, which is the number of draws before the actual seed
+	 */
+	@Param({ "0", "1000", "100000", "1000000" })
+	private int seed;
+
+	/**
+	 * Measure setting the seed of the run, i.e. drawing the actual seed and
+	 * seeding the global random generator.
+	 * 
+	 * @return the global random generator
+	 */
+	@Benchmark
+	public Object setSeed() {
+		RandomGen.setSeed(this.seed);
+		return RandomGen.getRandomGen();
+	}
+}
@@ -1,25 +1,84 @@
+import simulation.CapacityPlanner;
 import simulation.Case;
-import simulation.Simulator;
+import simulation.CasePlanner;
+import simulation.Coordinator;
+import simulation.Daemon;
+import simulation.ScalingBenchmark;
+import simulation.Worker;
 import util.ConfigReader;
-import util.RandomGen;
 
-import java.util.ArrayList;
+import java.util.Iterator;
 
 public class Main {
 	public static void main(String[] args) {
+		if (args.length == 2 && args[0].equals("--plan")) {
+			// estimate the memory, output and time of the cases without
+			// running them, and without applying the journal
+			Iterator<Case> cases = ConfigReader.stream(args[1], false);
+			CapacityPlanner planner = new CapacityPlanner();
+			while (cases.hasNext()) {
+				planner.add(cases.next());
+			}
+			planner.finish();
+			return;
+		}
+		if ((args.length == 1 || args.length == 2) && args[0].equals("--daemon")) {
+			// stay resident and run the config files given on the standard
+			// input, or on a local port, one after another
+			if (args.length == 1) {
+				Daemon.run();
+			} else {
+				Daemon.listen(Integer.parseInt(args[1]));
+			}
+			return;
+		}
+		if ((args.length == 2 || args.length == 3)
+				&& args[0].equals("--benchmark")) {
+			// measure a grid of generated cases, and compare with a baseline
+			ScalingBenchmark benchmark = new ScalingBenchmark();
+			if (!benchmark.checkTableReuse()) {
+				System.exit(1);
+			}
+			benchmark.run(args[1]);
+			if (args.length == 3 && !benchmark.compareWith(args[2])) {
+				System.exit(1);
+			}
+			return;
+		}
+		if (args.length == 2 && args[0].equals("--worker")) {
+			// run the units of work of a coordinator at host:port
+			Worker.run(args[1]);
+			return;
+		}
+		if ((args.length == 3 || args.length == 4)
+				&& args[0].equals("--coordinator")) {
+			// hand the runs to worker processes, each with a heap of its own,
+			// optionally of the given megabytes
+			String configPath = args[args.length - 1];
+			int workerHeap = (args.length == 4 ? Integer.parseInt(args[2]) : 0);
+			Coordinator coordinator = new Coordinator(configPath,
+					Integer.parseInt(args[1]), workerHeap);
+			Iterator<Case> cases = ConfigReader.stream(configPath);
+			CasePlanner planner = new CasePlanner(coordinator);
+			while (cases.hasNext()) {
+				planner.add(cases.next());
+			}
+			planner.finish();
+			coordinator.close();
+			return;
+		}
 		if(args.length != 1){
-			System.out.println("ERROR : invalid input, please input one xml config file");
+			System.out.println("ERROR : invalid input, please input one xml config file, or --plan and one xml config file, or --coordinator, the number of workers, optionally the worker heap in MB and one xml config file, or --worker and host:port, or --daemon and optionally a port, or --benchmark, a result csv file and optionally a baseline csv file");
 			System.exit(1);
 		}
-		ArrayList<Case> cases = ConfigReader.read(args[0]);
-		for (Case c : cases) {
-			for (int i = 0; i < c.getRuns(); i++) {
-				RandomGen.setSeed(i);
-				Simulator s = new Simulator(c.getInf(), c.getAgentList(),
-						c.getBias(), c.getDelta(), c.getTauList());
-				s.startSimulation();
-			}
+		// the cases are parsed and expanded one by one, and the consecutive
+		// cases of the same environment share their landscapes
+		Iterator<Case> cases = ConfigReader.stream(args[0]);
+		CasePlanner planner = new CasePlanner();
+		while (cases.hasNext()) {
+			planner.add(cases.next());
 		}
+		planner.finish();
 	}
 
 }
@@ -1,5 +1,6 @@
 package agent;
 
+import util.ConfigReader;
 import util.RandomGen;
 import landscape.InfluenceMatrix;
 
@@ -22,6 +23,8 @@ public class Agent {
 	private double myContraint;
 	private boolean myIsAveraging;
 	private boolean myIsExhaustive;
+	private boolean myIsPopulation;
+	private boolean myIsSteepest;
 
 	// private boolean myIsRefactoringAll;
 
@@ -52,11 +55,17 @@ public class Agent {
 	 *            a boolean, which indicates if the agent uses averaging scores
 	 * @param isExhaustive
 	 *            a boolean, which indicates if the agent uses exhaustive search
+	 * @param isPopulation
+	 *            a boolean, which indicates if all the agents of this type are
+	 *            simulated together by a population engine
+	 * @param isSteepest
+	 *            a boolean, which indicates if the agent uses deterministic
+	 *            steepest ascent instead of random or exhaustive search
 	 */
 	public Agent(InfluenceMatrix inf,
 			ArrayList<HashSet<Integer>> iterationPlan, int processingPower,
 			String type, int totalNum, double constraint, boolean isAveraging,
-			boolean isExhaustive
+			boolean isExhaustive, boolean isPopulation, boolean isSteepest
 	/*
 	 * , boolean isRefactoringAll
 	 */) {
@@ -82,30 +91,22 @@ public class Agent {
 			}
 		}
 		if (!missingSet.isEmpty()) {
-			System.out
-					.println("ERROR invalid iteration plan : missing element(s) "
-							+ missingSet.toString());
-			System.exit(1);
+			ConfigReader.fail("ERROR invalid iteration plan : missing element(s) "
+					+ missingSet.toString());
 		}
 		// check for valid processing power
 		if (processingPower <= 0) {
-			System.out
-					.println("ERROR processing power should be positive, given "
-							+ processingPower);
-			System.exit(1);
+			ConfigReader.fail("ERROR processing power should be positive, given "
+					+ processingPower);
 		}
 		// check for valid constraint
 		if (constraint <= 0) {
-			System.out
-					.println("ERROR constraint value should be positive, given "
-							+ constraint);
-			System.exit(1);
+			ConfigReader.fail("ERROR constraint value should be positive, given "
+					+ constraint);
 		}
 		if (constraint > 1) {
-			System.out
-					.println("ERROR constraint value should be less than 1, given "
-							+ constraint);
-			System.exit(1);
+			ConfigReader.fail("ERROR constraint value should be less than 1, given "
+					+ constraint);
 		}
 		// assign private fields
 		this.myType = type;
@@ -126,9 +127,28 @@ public class Agent {
 		this.myContraint = constraint;
 		this.myIsAveraging = isAveraging;
 		this.myIsExhaustive = isExhaustive;
+		this.myIsPopulation = isPopulation;
+		this.myIsSteepest = isSteepest;
 		// this.myIsRefactoringAll = isRefactoringAll;
 	}
 
+	/**
+	 * Create a new agent object with the same settings as the given agent,
+	 * i.e. its type name, number of agents, iteration plan, processing power,
+	 * constraint and search options, but a state of its own, so that the two
+	 * agents can be simulated at the same time. The iteration plan is shared,
+	 * since it is not changed.
+	 * 
+	 * @param agent
+	 *            the original agent object
+	 */
+	public Agent(Agent agent) {
+		this(agent.myInf, agent.myIterationPlan, agent.myProcessingPower,
+				agent.myType, agent.myTotalNum, agent.myContraint,
+				agent.myIsAveraging, agent.myIsExhaustive, agent.myIsPopulation,
+				agent.myIsSteepest);
+	}
+
 	/**
 	 * Return the agent's type name.
 	 * 
@@ -201,6 +221,57 @@ public class Agent {
 		return this.myIsExhaustive;
 	}
 
+	/**
+	 * Return if all the agents of this type are simulated together by a
+	 * population engine
+	 * 
+	 * @return if all the agents of this type are simulated together by a
+	 *         population engine
+	 */
+	public boolean isPopulation() {
+		return this.myIsPopulation;
+	}
+
+	/**
+	 * Return if the agent uses deterministic steepest ascent
+	 * 
+	 * @return if the agent uses deterministic steepest ascent
+	 */
+	public boolean isSteepest() {
+		return this.myIsSteepest;
+	}
+
+	/**
+	 * Return the total number of agents with the same type.
+	 * 
+	 * @return the total number of agents with the same type
+	 */
+	public int getTotalNum() {
+		return this.myTotalNum;
+	}
+
+	/**
+	 * Return a copy of the iteration plan.
+	 * 
+	 * @return a copy of the iteration plan
+	 */
+	public ArrayList<HashSet<Integer>> getIterationPlan() {
+		ArrayList<HashSet<Integer>> result = new ArrayList<HashSet<Integer>>();
+		for (HashSet<Integer> iteration : this.myIterationPlan) {
+			result.add(new HashSet<Integer>(iteration));
+		}
+		return result;
+	}
+
+	/**
+	 * Return the influence matrix object.
+	 * 
+	 * @return the influence matrix object
+	 */
+	public InfluenceMatrix getInf() {
+		return this.myInf;
+	}
+
 	/**
 	 * Return true if all iterations are implemented already.
 	 * 
@@ -276,7 +347,7 @@ public class Agent {
 	 */
 	public void nextAgent() {
 		this.myNum++;
-		this.myLocId = RandomGen.randomGen.nextInt(1 << this.myInf.getN());
+		this.myLocId = RandomGen.getRandomGen().nextInt(1 << this.myInf.getN());
 		this.myCurrentIterationNum = 0;
 		this.myImplementedElements.clear();
 		this.myUnimplementedElements.clear();
@@ -292,7 +363,7 @@ public class Agent {
 	 */
 	public void reset() {
 		this.myNum = 0;
-		this.myLocId = RandomGen.randomGen.nextInt(1 << this.myInf.getN());
+		this.myLocId = RandomGen.getRandomGen().nextInt(1 << this.myInf.getN());
 		this.myCurrentIterationNum = 0;
 		this.myImplementedElements.clear();
 		this.myUnimplementedElements.clear();
@@ -0,0 +1,207 @@
+package landscape;
+
+public class CompiledInfluenceMatrix {
+	private int myN;
+	private int myK;
+	/**
+	 * for each element, the bits of its dependent elements in a location id
+	 */
+	private int myDependencyMasks[];
+	/**
+	 * for each element, the bits of the elements whose fitness contributions
+	 * depend on it in a location id, including itself
+	 */
+	private int myDependantMasks[];
+	/**
+	 * for each element, a gather table which extracts its position in one
+	 * layer of the fitness contribution table from a location id
+	 */
+	private int myGatherTables[][];
+
+	/**
+	 * Precompute, for each element, the bits of its dependent elements in a
+	 * location id and a gather table, so that the element's index in the
+	 * fitness contribution table can be extracted directly from a location id
+	 * without converting it to a configuration.
+	 * 
+	 * The element with index i is the (N-1-i)th bit of a location id, and the
+	 * dependent elements are ordered in an increasing manner, therefore the
+	 * combination of dependent elements (dimension 4 of the fitness
+	 * contribution table) is the bits of the location id selected by the
+	 * dependency mask and packed together in their order, i.e. the parallel
+	 * bit extract of the location id with the mask. The element's own choice
+	 * (dimension 3) is put on top of them.
+	 * 
+	 * E.g., when N = 4 and the dependent elements of element 1 are 0 and 3,
+	 * the dependency mask is binary 1001. For location id 13, i.e. [1,1,0,1],
+	 * the combination is binary 11 and the index of element 1 is binary 111.
+	 * 
+	 * @param inf
+	 *            an influence matrix object
+	 * @see FitnessContributionTable
+	 */
+	public CompiledInfluenceMatrix(InfluenceMatrix inf) {
+		this.myN = inf.getN();
+		this.myK = inf.getK();
+		this.myDependencyMasks = new int[this.myN];
+		this.myDependantMasks = new int[this.myN];
+		this.myGatherTables = new int[this.myN][];
+		for (int i = 0; i < this.myN; i++) {
+			this.myDependantMasks[i] |= this.getBitOf(i);
+			for (int dependence : inf.getDependentElementsOf(i)) {
+				this.myDependencyMasks[i] |= this.getBitOf(dependence);
+				this.myDependantMasks[dependence] |= this.getBitOf(i);
+			}
+			// the own choice is the (K+1)th bit of the index, i.e. above the
+			// K packed bits of the dependent elements
+			int gatherTable[] = buildGatherTable(this.myDependencyMasks[i]);
+			for (int v = 0; v < 256; v++) {
+				int byteIdx = (this.myN - 1 - i) >> 3;
+				if (((v << (byteIdx << 3)) & this.getBitOf(i)) != 0) {
+					gatherTable[(byteIdx << 8) + v] |= (1 << this.myK);
+				}
+			}
+			this.myGatherTables[i] = gatherTable;
+		}
+	}
+
+	/**
+	 * Return N, the number of elements.
+	 * 
+	 * @return the number of elements
+	 */
+	public int getN() {
+		return this.myN;
+	}
+
+	/**
+	 * Return K, the number of dependent elements that one element can have.
+	 * 
+	 * @return the number of dependent elements that one element can have
+	 */
+	public int getK() {
+		return this.myK;
+	}
+
+	/**
+	 * Return the bit of the given element in a location id.
+	 * 
+	 * @param element
+	 *            an integer between 0 and N-1 (inclusive)
+	 * @return the bit of the given element in a location id
+	 */
+	public int getBitOf(int element) {
+		return 1 << (this.myN - 1 - element);
+	}
+
+	/**
+	 * Return the bits of the dependent elements of the given element in a
+	 * location id.
+	 * 
+	 * @param element
+	 *            an integer between 0 and N-1 (inclusive)
+	 * @return the bits of the dependent elements of the given element
+	 */
+	public int getDependencyMaskOf(int element) {
+		return this.myDependencyMasks[element];
+	}
+
+	/**
+	 * Return the bits of the elements whose fitness contributions depend on
+	 * the given element in a location id, including the given element itself.
+	 * When the given element changes, only the contributions of these elements
+	 * change.
+	 * 
+	 * @param element
+	 *            an integer between 0 and N-1 (inclusive)
+	 * @return the bits of the elements whose fitness contributions depend on
+	 *         the given element
+	 */
+	public int getDependantMaskOf(int element) {
+		return this.myDependantMasks[element];
+	}
+
+	/**
+	 * Return the index of the given element in the 2 x 2^K part of the fitness
+	 * contribution table, i.e. (own choice) x 2^K + (combination of dependent
+	 * elements), at the given location id.
+	 * 
+	 * @param element
+	 *            an integer between 0 and N-1 (inclusive)
+	 * @param locId
+	 *            a non-negative integer, which represents a
+	 *            configuration/location
+	 * @return the index of the given element at the given location id
+	 */
+	public int getIndexOf(int element, int locId) {
+		return gather(this.myGatherTables[element], locId);
+	}
+
+	/**
+	 * Return the position of the given element at the given location id
+	 * within one layer of the fitness contribution table, i.e. (element x 2 +
+	 * own choice) x 2^K + (combination of dependent elements).
+	 * 
+	 * @param element
+	 *            an integer between 0 and N-1 (inclusive)
+	 * @param locId
+	 *            a non-negative integer, which represents a
+	 *            configuration/location
+	 * @return the position of the given element at the given location id
+	 *         within one layer of the fitness contribution table
+	 */
+	public long getEntryOf(int element, int locId) {
+		return ((long) element << (this.myK + 1))
+				| gather(this.myGatherTables[element], locId);
+	}
+
+	/**
+	 * Build a gather table for the given mask. The table has 4 parts of 256
+	 * entries, one for each byte of a location id. Each entry holds the bits of
+	 * that byte selected by the mask, packed and shifted to their final
+	 * positions, so that gather returns the same value as a parallel bit
+	 * extract (e.g. Integer.compress on newer Java versions, or PEXT on x86).
+	 * 
+	 * @param mask
+	 *            the bits to be extracted
+	 * @return a gather table for the given mask
+	 */
+	public static int[] buildGatherTable(int mask) {
+		int table[] = new int[4 << 8];
+		for (int byteIdx = 0; byteIdx < 4; byteIdx++) {
+			int byteMask = (mask >>> (byteIdx << 3)) & 0xFF;
+			// the number of selected bits below this byte
+			int shift = Integer.bitCount(mask & ((1 << (byteIdx << 3)) - 1));
+			for (int v = 0; v < 256; v++) {
+				int packed = 0;
+				int packedIdx = 0;
+				for (int bit = 0; bit < 8; bit++) {
+					if (((byteMask >> bit) & 1) == 1) {
+						packed |= ((v >> bit) & 1) << packedIdx;
+						packedIdx++;
+					}
+				}
+				table[(byteIdx << 8) + v] = packed << shift;
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * Return the bits of the given location id selected by the mask of the
+	 * given gather table, packed together in their order.
+	 * 
+	 * @param table
+	 *            a gather table built by buildGatherTable
+	 * @param locId
+	 *            a non-negative integer, which represents a
+	 *            configuration/location
+	 * @return the bits of the given location id selected by the mask, packed
+	 *         together
+	 */
+	public static int gather(int table[], int locId) {
+		return table[locId & 0xFF] | table[256 + ((locId >>> 8) & 0xFF)]
+				| table[512 + ((locId >>> 16) & 0xFF)]
+				| table[768 + (locId >>> 24)];
+	}
+}
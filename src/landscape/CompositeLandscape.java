@@ -0,0 +1,234 @@
+package landscape;
+
+import random.MersenneTwisterFast;
+import util.RandomGen;
+
+import java.util.HashSet;
+
+public class CompositeLandscape extends Landscape {
+	private int myN;
+	/**
+	 * element indices of each component, in an increasing manner
+	 */
+	private int myComponents[][];
+	/**
+	 * one small table for each component, the size is 2^(component size)
+	 */
+	private double mySubMaps[][];
+	/**
+	 * one gather table for each component, which extracts the sub-location id
+	 * from a location id
+	 */
+	private int myGatherTables[][];
+
+	private double myMax, myMin; // the local max and min
+
+	/**
+	 * Generate a landscape as a sum of independent sub-landscapes, one for each
+	 * connected component of the influence matrix. For each component, an
+	 * array of the summed fitness contribution values of its elements is
+	 * generated for all the possible configurations of its elements only.
+	 * Therefore, the size of the arrays is the sum of 2^(component size)
+	 * instead of 2^N.
+	 * 
+	 * A configuration of a component is called as a sub-location and its id is
+	 * formed by the values of the component's elements in an increasing order
+	 * of element indices. E.g., for component [1, 3] and configuration
+	 * 0,1,1,0, the sub-location id is 2 (i.e. binary 10).
+	 * 
+	 * The fitness value of a location is the sum of the sub-landscapes' values
+	 * at its sub-locations, divided by N. Notice that the uncertainty is drawn
+	 * for each sub-location and element, therefore the uncertainty of two
+	 * locations which share a sub-location is the same in that component.
+	 * 
+	 * @param inf
+	 *            an influence matrix object
+	 * @param bias
+	 *            a value between 0 and 1, which indicates the amount of
+	 *            uncertainty at the beginning
+	 * @param shockNum
+	 *            a non-negative integer, which indicates the shock number
+	 * @param stepNum
+	 *            an integer between 0 and N (inclusive), which indicates the
+	 *            number of implemented elements
+	 * @param fit
+	 *            a fitness contribution table object
+	 * @see InfluenceMatrix#getComponents()
+	 */
+	public CompositeLandscape(InfluenceMatrix inf, double bias, int shockNum,
+			int stepNum, FitnessContributionTable fit) {
+		super(inf, bias, shockNum, stepNum);
+		this.myN = inf.getN();
+		this.myComponents = inf.getComponents();
+		this.mySubMaps = new double[this.myComponents.length][];
+		this.myGatherTables = new int[this.myComponents.length][];
+		for (int c = 0; c < this.myComponents.length; c++) {
+			this.myGatherTables[c] = CompiledInfluenceMatrix
+					.buildGatherTable(this.toLocId(c,
+							(1 << this.myComponents[c].length) - 1));
+		}
+		this.myMax = 0.0;
+		this.myMin = 0.0;
+		double currentUncertainty = this.getCurrentUncertainty();
+		double contributions[] = new double[this.myN];
+		MersenneTwisterFast random = RandomGen.getRandomGen();
+		for (int c = 0; c < this.myComponents.length; c++) {
+			int component[] = this.myComponents[c];
+			double subMap[] = new double[1 << component.length];
+			double subMax = 0.0;
+			double subMin = component.length;
+			for (int s = 0; s < subMap.length; s++) {
+				// the rest elements are set to 0, they do not affect the
+				// contributions of the component's elements
+				fit.getContributionsOf(shockNum, this.toLocId(c, s),
+						contributions);
+				double value = 0.0;
+				for (int element : component) {
+					value += ((1 - currentUncertainty)
+							* contributions[element] + currentUncertainty
+							* random.nextDouble());
+				}
+				subMap[s] = value;
+				if (value > subMax) {
+					subMax = value;
+				}
+				if (value < subMin) {
+					subMin = value;
+				}
+			}
+			this.mySubMaps[c] = subMap;
+			this.myMax += subMax;
+			this.myMin += subMin;
+		}
+		this.myMax /= this.myN;
+		this.myMin /= this.myN;
+	}
+
+	/**
+	 * Return the fitness value of the given location id, i.e. the sum of the
+	 * sub-landscapes' values divided by N.
+	 */
+	@Override
+	public double getScoreOfLocId(int locId) {
+		double value = 0.0;
+		for (int c = 0; c < this.myComponents.length; c++) {
+			value += this.mySubMaps[c][this.toSubLocId(c, locId)];
+		}
+		return value / this.myN;
+	}
+
+	/**
+	 * Return false, since a bitmap of local optima over all 2^N location ids
+	 * would be much larger than the sub-landscapes, and take longer to build
+	 * than the explorations it saves.
+	 */
+	@Override
+	public boolean isLocalOptimum(int locId, int elementMask,
+			int processingPower) {
+		return false;
+	}
+
+	/**
+	 * Return the local maximum value in the landscape, i.e. the sum of the
+	 * sub-landscapes' maximum values divided by N.
+	 */
+	@Override
+	public double getMax() {
+		return this.myMax;
+	}
+
+	/**
+	 * Return the local minimum value in the landscape, i.e. the sum of the
+	 * sub-landscapes' minimum values divided by N.
+	 */
+	@Override
+	public double getMin() {
+		return this.myMin;
+	}
+
+	/**
+	 * Since the components are independent, the average over all the possible
+	 * values of the elements which are not fixed is the sum of the averages of
+	 * each sub-landscape over the sub-locations that agree with the given
+	 * location id in the fixed elements. The given neighbours are not visited.
+	 */
+	@Override
+	public double getAverageScoreOf(int locId, HashSet<Integer> neighbours,
+			HashSet<Integer> fixedElements) {
+		int freeMask = 0;
+		for (int i = 0; i < this.myN; i++) {
+			if (!fixedElements.contains(i)) {
+				freeMask |= (1 << (this.myN - 1 - i));
+			}
+		}
+		return this.getAverageScoreOf(locId, freeMask);
+	}
+
+	/**
+	 * Average each sub-landscape independently over its free bits.
+	 */
+	@Override
+	public double getAverageScoreOf(int locId, int freeMask) {
+		double averageScore = 0.0;
+		for (int c = 0; c < this.myComponents.length; c++) {
+			// bits of the sub-location id which are not fixed
+			int subFreeMask = this.toSubLocId(c, freeMask);
+			int fixedSubLocId = this.toSubLocId(c, locId) & ~subFreeMask;
+			// enumerate all the subsets of the free bits
+			double subSum = 0.0;
+			int subset = 0;
+			do {
+				subSum += this.mySubMaps[c][fixedSubLocId | subset];
+				subset = (subset - subFreeMask) & subFreeMask;
+			} while (subset != 0);
+			averageScore += subSum / (1 << Integer.bitCount(subFreeMask));
+		}
+		return averageScore / this.myN;
+	}
+
+	/**
+	 * Return the number of components.
+	 * 
+	 * @return the number of components
+	 */
+	public int getComponentNum() {
+		return this.myComponents.length;
+	}
+
+	/**
+	 * Return the sub-location id of the given component in the given location
+	 * id.
+	 * 
+	 * @param componentIdx
+	 *            the index of a component
+	 * @param locId
+	 *            a non-negative integer, which represents a
+	 *            configuration/location
+	 * @return the sub-location id of the given component
+	 */
+	private int toSubLocId(int componentIdx, int locId) {
+		return CompiledInfluenceMatrix.gather(
+				this.myGatherTables[componentIdx], locId);
+	}
+
+	/**
+	 * The reverse function of toSubLocId, the elements which are not in the
+	 * given component are set to 0.
+	 * 
+	 * @param componentIdx
+	 *            the index of a component
+	 * @param subLocId
+	 *            a sub-location id of the given component
+	 * @return a location id
+	 */
+	private int toLocId(int componentIdx, int subLocId) {
+		int component[] = this.myComponents[componentIdx];
+		int locId = 0;
+		for (int m = 0; m < component.length; m++) {
+			if (((subLocId >> (component.length - 1 - m)) & 1) == 1) {
+				locId |= (1 << (this.myN - 1 - component[m]));
+			}
+		}
+		return locId;
+	}
+}
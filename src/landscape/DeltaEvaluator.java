@@ -0,0 +1,252 @@
+package landscape;
+
+public class DeltaEvaluator {
+	/**
+	 * the scale of the fixed point sum of the contributions, so that the sum
+	 * of N &lt;= 31 contributions in [0, 1] fits in a long
+	 */
+	private static final double FIXED_POINT_SCALE = 1L << 58;
+
+	private FitnessContributionTable myFit;
+	private CompiledInfluenceMatrix myInf;
+	private int myShockNum;
+
+	private int myLocId; // -1 before the first move
+	/**
+	 * fitness contribution value of each element at the current location
+	 */
+	private double myContributions[];
+	/**
+	 * sum of the contributions at the current location, in fixed point
+	 */
+	private long myTotal;
+	/**
+	 * fitness contribution value of each element at the last location scored
+	 * without moving
+	 */
+	private double myScratch[];
+
+	/**
+	 * Create an evaluator which keeps the fitness contribution values of all
+	 * elements at one location, called the current location. Moving to, or
+	 * scoring, a location which differs in only a few elements only looks up
+	 * the contributions of the changed elements and the elements that depend
+	 * on them, instead of all N contributions, i.e. O(changes x K) lookups
+	 * for a neighbouring location.
+	 * 
+	 * The evaluator also keeps the sum of the contributions at the current
+	 * location, updated by the changed contributions only, so the sum at a
+	 * neighbouring location takes O(changes x K) as well. The sum is kept in
+	 * fixed point, i.e. each contribution is truncated to a multiple of
+	 * 2^-58, so that it is exact whatever the order of the updates, and the
+	 * same location always gets the same sum, whichever location the
+	 * evaluator comes from. It differs from the floating point sum of the N
+	 * contributions in order by about 1e-16.
+	 * 
+	 * An evaluator is not thread-safe, each thread (or agent) should use its
+	 * own evaluator.
+	 * 
+	 * @param fit
+	 *            a fitness contribution table object
+	 * @param shockNum
+	 *            a non-negative integer, which indicates the shock number
+	 */
+	public DeltaEvaluator(FitnessContributionTable fit, int shockNum) {
+		this.myFit = fit;
+		this.myInf = fit.getCompiledInf();
+		this.myShockNum = shockNum;
+		this.myLocId = -1;
+		this.myContributions = new double[this.myInf.getN()];
+		this.myTotal = 0;
+		this.myScratch = new double[this.myInf.getN()];
+	}
+
+	/**
+	 * Return the current location id, or -1 if the evaluator has not moved
+	 * yet.
+	 * 
+	 * @return the current location id
+	 */
+	public int getLocId() {
+		return this.myLocId;
+	}
+
+	/**
+	 * Return the fitness contribution value of the given element at the
+	 * current location.
+	 * 
+	 * @param element
+	 *            an integer between 0 and N-1 (inclusive)
+	 * @return the fitness contribution value of the given element
+	 */
+	public double getContributionOf(int element) {
+		return this.myContributions[element];
+	}
+
+	/**
+	 * Return the sum of the fitness contribution values of all elements at the
+	 * current location.
+	 * 
+	 * @return the sum of the fitness contribution values
+	 */
+	public double getTotal() {
+		return this.myTotal / FIXED_POINT_SCALE;
+	}
+
+	/**
+	 * Return the sum of the fitness contribution values of all elements at the
+	 * given location id, without moving the current location. Only the
+	 * contributions of the affected elements are looked up.
+	 * 
+	 * @param locId
+	 *            a non-negative integer, which represents a
+	 *            configuration/location
+	 * @return the sum of the fitness contribution values
+	 */
+	public double getTotalOf(int locId) {
+		return this.getTotalOf(locId, this.getAffectedMaskOf(locId));
+	}
+
+	/**
+	 * Same as above, but the affected elements are given, e.g. when they are
+	 * already known from getAffectedMaskOf.
+	 * 
+	 * @param locId
+	 *            a non-negative integer, which represents a
+	 *            configuration/location
+	 * @param elementMask
+	 *            the bits of the elements whose contributions change, as
+	 *            returned by getAffectedMaskOf
+	 * @return the sum of the fitness contribution values
+	 */
+	public double getTotalOf(int locId, int elementMask) {
+		int n = this.myInf.getN();
+		long total = this.myTotal;
+		while (elementMask != 0) {
+			int element = n - 1 - Integer.numberOfTrailingZeros(elementMask);
+			total += toFixedPoint(this.myFit.getContributionOf(
+					this.myShockNum, element, locId))
+					- toFixedPoint(this.myContributions[element]);
+			elementMask &= elementMask - 1;
+		}
+		return total / FIXED_POINT_SCALE;
+	}
+
+	/**
+	 * Return the bits of the elements whose fitness contributions are
+	 * different between the current location and the given location id. If
+	 * the evaluator has not moved yet, all elements are returned.
+	 * 
+	 * @param locId
+	 *            a non-negative integer, which represents a
+	 *            configuration/location
+	 * @return the bits of the elements whose contributions change
+	 */
+	public int getAffectedMaskOf(int locId) {
+		int n = this.myInf.getN();
+		if (this.myLocId < 0) {
+			return (int) ((1L << n) - 1);
+		}
+		int flipped = this.myLocId ^ locId;
+		int affected = 0;
+		while (flipped != 0) {
+			int bit = Integer.numberOfTrailingZeros(flipped);
+			affected |= this.myInf.getDependantMaskOf(n - 1 - bit);
+			flipped &= flipped - 1;
+		}
+		return affected;
+	}
+
+	/**
+	 * Move the current location to the given location id, and update the
+	 * contributions of the affected elements and their sum only.
+	 * 
+	 * @param locId
+	 *            a non-negative integer, which represents a
+	 *            configuration/location
+	 */
+	public void moveTo(int locId) {
+		int n = this.myInf.getN();
+		int elementMask = this.getAffectedMaskOf(locId);
+		while (elementMask != 0) {
+			int element = n - 1 - Integer.numberOfTrailingZeros(elementMask);
+			double contribution = this.myFit.getContributionOf(
+					this.myShockNum, element, locId);
+			this.myTotal += toFixedPoint(contribution)
+					- toFixedPoint(this.myContributions[element]);
+			this.myContributions[element] = contribution;
+			elementMask &= elementMask - 1;
+		}
+		this.myLocId = locId;
+	}
+
+	/**
+	 * Fill the given array with the fitness contribution values of all N
+	 * elements at the given location id, without moving the current location.
+	 * The contributions of the elements which are not affected are copied from
+	 * the current location.
+	 * 
+	 * @param locId
+	 *            a non-negative integer, which represents a
+	 *            configuration/location
+	 * @param contributions
+	 *            an array of length N to be filled
+	 */
+	public void getContributionsOf(int locId, double[] contributions) {
+		int affected = this.getAffectedMaskOf(locId);
+		if (contributions != this.myContributions) {
+			System.arraycopy(this.myContributions, 0, contributions, 0,
+					contributions.length);
+		}
+		this.lookUp(locId, affected, contributions);
+	}
+
+	/**
+	 * Same as above, but the contributions are filled in an array of the
+	 * evaluator, which is returned and overwritten by the next call, so that
+	 * scoring a location does not allocate.
+	 * 
+	 * @param locId
+	 *            a non-negative integer, which represents a
+	 *            configuration/location
+	 * @return an array of the fitness contribution value of each element
+	 */
+	public double[] getContributionsOf(int locId) {
+		this.getContributionsOf(locId, this.myScratch);
+		return this.myScratch;
+	}
+
+	/**
+	 * Look up the contributions of the given elements at the given location id
+	 * in the fitness contribution table.
+	 * 
+	 * @param locId
+	 *            a non-negative integer, which represents a
+	 *            configuration/location
+	 * @param elementMask
+	 *            the bits of the elements to be looked up
+	 * @param contributions
+	 *            an array of length N to be updated
+	 */
+	private void lookUp(int locId, int elementMask, double[] contributions) {
+		int n = this.myInf.getN();
+		while (elementMask != 0) {
+			int element = n - 1 - Integer.numberOfTrailingZeros(elementMask);
+			contributions[element] = this.myFit.getContributionOf(
+					this.myShockNum, element, locId);
+			elementMask &= elementMask - 1;
+		}
+	}
+
+	/**
+	 * Return the given contribution value in fixed point, truncated to a
+	 * multiple of 2^-58.
+	 * 
+	 * @param contribution
+	 *            a value between 0 and 1
+	 * @return the contribution value in fixed point
+	 */
+	private static long toFixedPoint(double contribution) {
+		return (long) (contribution * FIXED_POINT_SCALE);
+	}
+}
@@ -1,20 +1,55 @@
 package landscape;
 
+import random.MersenneTwisterFast;
 import util.RandomGen;
 import java.util.Arrays;
-import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class FitnessContributionTable {
+	/**
+	 * number of doubles in one page of a layer, i.e. 2^27 doubles or 1 GB per
+	 * page
+	 */
+	private static final int PAGE_BITS = 27;
+	private static final long PAGE_MASK = (1L << PAGE_BITS) - 1;
+	/**
+	 * the stream of the fitness contribution values, apart from the streams
+	 * used by the simulator, see RandomGen.createStream. The index of the
+	 * stream is the shock number of the layer.
+	 */
+	protected static final int TABLE_STREAM = 3;
+
 	private InfluenceMatrix myInf;
 	private double myDelta; // [0, 1]
 	private int myTotalShockNum; // >= 0
+	/**
+	 * the run number under which the table is created, so that the layers
+	 * generated later on any thread have the values of this run
+	 */
+	private int mySeed;
 	private int myDim1, myDim2, myDim3;
 	/**
-	 * A 4-dimensional table, the size is
+	 * compiled influence matrix, which gives the indices of the elements at a
+	 * location id
+	 */
+	private CompiledInfluenceMatrix myCompiledInf;
+	/**
+	 * the number of values in one shock layer, i.e. N x 2 x 2^K
+	 */
+	private long myLayerSize;
+	/**
+	 * A 4-dimensional table stored as one flat block per shock layer, the size
+	 * is
 	 * 
 	 * (myTotalShockNum + 1) x N rows x 2 choices x 2^K choices, K < N < 32
+	 * 
+	 * The value of [l][i][j][k] is stored in the block of layer l at position
+	 * (i x 2 + j) x 2^K + k. A block is split into pages of 2^PAGE_BITS
+	 * doubles, therefore layers with more than 2^31 values are supported as
+	 * well. A layer is null until it is first looked up, and after it is
+	 * released.
 	 */
-	private ArrayList<double[][][]> myTable;
+	private AtomicReferenceArray<double[][]> myLayers;
 
 	/**
 	 * Internally create a 4-dimensional table, (total shock number + 1) by N by
@@ -23,7 +58,8 @@ public class FitnessContributionTable {
 	 * represents the 2 choices (i.e. 0 or 1) for one element. Dimension 4
 	 * represents all the possible combination of one element's dependent
 	 * elements. The value is a randomly generated fitness contribution value
-	 * between 0 to 1.
+	 * between 0 to 1. The shock layers are generated when they are first
+	 * looked up.
 	 * 
 	 * E.g., when N = 6 and K = 5, the value in [1][0][1][5] gives the fitness
 	 * contribution value "between the 1st and the 2nd shocks",
@@ -46,6 +82,28 @@ public class FitnessContributionTable {
 	 */
 	public FitnessContributionTable(InfluenceMatrix inf, double delta,
 			int totalShockNum) {
+		this(inf, delta, totalShockNum, true);
+	}
+
+	/**
+	 * Create a fitness contribution table, and allocate and fill up the
+	 * internal flat table only if it is stored. A subclass which does not store
+	 * the table must override valueAt to provide the values.
+	 * 
+	 * @param inf
+	 *            an influence matrix object
+	 * @param delta
+	 *            a value between 0 and 1, which indicates the amount of changes
+	 *            in each shock, 0 for no changes and 1 for arbitrary changes
+	 * @param totalShockNum
+	 *            a non-negative integer, which indicates the total number of
+	 *            shocks
+	 * @param isStored
+	 *            a boolean, which indicates if the values are stored in the
+	 *            internal flat table
+	 */
+	protected FitnessContributionTable(InfluenceMatrix inf, double delta,
+			int totalShockNum, boolean isStored) {
 		// check for valid delta
 		if (delta > 1 || delta < 0) {
 			System.out
@@ -62,39 +120,133 @@ public class FitnessContributionTable {
 		this.myDelta = delta;
 		this.myTotalShockNum = totalShockNum;
 		this.myInf = inf;
+		this.mySeed = RandomGen.getSeed();
 
 		this.myDim1 = this.myInf.getN();
 		this.myDim2 = 2;
 		this.myDim3 = (1 << this.myInf.getK());
-		this.myTable = new ArrayList<double[][][]>();
-		// loop for (total shock number + 1) times, here the +1 is for no shock
-		for (int i = 0; i < this.myTotalShockNum + 1; i++) {
-			this.myTable.add(new double[this.myDim1][this.myDim2][this.myDim3]);
+		this.myCompiledInf = this.myInf.compile();
+		this.myLayerSize = (long) this.myDim1 * this.myDim2 * this.myDim3;
+		if (!isStored) {
+			this.myLayers = null;
+			return;
 		}
+		// (total shock number + 1) layers, here the +1 is for no shock
+		this.myLayers = new AtomicReferenceArray<double[][]>(
+				this.myTotalShockNum + 1);
+	}
 
-		// fill up the 4-dimensional table
-		for (int i = 0; i < this.myDim1; i++) {
-			for (int j = 0; j < this.myDim2; j++) {
-				for (int k = 0; k < this.myDim3; k++) {
-					// firstly generate the value for the time when no shocks
-					// have occurred
-					this.myTable.get(0)[i][j][k] = RandomGen.randomGen
-							.nextDouble();
-					// then generate the values for the following shocks
-					// recursively
-					// i.e. the value after lth shock depends on the value of
-					// after (l-1)th shock
-					for (int l = 1; l < this.myTotalShockNum + 1; l++) {
-						this.myTable.get(l)[i][j][k] = (1 - this.myDelta)
-								* this.myTable.get(l - 1)[i][j][k]
-								+ this.myDelta
-								* RandomGen.randomGen.nextDouble();
-					}
+	/**
+	 * Return the block of the given shock layer, generating it if it is not
+	 * stored.
+	 * 
+	 * @param shockIndex
+	 *            a non-negative integer, which indicates the shock number
+	 * @return the pages of the block of the layer
+	 */
+	private double[][] getLayer(int shockIndex) {
+		double pages[][] = this.myLayers.get(shockIndex);
+		if (pages == null) {
+			pages = this.generateLayer(shockIndex);
+		}
+		return pages;
+	}
+
+	/**
+	 * Generate and store the block of the given shock layer. The values of
+	 * layer 0 are drawn from the stream 0 of the table, and the value after
+	 * the lth shock depends on the value after the (l-1)th shock and the value
+	 * drawn from the stream l, i.e.
+	 * 
+	 * v(l) = (1 - delta) x v(l-1) + delta x r(l)
+	 * 
+	 * where the entries draw from each stream in the order of their positions
+	 * in a layer. Therefore a layer only depends on the seed of the table
+	 * (not of the calling thread) and the streams up to its shock number, and
+	 * it is generated from the closest stored layer below it, or from layer 0
+	 * if there is none, without storing the layers in between. A released
+	 * layer is generated again with the same values.
+	 * 
+	 * @param shockIndex
+	 *            a non-negative integer, which indicates the shock number
+	 * @return the pages of the block of the layer
+	 */
+	private synchronized double[][] generateLayer(int shockIndex) {
+		double pages[][] = this.myLayers.get(shockIndex);
+		if (pages != null) {
+			return pages;
+		}
+		int pageNum = (int) ((this.myLayerSize + PAGE_MASK) >>> PAGE_BITS);
+		pages = new double[pageNum][];
+		for (int i = 0; i < pageNum; i++) {
+			pages[i] = new double[(int) Math.min(1L << PAGE_BITS,
+					this.myLayerSize - ((long) i << PAGE_BITS))];
+		}
+		int base = shockIndex - 1;
+		while (base >= 0 && this.myLayers.get(base) == null) {
+			base--;
+		}
+		if (base >= 0) {
+			double basePages[][] = this.myLayers.get(base);
+			for (int i = 0; i < pageNum; i++) {
+				System.arraycopy(basePages[i], 0, pages[i], 0, pages[i].length);
+			}
+		} else {
+			MersenneTwisterFast random = RandomGen.createStream(this.mySeed,
+					TABLE_STREAM, 0);
+			for (double page[] : pages) {
+				for (int i = 0; i < page.length; i++) {
+					page[i] = random.nextDouble();
 				}
 			}
+			base = 0;
+		}
+		for (int l = base + 1; l <= shockIndex; l++) {
+			MersenneTwisterFast random = RandomGen.createStream(this.mySeed,
+					TABLE_STREAM, l);
+			for (double page[] : pages) {
+				for (int i = 0; i < page.length; i++) {
+					page[i] = (1 - this.myDelta) * page[i] + this.myDelta
+							* random.nextDouble();
+				}
+			}
+		}
+		this.myLayers.set(shockIndex, pages);
+		return pages;
+	}
+
+	/**
+	 * Release the stored shock layers before the given shock number, e.g. when
+	 * no agent can return to them. A released layer is generated again if it
+	 * is looked up later.
+	 * 
+	 * @param shockIndex
+	 *            a non-negative integer, which indicates the shock number
+	 */
+	public synchronized void releaseLayersBefore(int shockIndex) {
+		if (this.myLayers == null) {
+			return;
+		}
+		for (int l = 0; l < shockIndex && l < this.myLayers.length(); l++) {
+			this.myLayers.set(l, null);
 		}
 	}
 
+	/**
+	 * Return the number of the shock layers which are stored now.
+	 * 
+	 * @return the number of the stored shock layers
+	 */
+	public int getStoredLayerNum() {
+		int num = 0;
+		for (int l = 0; this.myLayers != null && l < this.myLayers.length(); l++) {
+			if (this.myLayers.get(l) != null) {
+				num++;
+			}
+		}
+		return num;
+	}
+
 	/**
 	 * Return the fitness contribution value in the internal 4-dimensional table
 	 * with the given indices.
@@ -104,7 +256,128 @@ public class FitnessContributionTable {
 	 * @see FitnessContributionTable
 	 */
 	public double getValueOf(int shockIndex, int index1, int index2, int index3) {
-		return this.myTable.get(shockIndex)[index1][index2][index3];
+		return this.valueAt(shockIndex,
+				((long) (index1 * this.myDim2 + index2)) * this.myDim3 + index3);
+	}
+
+	/**
+	 * Fill the given array with the fitness contribution values of all N
+	 * elements at the given location id, i.e. the i-th value is the
+	 * contribution of the i-th element given its own choice and the choices of
+	 * its dependent elements in the location.
+	 * 
+	 * @param shockIndex
+	 *            a non-negative integer, which indicates the shock number
+	 * @param locId
+	 *            a non-negative integer, which represents a
+	 *            configuration/location
+	 * @param contributions
+	 *            an array of length N to be filled
+	 */
+	public void getContributionsOf(int shockIndex, int locId,
+			double[] contributions) {
+		if (this.myLayers == null) {
+			for (int i = 0; i < this.myDim1; i++) {
+				contributions[i] = this.valueAt(shockIndex,
+						this.myCompiledInf.getEntryOf(i, locId));
+			}
+			return;
+		}
+		// look up the layer once for all the elements
+		double pages[][] = this.getLayer(shockIndex);
+		for (int i = 0; i < this.myDim1; i++) {
+			long entry = this.myCompiledInf.getEntryOf(i, locId);
+			contributions[i] = pages[(int) (entry >>> PAGE_BITS)][(int) (entry & PAGE_MASK)];
+		}
+	}
+
+	/**
+	 * Return the fitness contribution value of the given element at the given
+	 * location id, i.e. given its own choice and the choices of its dependent
+	 * elements in the location.
+	 * 
+	 * @param shockIndex
+	 *            a non-negative integer, which indicates the shock number
+	 * @param element
+	 *            an integer between 0 and N-1 (inclusive)
+	 * @param locId
+	 *            a non-negative integer, which represents a
+	 *            configuration/location
+	 * @return the fitness contribution value of the given element at the given
+	 *         location id
+	 */
+	public double getContributionOf(int shockIndex, int element, int locId) {
+		return this.valueAt(shockIndex,
+				this.myCompiledInf.getEntryOf(element, locId));
+	}
+
+	/**
+	 * Return the value of the given entry in the given shock layer. An entry is
+	 * the position of [i][j][k] within one layer, i.e. (i x 2 + j) x 2^K + k.
+	 * 
+	 * @param shockIndex
+	 *            a non-negative integer, which indicates the shock number
+	 * @param entry
+	 *            a position within one shock layer
+	 * @return the value of the given entry in the given shock layer
+	 */
+	protected double valueAt(int shockIndex, long entry) {
+		double pages[][] = this.getLayer(shockIndex);
+		return pages[(int) (entry >>> PAGE_BITS)][(int) (entry & PAGE_MASK)];
+	}
+
+	/**
+	 * Return the compiled influence matrix.
+	 * 
+	 * @return the compiled influence matrix
+	 */
+	public CompiledInfluenceMatrix getCompiledInf() {
+		return this.myCompiledInf;
+	}
+
+	/**
+	 * Return the influence matrix.
+	 * 
+	 * @return the influence matrix
+	 */
+	public InfluenceMatrix getInf() {
+		return this.myInf;
+	}
+
+	/**
+	 * Return the run number under which the table is created.
+	 * 
+	 * @return the run number of the table
+	 */
+	public int getSeed() {
+		return this.mySeed;
+	}
+
+	/**
+	 * Return the delta value.
+	 * 
+	 * @return the delta value
+	 */
+	public double getDelta() {
+		return this.myDelta;
+	}
+
+	/**
+	 * Return the total number of shocks.
+	 * 
+	 * @return the total number of shocks
+	 */
+	public int getTotalShockNum() {
+		return this.myTotalShockNum;
+	}
+
+	/**
+	 * Return the number of values in one shock layer, i.e. N x 2 x 2^K.
+	 * 
+	 * @return the number of values in one shock layer
+	 */
+	public long getLayerSize() {
+		return this.myLayerSize;
 	}
 
 	/**
@@ -131,8 +404,8 @@ public class FitnessContributionTable {
 							+ Arrays.toString(this.myInf
 									.getDependentElementsOf(i)) + " = "
 							+ Arrays.toString(kInBinary) + " ->");
-					for (double[][][] subTable : this.myTable) {
-						result += ("\t" + subTable[i][j][k]);
+					for (int l = 0; l < this.myTotalShockNum + 1; l++) {
+						result += ("\t" + this.getValueOf(l, i, j, k));
 					}
 					result += "\n";
 				}
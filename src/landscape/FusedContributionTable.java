@@ -0,0 +1,64 @@
+package landscape;
+
+import util.RandomGen;
+
+public class FusedContributionTable extends FitnessContributionTable {
+	private long myStreamSeed;
+
+	/**
+	 * Create a fitness contribution table which never stores its values.
+	 * Instead, each value and its chain of shock changes are generated on the
+	 * fly whenever they are looked up, from a random stream whose seed is
+	 * drawn once from the stream of the table, like the values of a stored
+	 * table. Looking up the same entry twice gives the same value.
+	 * 
+	 * This is intended for fully-connected influence matrices, i.e. K = N - 1,
+	 * where every entry is used by exactly one location of a landscape, so the
+	 * stored table would be as large as the landscape it feeds. For smaller K,
+	 * the entries are shared by several locations and they are generated again
+	 * for each of them; ConfigReader warns about such a case once when it is
+	 * read.
+	 * 
+	 * A value after the lth shock takes l + 1 random values, since the chain
+	 * of changes is generated again from the start for every look-up; keeping
+	 * the values of the last shock instead would take as much memory as the
+	 * stored table. So a landscape after the lth shock costs about l + 1
+	 * times as much as one before the first shock; use 'full' for many shocks
+	 * when the table fits in memory.
+	 * 
+	 * @param inf
+	 *            an influence matrix object
+	 * @param delta
+	 *            a value between 0 and 1, which indicates the amount of changes
+	 *            in each shock, 0 for no changes and 1 for arbitrary changes
+	 * @param totalShockNum
+	 *            a non-negative integer, which indicates the total number of
+	 *            shocks
+	 * @see FitnessContributionTable
+	 */
+	public FusedContributionTable(InfluenceMatrix inf, double delta,
+			int totalShockNum) {
+		super(inf, delta, totalShockNum, false);
+		this.myStreamSeed = RandomGen.createStream(TABLE_STREAM, 0)
+				.nextLong();
+	}
+
+	/**
+	 * Generate the value of the given entry for no shock, then apply the
+	 * changes of the following shocks up to the given one, in the same way as
+	 * the stored table does. The lth random value of the entry is at counter
+	 * entry x (total shock number + 1) + l of the stream. This takes
+	 * shockIndex + 1 random values.
+	 */
+	@Override
+	protected double valueAt(int shockIndex, long entry) {
+		long counter = entry * (this.getTotalShockNum() + 1);
+		double delta = this.getDelta();
+		double value = RandomGen.hashDouble(this.myStreamSeed, counter);
+		for (int l = 1; l <= shockIndex; l++) {
+			value = (1 - delta) * value + delta
+					* RandomGen.hashDouble(this.myStreamSeed, counter + l);
+		}
+		return value;
+	}
+}
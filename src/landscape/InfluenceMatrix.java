@@ -1,5 +1,7 @@
 package landscape;
 
+import util.ConfigReader;
+
 import java.util.Arrays;
 
 public class InfluenceMatrix {
@@ -34,7 +36,8 @@ public class InfluenceMatrix {
 	 * diagonal entries must be all 1's. The number of 1's in each row should be
 	 * the same.
 	 * 
-	 * If the input matrix is not valid, the program will exit.
+	 * If the input matrix is not valid, the program will exit, or an exception
+	 * is thrown while a config file is checked.
 	 * 
 	 * @param matrix
 	 *            a matrix that represents an influence matrix
@@ -47,24 +50,19 @@ public class InfluenceMatrix {
 		for (int i = 0; i < myN; i++) {
 			// check for square matrix
 			if (matrix[i].length != this.myN) {
-				System.out
-						.println("ERROR : invalid length of influence matrix in row "
-								+ i);
-				System.exit(1);
+				ConfigReader.fail("ERROR : invalid length of influence matrix in row "
+						+ i);
 			}
 			// check for valid entry
 			for (int j = 0; j < myN; j++) {
 				if (matrix[i][j] != 0 && matrix[i][j] != 1) {
-					System.out
-							.println("ERROR : invalid entry value of influence matrix in position "
-									+ i + ", " + j);
-					System.exit(1);
+					ConfigReader.fail("ERROR : invalid entry value of influence matrix in position "
+							+ i + ", " + j);
 				}
 			}
 			// check for diagonal
 			if (matrix[i][i] == 0) {
-				System.out.println("invalid self-dependence in row " + i);
-				System.exit(1);
+				ConfigReader.fail("invalid self-dependence in row " + i);
 			}
 			// check for consistent K
 			if (i == 0) {
@@ -78,11 +76,9 @@ public class InfluenceMatrix {
 					current_K += matrix[i][j];
 				}
 				if (this.myK != --current_K) {
-					System.out
-							.println("inconsistent K between K(row 0) = "
-									+ this.myK + " and K(row " + i + ") = "
-									+ current_K);
-					System.exit(1);
+					ConfigReader.fail("inconsistent K between K(row 0) = "
+							+ this.myK + " and K(row " + i + ") = "
+							+ current_K);
 				}
 			}
 		}
@@ -106,6 +102,21 @@ public class InfluenceMatrix {
 		}
 	}
 
+	/**
+	 * Create an influence matrix of N elements where each element depends on
+	 * the K elements after it, wrapping around, e.g. to generate a matrix of
+	 * any N and K without a file.
+	 * 
+	 * @param n
+	 *            a positive integer, the number of elements
+	 * @param k
+	 *            an integer between 0 and N - 1 (inclusive), the number of
+	 *            dependent elements of each element
+	 */
+	public InfluenceMatrix(int n, int k) {
+		this(constructCircularMatrix(n, k));
+	}
+
 	/**
 	 * Create a new influence matrix object which is a copy of the given object.
 	 * 
@@ -148,11 +159,30 @@ public class InfluenceMatrix {
 	public int[][] getRawMatrix() {
 		int result[][] = new int[this.myN][this.myN];
 		for (int i = 0; i < this.myN; i++) {
-			result[i] = Arrays.copyOf(this.myRawMatrix[i], this.myN);
+			if (this.myRawMatrix == null) { // K = 0, only self-dependence
+				result[i][i] = 1;
+			} else {
+				result[i] = Arrays.copyOf(this.myRawMatrix[i], this.myN);
+			}
 		}
 		return result;
 	}
 
+	/**
+	 * Return true if the given influence matrix has the same dependent
+	 * elements for every element, e.g. when it is a copy of this one.
+	 * 
+	 * @param inf
+	 *            an influence matrix object
+	 * @return true if the dependent elements are the same
+	 */
+	public boolean hasSameDependenceAs(InfluenceMatrix inf) {
+		return inf == this
+				|| (this.myN == inf.myN && this.myK == inf.myK && Arrays
+						.deepEquals(this.myDependenceMatrix,
+								inf.myDependenceMatrix));
+	}
+
 	/**
 	 * Return an array of dependent elements of the given element
 	 * 
@@ -168,6 +198,92 @@ public class InfluenceMatrix {
 		return Arrays.copyOf(this.myDependenceMatrix[element], this.myK);
 	}
 
+	/**
+	 * Return the compiled form of the influence matrix, which extracts the
+	 * indices in the fitness contribution table directly from location ids.
+	 * 
+	 * @return the compiled form of the influence matrix
+	 * @see CompiledInfluenceMatrix
+	 */
+	public CompiledInfluenceMatrix compile() {
+		return new CompiledInfluenceMatrix(this);
+	}
+
+	/**
+	 * Return the connected components of the dependency graph, where two
+	 * elements are connected if either of them depends on the other. The
+	 * fitness contributions of the elements in one component only depend on
+	 * the elements in the same component, therefore the fitness value is a sum
+	 * of independent parts, one for each component.
+	 * 
+	 * E.g., input matrix is [1, 1, 0, 0] [1, 1, 0, 0] [0, 0, 1, 1] [0, 0, 1, 1]
+	 * then the components are [0, 1] and [2, 3].
+	 * 
+	 * @return an array of components, each component is an array of element
+	 *         indices in an increasing manner, and the components are ordered
+	 *         by their first element
+	 */
+	public int[][] getComponents() {
+		// union-find over the elements
+		int parent[] = new int[this.myN];
+		for (int i = 0; i < this.myN; i++) {
+			parent[i] = i;
+		}
+		for (int i = 0; i < this.myN; i++) {
+			for (int dependence : this.getDependentElementsOf(i)) {
+				int root1 = findRoot(parent, i);
+				int root2 = findRoot(parent, dependence);
+				// keep the smaller element as the root
+				if (root1 < root2) {
+					parent[root2] = root1;
+				} else {
+					parent[root1] = root2;
+				}
+			}
+		}
+		// count the size of each component
+		int size[] = new int[this.myN];
+		int componentNum = 0;
+		for (int i = 0; i < this.myN; i++) {
+			if (size[findRoot(parent, i)]++ == 0) {
+				componentNum++;
+			}
+		}
+		// collect the elements of each component
+		int result[][] = new int[componentNum][];
+		int componentIdx[] = new int[this.myN];
+		int count[] = new int[componentNum];
+		int nextIdx = 0;
+		for (int i = 0; i < this.myN; i++) {
+			int root = findRoot(parent, i);
+			if (root == i) {
+				componentIdx[i] = nextIdx;
+				result[nextIdx++] = new int[size[i]];
+			}
+			int c = componentIdx[root];
+			result[c][count[c]++] = i;
+		}
+		return result;
+	}
+
+	/**
+	 * Return the root of the given element in the union-find forest, and
+	 * compress the path on the way.
+	 * 
+	 * @param parent
+	 *            the parent of each element in the union-find forest
+	 * @param element
+	 *            an integer between 0 and N-1 (inclusive)
+	 * @return the root of the given element
+	 */
+	private static int findRoot(int parent[], int element) {
+		while (parent[element] != element) {
+			parent[element] = parent[parent[element]];
+			element = parent[element];
+		}
+		return element;
+	}
+
 	/**
 	 * Return a string representation of the influence matrix
 	 * 
@@ -184,4 +300,29 @@ public class InfluenceMatrix {
 		}
 		return result;
 	}
+
+	/**
+	 * Return a square matrix of N elements where each element depends on
+	 * itself and the K elements after it, wrapping around.
+	 * 
+	 * @param n
+	 *            a positive integer, the number of elements
+	 * @param k
+	 *            an integer between 0 and N - 1 (inclusive), the number of
+	 *            dependent elements of each element
+	 * @return a matrix that represents an influence matrix
+	 */
+	private static int[][] constructCircularMatrix(int n, int k) {
+		if (n <= 0 || k < 0 || k >= n) {
+			ConfigReader.fail("ERROR : invalid N = " + n + " and K = " + k
+					+ " of influence matrix");
+		}
+		int matrix[][] = new int[n][n];
+		for (int i = 0; i < n; i++) {
+			for (int d = 0; d <= k; d++) {
+				matrix[i][(i + d) % n] = 1;
+			}
+		}
+		return matrix;
+	}
 }
@@ -1,10 +1,15 @@
 package landscape;
 
+import random.MersenneTwisterFast;
 import util.RandomGen;
+import util.ThreadPool;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.concurrent.Callable;
 
 public class Landscape {
 	private InfluenceMatrix myInf;
@@ -16,6 +21,30 @@ public class Landscape {
 
 	private double myMax, myMin; // the local max and min
 
+	/**
+	 * the largest number of bitmaps of local optima kept by a landscape
+	 */
+	private static final int MAX_LOCAL_OPTIMA = 4;
+
+	/**
+	 * bitmaps of local optima over all location ids, built on demand, the key
+	 * is the element bits in the higher 32 bits and the processing power in
+	 * the lower 32 bits, and their keys from the least to the most recently
+	 * used
+	 */
+	private HashMap<Long, long[]> myLocalOptima;
+	private ArrayList<Long> myLocalOptimaOrder;
+	/**
+	 * the number of times each key has been asked for while its bitmap is not
+	 * built
+	 */
+	private HashMap<Long, Long> myLocalOptimumQueries;
+	/**
+	 * memos of steepest ascent climbs, created on demand, the key is the
+	 * element bits, the free bits and the processing power
+	 */
+	private HashMap<String, SteepestAscentMemo> mySteepestAscentMemos;
+
 	/**
 	 * Internally generate an array of fitness values for all possible
 	 * configurations. Therefore, the size of the array is 2^N, where N is from
@@ -47,6 +76,54 @@ public class Landscape {
 	 */
 	public Landscape(InfluenceMatrix inf, double bias, int shockNum,
 			int stepNum, FitnessContributionTable fit) {
+		this(inf, bias, shockNum, stepNum);
+		this.myMap = new double[1 << this.myInf.getN()];
+		this.myMax = 0.0;
+		this.myMin = 1.0;
+		// compute fitness value for all location ids in one streaming pass,
+		// the contributions of all elements of a location are fetched at once
+		// from the (contiguous) shock layer of the fitness contribution table
+		int n = this.myInf.getN();
+		double currentUncertainty = this.getCurrentUncertainty();
+		double contributions[] = new double[n];
+		MersenneTwisterFast random = RandomGen.getRandomGen();
+		for (int i = 0; i < this.myMap.length; i++) {
+			fit.getContributionsOf(this.myShockNum, i, contributions);
+			// compute fitness value based on the configuration using fitness
+			// contribution table
+			double value = 0.0;
+			for (int j = 0; j < n; j++) {
+				value += ((1 - currentUncertainty) * contributions[j] + currentUncertainty
+						* random.nextDouble());
+			}
+			this.myMap[i] = value / n;
+			if (this.myMap[i] > this.myMax) {
+				this.myMax = this.myMap[i];
+			}
+			if (this.myMap[i] < this.myMin) {
+				this.myMin = this.myMap[i];
+			}
+		}
+	}
+
+	/**
+	 * Check and assign the parameters of a landscape without generating the
+	 * array of fitness values. A subclass which does not store the array must
+	 * override getScoreOfLocId, getMax and getMin.
+	 * 
+	 * @param inf
+	 *            an influence matrix object
+	 * @param bias
+	 *            a value between 0 and 1, which indicates the amount of
+	 *            uncertainty at the beginning
+	 * @param shockNum
+	 *            a non-negative integer, which indicates the shock number
+	 * @param stepNum
+	 *            an integer between 0 and N (inclusive), which indicates the
+	 *            number of implemented elements
+	 */
+	protected Landscape(InfluenceMatrix inf, double bias, int shockNum,
+			int stepNum) {
 		// check for valid bias
 		if (bias > 1 || bias < 0) {
 			System.out
@@ -70,40 +147,11 @@ public class Landscape {
 		this.myBias = bias;
 		this.myShockNum = shockNum;
 		this.myStepNum = stepNum;
-		this.myMap = new double[1 << this.myInf.getN()];
-		this.myMax = 0.0;
-		this.myMin = 1.0;
-		// compute fitness value for all location ids
-		for (int i = 0; i < this.myMap.length; i++) {
-			// convert location id to configuration
-			int location[] = this.locIdToLocation(i);
-			// compute fitness value based on the configuration using fitness
-			// contribution table
-			double value = 0.0;
-			for (int j = 0; j < this.myInf.getN(); j++) {
-				// indices in fitness contribution table
-				int index1 = j;
-				int index2 = location[j];
-				int index3 = 0;
-				int dependence[] = this.myInf.getDependentElementsOf(j);
-				for (int k = 0; k < this.myInf.getK(); k++) {
-					index3 <<= 1;
-					index3 += location[dependence[k]];
-				}
-				double currentUncertainty = this.getCurrentUncertainty();
-				value += ((1 - currentUncertainty)
-						* fit.getValueOf(this.myShockNum, index1, index2,
-								index3) + currentUncertainty
-						* RandomGen.randomGen.nextDouble());
-			}
-			this.myMap[i] = value / this.myInf.getN();
-			if (this.myMap[i] > this.myMax) {
-				this.myMax = this.myMap[i];
-			}
-			if (this.myMap[i] < this.myMin) {
-				this.myMin = this.myMap[i];
-			}
-		}
+		this.myMap = null;
+		this.myLocalOptima = new HashMap<Long, long[]>();
+		this.myLocalOptimaOrder = new ArrayList<Long>();
+		this.myLocalOptimumQueries = new HashMap<Long, Long>();
+		this.mySteepestAscentMemos = new HashMap<String, SteepestAscentMemo>();
 	}
 
 	/**
@@ -136,6 +184,15 @@ public class Landscape {
 		return this.myMin;
 	}
 
+	/**
+	 * Return N, the number of elements.
+	 * 
+	 * @return the number of elements
+	 */
+	public int getN() {
+		return this.myInf.getN();
+	}
+
 	/**
 	 * Define the distance between two configurations/locations to be the number
 	 * of different element values.
@@ -210,12 +267,265 @@ public class Landscape {
 	 */
 	public int changeElements(int locId, int locIdMask,
 			HashSet<Integer> changableElements) {
-		int location[] = locIdToLocation(locId);
-		int locationMask[] = locIdToLocation(locIdMask);
+		int mask = 0;
 		for (Integer element : changableElements) {
-			location[element] = locationMask[element];
+			mask |= (1 << (this.myInf.getN() - 1 - element));
+		}
+		return (locId & ~mask) | (locIdMask & mask);
+	}
+
+	/**
+	 * Return the average fitness value of the given neighbours, where each
+	 * neighbour firstly copies the fixed elements from the given location id.
+	 * The neighbours are expected to be all the locations that differ from
+	 * each other only in the elements which are not fixed, therefore the
+	 * result is the average fitness value of the given location id over all
+	 * the possible values of its elements which are not fixed.
+	 * 
+	 * @param locId
+	 *            a non-negative integer, which represents a
+	 *            configuration/location
+	 * @param neighbours
+	 *            a set of location ids, which covers all the possible values of
+	 *            the elements which are not fixed
+	 * @param fixedElements
+	 *            a set of element indices, which indicates the elements copied
+	 *            from the given location id
+	 * @return the average fitness value of the given neighbours after copying
+	 *         the fixed elements from the given location id
+	 */
+	public double getAverageScoreOf(int locId, HashSet<Integer> neighbours,
+			HashSet<Integer> fixedElements) {
+		double averageScore = 0;
+		for (Integer neighbour : neighbours) {
+			averageScore += this.getScoreOfLocId(this.changeElements(
+					neighbour, locId, fixedElements));
+		}
+		return averageScore / neighbours.size();
+	}
+
+	/**
+	 * Return the average fitness value of the given location id over all the
+	 * possible values of the elements indicated by the given bits, i.e. the
+	 * same as above, but the elements which are not fixed are given as the
+	 * bits of a location id and the locations are enumerated directly.
+	 * 
+	 * @param locId
+	 *            a non-negative integer, which represents a
+	 *            configuration/location
+	 * @param freeMask
+	 *            the bits of the elements which are not fixed in a location id
+	 * @return the average fitness value of the given location id over all the
+	 *         possible values of the elements which are not fixed
+	 */
+	public double getAverageScoreOf(int locId, int freeMask) {
+		int fixedLocId = locId & ~freeMask;
+		double averageScore = 0;
+		int subset = 0;
+		do {
+			averageScore += this.getScoreOfLocId(fixedLocId | subset);
+			subset = (subset - freeMask) & freeMask;
+		} while (subset != 0);
+		return averageScore / (1 << Integer.bitCount(freeMask));
+	}
+
+	/**
+	 * Return true if the given location id is a strict local optimum w.r.t.
+	 * the given elements and processing power, i.e. every other location id
+	 * whose distance to it w.r.t. the given elements is smaller or equal to the
+	 * given processing power has a lower fitness value. An agent at such a
+	 * location id never moves, whichever neighbours it tries.
+	 * 
+	 * The answer is looked up in a bitmap over all location ids, which is
+	 * built only when the given elements and processing power have been asked
+	 * for often enough to pay for it, i.e. when the neighbours that the
+	 * agents at local optima would skip add up to the 2^N location ids of the
+	 * landscape. Until then, and for the landscapes which compute their
+	 * fitness values on demand, the answer is false, so the agent explores as
+	 * usual, with the same result. A landscape keeps the 4 most recently used
+	 * bitmaps, i.e. at most 1/16 of the memory of its fitness values.
+	 * 
+	 * @param locId
+	 *            a non-negative integer, which represents a
+	 *            configuration/location
+	 * @param elementMask
+	 *            the bits of the changeable elements in a location id
+	 * @param processingPower
+	 *            a non-negative integer, which indicates the maximum number of
+	 *            changes to a configuration
+	 * @return true if the given location id is a strict local optimum
+	 */
+	public boolean isLocalOptimum(int locId, int elementMask,
+			int processingPower) {
+		long bitmap[] = this.getLocalOptima(elementMask, processingPower);
+		return bitmap != null && (bitmap[locId >>> 6] & (1L << (locId & 63))) != 0;
+	}
+
+	/**
+	 * Return the number of location ids whose distances to a location id
+	 * w.r.t. the given number of elements are between 1 and the processing
+	 * power (inclusive).
+	 * 
+	 * @param elementNum
+	 *            an integer between 0 and N (inclusive), the number of
+	 *            changeable elements
+	 * @param processingPower
+	 *            a non-negative integer, which indicates the maximum number of
+	 *            changes to a configuration
+	 * @return the number of neighbours, excluding the location id itself
+	 */
+	public static long getNeighbourNum(int elementNum, int processingPower) {
+		long result = 0;
+		long binomial = 1; // elementNum choose p
+		for (int p = 1; p <= Math.min(elementNum, processingPower); p++) {
+			binomial = binomial * (elementNum - p + 1) / p;
+			result += binomial;
+		}
+		return result;
+	}
+
+	/**
+	 * Return the memo of steepest ascent climbs on this landscape w.r.t. the
+	 * given elements, free elements and processing power. The memo is created
+	 * when asked for the first time, and kept with the landscape, so that all
+	 * the agents climbing with the same elements share it.
+	 * 
+	 * @param elementMask
+	 *            the bits of the changeable elements in a location id
+	 * @param freeMask
+	 *            the bits of the elements to be averaged over in a location
+	 *            id, 0 for no averaging
+	 * @param processingPower
+	 *            a non-negative integer, which indicates the maximum number of
+	 *            changes to a configuration
+	 * @return the memo of steepest ascent climbs
+	 * @see SteepestAscentMemo
+	 */
+	public synchronized SteepestAscentMemo getSteepestAscentMemo(
+			int elementMask, int freeMask, int processingPower) {
+		String key = elementMask + "," + freeMask + "," + processingPower;
+		SteepestAscentMemo memo = this.mySteepestAscentMemos.get(key);
+		if (memo == null) {
+			memo = new SteepestAscentMemo(this, elementMask, freeMask,
+					processingPower);
+			this.mySteepestAscentMemos.put(key, memo);
+		}
+		return memo;
+	}
+
+	/**
+	 * Return the bitmap of the strict local optima w.r.t. the given elements
+	 * and processing power, build it if it has been asked for often enough, or
+	 * return null. When a new bitmap is kept, the least recently used one is
+	 * dropped if there are too many. With more than one worker thread, the
+	 * words of the bitmap are split into one chunk for each thread.
+	 * 
+	 * @param elementMask
+	 *            the bits of the changeable elements in a location id
+	 * @param processingPower
+	 *            a non-negative integer, which indicates the maximum number of
+	 *            changes to a configuration
+	 * @return the bitmap of the strict local optima, bit (locId mod 64) of
+	 *         word (locId / 64) for each location id, or null
+	 */
+	private synchronized long[] getLocalOptima(int elementMask,
+			int processingPower) {
+		Long key = ((long) elementMask << 32) | processingPower;
+		long bitmap[] = this.myLocalOptima.get(key);
+		if (bitmap != null) {
+			if (this.myLocalOptimaOrder.get(this.myLocalOptimaOrder.size() - 1) != key
+					.longValue()) {
+				this.myLocalOptimaOrder.remove(key);
+				this.myLocalOptimaOrder.add(key);
+			}
+			return bitmap;
+		}
+		// each answer at a local optimum saves looking at its neighbours,
+		// whereas the bitmap looks at (a few neighbours of) all location ids
+		Long queries = this.myLocalOptimumQueries.get(key);
+		queries = (queries == null ? 0 : queries) + 1;
+		if (queries
+				* getNeighbourNum(Integer.bitCount(elementMask),
+						processingPower) < (1L << this.myInf.getN())) {
+			this.myLocalOptimumQueries.put(key, queries);
+			return null;
+		}
+		this.myLocalOptimumQueries.remove(key);
+		// all the changes of 1 to processing power elements, as bits to be
+		// toggled in a location id
+		ArrayList<Integer> flipList = new ArrayList<Integer>();
+		int subset = (0 - elementMask) & elementMask;
+		while (subset != 0) {
+			if (Integer.bitCount(subset) <= processingPower) {
+				flipList.add(subset);
+			}
+			subset = (subset - elementMask) & elementMask;
+		}
+		final int flips[] = new int[flipList.size()];
+		for (int i = 0; i < flips.length; i++) {
+			flips[i] = flipList.get(i);
+		}
+		final long result[] = new long[(int) (((1L << this.myInf.getN()) + 63) >>> 6)];
+		if (ThreadPool.isParallel()) {
+			int chunkNum = Math.min(ThreadPool.getThreadNum(), result.length);
+			ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+			for (int c = 0; c < chunkNum; c++) {
+				final int from = (int) ((long) result.length * c / chunkNum);
+				final int to = (int) ((long) result.length * (c + 1) / chunkNum);
+				tasks.add(new Callable<Object>() {
+					@Override
+					public Object call() {
+						Landscape.this.markLocalOptima(result, flips, from, to);
+						return null;
+					}
+				});
+			}
+			ThreadPool.invokeAll(tasks);
+		} else {
+			this.markLocalOptima(result, flips, 0, result.length);
+		}
+		if (this.myLocalOptimaOrder.size() == MAX_LOCAL_OPTIMA) {
+			this.myLocalOptima.remove(this.myLocalOptimaOrder.remove(0));
+		}
+		this.myLocalOptima.put(key, result);
+		this.myLocalOptimaOrder.add(key);
+		return result;
+	}
+
+	/**
+	 * Set the bits of the strict local optima in the given words of the
+	 * bitmap. Each word is assembled locally and written once, so that
+	 * different chunks of words can be filled in by different threads.
+	 * 
+	 * @param bitmap
+	 *            the bitmap to be filled in
+	 * @param flips
+	 *            the bits to be toggled in a location id to reach each
+	 *            neighbour
+	 * @param fromWord
+	 *            the first word to be filled in (inclusive)
+	 * @param toWord
+	 *            the last word to be filled in (exclusive)
+	 */
+	private void markLocalOptima(long bitmap[], int flips[], int fromWord,
+			int toWord) {
+		int locIdNum = 1 << this.myInf.getN();
+		for (int w = fromWord; w < toWord; w++) {
+			long word = 0L;
+			int first = w << 6;
+			int last = Math.min(first + 64, locIdNum);
+			for (int locId = first; locId < last; locId++) {
+				double score = this.getScoreOfLocId(locId);
+				boolean isOptimum = true;
+				for (int f = 0; f < flips.length && isOptimum; f++) {
+					isOptimum = this.getScoreOfLocId(locId ^ flips[f]) < score;
+				}
+				if (isOptimum) {
+					word |= 1L << (locId - first);
+				}
+			}
+			bitmap[w] = word;
 		}
-		return locationToLocId(location);
 	}
 
 	/**
@@ -230,9 +540,9 @@ public class Landscape {
 		result += ("bias\t: " + this.myBias + "\n");
 		result += ("type\t: " + this.myShockNum + "\n");
 		result += ("step\t: " + this.myStepNum + "\n");
-		for (int i = 0; i < this.myMap.length; i++) {
+		for (int i = 0; i < (1 << this.myInf.getN()); i++) {
 			result += (i + "\t" + Arrays.toString(this.locIdToLocation(i))
-					+ " -> " + this.myMap[i] + "\n");
+					+ " -> " + this.getScoreOfLocId(i) + "\n");
 		}
 		return result;
 	}
@@ -256,22 +566,6 @@ public class Landscape {
 		return location;
 	}
 
-	/**
-	 * The reverse function of locIdToLocation.
-	 * 
-	 * @param location
-	 *            an integer array, which represents a configuration/location
-	 * @return a location id
-	 */
-	private int locationToLocId(int[] location) {
-		int locId = 0;
-		for (int i = 0; i < location.length; i++) {
-			locId <<= 1;
-			locId += location[i];
-		}
-		return locId;
-	}
-
 	/**
 	 * Return a location id whose binary form is one bit different from the
 	 * given location id, and the position of the different bit is determined by
@@ -306,7 +600,7 @@ public class Landscape {
 	 * 
 	 * @return the uncertainty value determined by the current step number
 	 */
-	private double getCurrentUncertainty() {
+	protected double getCurrentUncertainty() {
 		return (1.0 - (double) (this.myStepNum) / this.myInf.getN())
 				* this.myBias;
 	}
@@ -315,8 +609,8 @@ public class Landscape {
 	 * Print the table contents, i.e., the fitness values of 2^N configurations
 	 */
 	public void printTableContents() {
-		for (int i = 0; i < this.myMap.length; i++) {
-			System.out.println(this.myMap[i]);
+		for (int i = 0; i < (1 << this.myInf.getN()); i++) {
+			System.out.println(this.getScoreOfLocId(i));
 		}
 	}
 
@@ -0,0 +1,275 @@
+package landscape;
+
+import util.RandomGen;
+
+import java.util.HashSet;
+
+public class LazyLandscape extends Landscape {
+	private int myN;
+	private FitnessContributionTable myFit;
+	private int myShockNum;
+	private double myUncertainty;
+	/**
+	 * seed of the random stream of uncertainty values, the value of element j
+	 * at location id i is at counter i x N + j
+	 */
+	private long myNoiseSeed;
+	/**
+	 * one evaluator for each thread, which stays close to the recently scored
+	 * location ids
+	 */
+	private ThreadLocal<DeltaEvaluator> myAnchor;
+
+	private boolean myIsScanned;
+	private double myMax, myMin; // the local max and min
+
+	/**
+	 * Create a landscape which does not store the fitness values of its 2^N
+	 * locations. Instead, the fitness value of a location id is evaluated on
+	 * demand from the fitness contribution table, in the same way as a stored
+	 * landscape computes it. The uncertainty values are taken from a random
+	 * stream whose seed is drawn once from the global random generator, so
+	 * that the same location id always gets the same fitness value.
+	 * 
+	 * Each thread keeps a delta evaluator at the last location id it scored
+	 * from scratch. Location ids close to it, e.g. the neighbours of an
+	 * agent's current location, are scored by looking up only the
+	 * contributions of the changed elements and their dependants. Without
+	 * uncertainty, i.e. bias = 0 or all elements implemented, the score is the
+	 * evaluator's running sum of the contributions, updated by the changed
+	 * ones, so a neighbour costs O(changes x K) instead of O(N). The sum is
+	 * kept in fixed point, so a location gets the same score whichever
+	 * evaluator scores it, but the score may differ in the last bits from
+	 * the sum of the N contributions in order, as in a stored landscape. The
+	 * uncertainty values are drawn per location id and element, so while the
+	 * uncertainty is above 0 a score still takes N random values and sums all
+	 * N terms, and only the table look-ups are saved.
+	 * 
+	 * The maximum and minimum are found by one scan over all 2^N location ids
+	 * when they are first needed, i.e. when the first line of output is
+	 * written in the shock of the landscape of all N implemented elements.
+	 * So each shock still costs one pass over the landscape, which takes most
+	 * of the time of a run for large N (about N &gt;= 22), but no memory;
+	 * since all elements are implemented there, each step of the pass only
+	 * updates the running sum.
+	 * 
+	 * @param inf
+	 *            an influence matrix object
+	 * @param bias
+	 *            a value between 0 and 1, which indicates the amount of
+	 *            uncertainty at the beginning
+	 * @param shockNum
+	 *            a non-negative integer, which indicates the shock number
+	 * @param stepNum
+	 *            an integer between 0 and N (inclusive), which indicates the
+	 *            number of implemented elements
+	 * @param fit
+	 *            a fitness contribution table object
+	 * @see DeltaEvaluator
+	 */
+	public LazyLandscape(InfluenceMatrix inf, double bias, final int shockNum,
+			int stepNum, final FitnessContributionTable fit) {
+		super(inf, bias, shockNum, stepNum);
+		this.myN = inf.getN();
+		this.myFit = fit;
+		this.myShockNum = shockNum;
+		this.myUncertainty = this.getCurrentUncertainty();
+		this.myNoiseSeed = RandomGen.getRandomGen().nextLong();
+		this.myAnchor = new ThreadLocal<DeltaEvaluator>() {
+			@Override
+			protected DeltaEvaluator initialValue() {
+				return new DeltaEvaluator(fit, shockNum);
+			}
+		};
+		this.myIsScanned = false;
+	}
+
+	/**
+	 * Evaluate the fitness value of the given location id. If more than half
+	 * of the contributions change from the thread's evaluator, the evaluator
+	 * moves to the given location id.
+	 */
+	@Override
+	public double getScoreOfLocId(int locId) {
+		DeltaEvaluator evaluator = this.myAnchor.get();
+		int affected = evaluator.getAffectedMaskOf(locId);
+		if (2 * Integer.bitCount(affected) >= this.myN) {
+			evaluator.moveTo(locId);
+			return this.getScoreOf(locId, evaluator);
+		}
+		if (this.myUncertainty == 0) {
+			return evaluator.getTotalOf(locId, affected) / this.myN;
+		}
+		return this.getScoreOf(locId, evaluator.getContributionsOf(locId));
+	}
+
+	/**
+	 * Return the maximum value in the landscape, scanning all 2^N location ids
+	 * when called for the first time.
+	 */
+	@Override
+	public double getMax() {
+		this.scan();
+		return this.myMax;
+	}
+
+	/**
+	 * Return the minimum value in the landscape, scanning all 2^N location ids
+	 * when called for the first time.
+	 */
+	@Override
+	public double getMin() {
+		this.scan();
+		return this.myMin;
+	}
+
+	/**
+	 * Return false, since a bitmap of local optima would score all 2^N
+	 * location ids and some of their neighbours on demand, which takes much
+	 * longer than the explorations it saves, and take memory which the lazy
+	 * landscape is meant to save.
+	 */
+	@Override
+	public boolean isLocalOptimum(int locId, int elementMask,
+			int processingPower) {
+		return false;
+	}
+
+	/**
+	 * Walk through all the possible values of the elements which are not fixed
+	 * in Gray code order, so that each step changes one element and is scored
+	 * by a delta evaluator. The given neighbours are not visited.
+	 */
+	@Override
+	public double getAverageScoreOf(int locId, HashSet<Integer> neighbours,
+			HashSet<Integer> fixedElements) {
+		int freeMask = 0;
+		for (int i = 0; i < this.myN; i++) {
+			if (!fixedElements.contains(i)) {
+				freeMask |= 1 << (this.myN - 1 - i);
+			}
+		}
+		return this.getAverageScoreOf(locId, freeMask);
+	}
+
+	/**
+	 * Walk through all the subsets of the free bits in Gray code order with a
+	 * delta evaluator.
+	 */
+	@Override
+	public double getAverageScoreOf(int locId, int freeMask) {
+		int freeBits[] = new int[Integer.bitCount(freeMask)];
+		int rest = freeMask;
+		for (int i = 0; i < freeBits.length; i++) {
+			freeBits[i] = Integer.lowestOneBit(rest);
+			rest &= rest - 1;
+		}
+		DeltaEvaluator evaluator = new DeltaEvaluator(this.myFit,
+				this.myShockNum);
+		int current = locId & ~freeMask;
+		evaluator.moveTo(current);
+		double averageScore = this.getScoreOf(current, evaluator);
+		for (int g = 1; g < (1 << freeBits.length); g++) {
+			current ^= freeBits[Integer.numberOfTrailingZeros(g)];
+			evaluator.moveTo(current);
+			averageScore += this.getScoreOf(current, evaluator);
+		}
+		return averageScore / (1 << freeBits.length);
+	}
+
+	/**
+	 * Find the maximum and minimum values by walking through all location ids
+	 * in Gray code order with a delta evaluator.
+	 */
+	private synchronized void scan() {
+		if (this.myIsScanned) {
+			return;
+		}
+		DeltaEvaluator evaluator = new DeltaEvaluator(this.myFit,
+				this.myShockNum);
+		double max = 0.0;
+		double min = 1.0;
+		int current = 0;
+		for (long g = 0; g < (1L << this.myN); g++) {
+			if (g > 0) {
+				current ^= 1 << Long.numberOfTrailingZeros(g);
+			}
+			evaluator.moveTo(current);
+			double score = this.getScoreOf(current, evaluator);
+			if (score > max) {
+				max = score;
+			}
+			if (score < min) {
+				min = score;
+			}
+		}
+		this.myMax = max;
+		this.myMin = min;
+		this.myIsScanned = true;
+	}
+
+	/**
+	 * Return the fitness value of the given location id whose contributions
+	 * are given, mixing in the uncertainty values of the location.
+	 * 
+	 * @param locId
+	 *            a non-negative integer, which represents a
+	 *            configuration/location
+	 * @param contributions
+	 *            the fitness contribution value of each element at the given
+	 *            location id
+	 * @return the fitness value of the given location id
+	 */
+	private double getScoreOf(int locId, double[] contributions) {
+		double value = 0.0;
+		for (int j = 0; j < this.myN; j++) {
+			value += ((1 - this.myUncertainty) * contributions[j] + this.myUncertainty
+					* this.getNoiseOf(locId, j));
+		}
+		return value / this.myN;
+	}
+
+	/**
+	 * Same as above, but the contributions are taken from an evaluator at the
+	 * given location id, and without uncertainty the score is its running sum
+	 * of the contributions.
+	 * 
+	 * @param locId
+	 *            a non-negative integer, which represents a
+	 *            configuration/location
+	 * @param evaluator
+	 *            a delta evaluator at the given location id
+	 * @return the fitness value of the given location id
+	 */
+	private double getScoreOf(int locId, DeltaEvaluator evaluator) {
+		if (this.myUncertainty == 0) {
+			return evaluator.getTotal() / this.myN;
+		}
+		double value = 0.0;
+		for (int j = 0; j < this.myN; j++) {
+			value += ((1 - this.myUncertainty) * evaluator.getContributionOf(j) + this.myUncertainty
+					* this.getNoiseOf(locId, j));
+		}
+		return value / this.myN;
+	}
+
+	/**
+	 * Return the uncertainty value of the given element at the given location
+	 * id. No random value is generated when there is no uncertainty.
+	 * 
+	 * @param locId
+	 *            a non-negative integer, which represents a
+	 *            configuration/location
+	 * @param element
+	 *            an integer between 0 and N-1 (inclusive)
+	 * @return the uncertainty value of the given element at the given location
+	 *         id
+	 */
+	private double getNoiseOf(int locId, int element) {
+		if (this.myUncertainty == 0) {
+			return 0.0;
+		}
+		return RandomGen.hashDouble(this.myNoiseSeed, (long) locId * this.myN
+				+ element);
+	}
+}
@@ -0,0 +1,201 @@
+package landscape;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class SteepestAscentMemo {
+	private Landscape myLandscape;
+	private int myFreeMask;
+	/**
+	 * all the changes of 1 to processing power changeable elements, as bits to
+	 * be toggled in a location id
+	 */
+	private int myFlips[];
+	/**
+	 * the next location id of each location id, the location id itself for a
+	 * local optimum
+	 */
+	private int mySuccessors[];
+	/**
+	 * the local optimum reached from each location id, -1 if not resolved yet
+	 */
+	private int myRoots[];
+	/**
+	 * the number of moves from each location id to its local optimum
+	 */
+	private int myDistances[];
+
+	/**
+	 * Create a memo of steepest ascent climbs on the given landscape w.r.t. the
+	 * given changeable elements and processing power. A steepest ascent step
+	 * moves to the best neighbour if it is strictly better than the current
+	 * location, where ties are broken by the lowest location id. Since the
+	 * steps are deterministic, every location id belongs to the basin of
+	 * exactly one local optimum.
+	 * 
+	 * The memo resolves a climb once and records the local optimum and the
+	 * number of moves for every location id on its path, so that a later climb
+	 * which reaches any of these location ids finishes at once (i.e. path
+	 * compression).
+	 * 
+	 * When the given free bits are not 0, the score of a location id is its
+	 * average fitness value over all the possible values of the free
+	 * elements, otherwise it is the fitness value.
+	 * 
+	 * @param landscape
+	 *            a landscape object
+	 * @param elementMask
+	 *            the bits of the changeable elements in a location id
+	 * @param freeMask
+	 *            the bits of the elements to be averaged over in a location
+	 *            id, 0 for no averaging
+	 * @param processingPower
+	 *            a non-negative integer, which indicates the maximum number of
+	 *            changes to a configuration
+	 */
+	public SteepestAscentMemo(Landscape landscape, int elementMask,
+			int freeMask, int processingPower) {
+		this.myLandscape = landscape;
+		this.myFreeMask = freeMask;
+		ArrayList<Integer> flipList = new ArrayList<Integer>();
+		int subset = (0 - elementMask) & elementMask;
+		while (subset != 0) {
+			if (Integer.bitCount(subset) <= processingPower) {
+				flipList.add(subset);
+			}
+			subset = (subset - elementMask) & elementMask;
+		}
+		this.myFlips = new int[flipList.size()];
+		for (int i = 0; i < this.myFlips.length; i++) {
+			this.myFlips[i] = flipList.get(i);
+		}
+		this.mySuccessors = null;
+		this.myRoots = null;
+		this.myDistances = null;
+	}
+
+	/**
+	 * Return the next location id of steepest ascent from the given location
+	 * id, or the given location id itself if it is a local optimum.
+	 * 
+	 * @param locId
+	 *            a non-negative integer, which represents a
+	 *            configuration/location
+	 * @return the next location id of steepest ascent
+	 */
+	public synchronized int getSuccessorOf(int locId) {
+		this.resolve(locId);
+		return this.mySuccessors[locId];
+	}
+
+	/**
+	 * Return the local optimum reached by steepest ascent from the given
+	 * location id.
+	 * 
+	 * @param locId
+	 *            a non-negative integer, which represents a
+	 *            configuration/location
+	 * @return the local optimum reached from the given location id
+	 */
+	public synchronized int getRootOf(int locId) {
+		this.resolve(locId);
+		return this.myRoots[locId];
+	}
+
+	/**
+	 * Return the number of moves of steepest ascent from the given location
+	 * id to its local optimum.
+	 * 
+	 * @param locId
+	 *            a non-negative integer, which represents a
+	 *            configuration/location
+	 * @return the number of moves from the given location id to its local
+	 *         optimum
+	 */
+	public synchronized int getDistanceOf(int locId) {
+		this.resolve(locId);
+		return this.myDistances[locId];
+	}
+
+	/**
+	 * Find the next location id of steepest ascent from the given location id
+	 * by scoring all its neighbours.
+	 * 
+	 * @param locId
+	 *            a non-negative integer, which represents a
+	 *            configuration/location
+	 * @return the next location id of steepest ascent
+	 */
+	private int findSuccessorOf(int locId) {
+		int best = locId;
+		double bestScore = this.getScoreOf(locId);
+		for (int f = 0; f < this.myFlips.length; f++) {
+			int neighbour = locId ^ this.myFlips[f];
+			double score = this.getScoreOf(neighbour);
+			// only a strictly better neighbour is a move, the lowest location
+			// id wins among the equally best ones
+			if (score > bestScore
+					|| (score == bestScore && best != locId && neighbour < best)) {
+				best = neighbour;
+				bestScore = score;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Follow the steepest ascent from the given location id until a resolved
+	 * location id or a local optimum is reached, then record the local optimum
+	 * and the number of moves for every location id on the path.
+	 * 
+	 * @param locId
+	 *            a non-negative integer, which represents a
+	 *            configuration/location
+	 */
+	private void resolve(int locId) {
+		if (this.myRoots == null) {
+			this.mySuccessors = new int[1 << this.myLandscape.getN()];
+			this.myRoots = new int[this.mySuccessors.length];
+			this.myDistances = new int[this.mySuccessors.length];
+			Arrays.fill(this.myRoots, -1);
+		}
+		ArrayList<Integer> path = new ArrayList<Integer>();
+		int current = locId;
+		while (this.myRoots[current] < 0) {
+			int next = this.findSuccessorOf(current);
+			this.mySuccessors[current] = next;
+			if (next == current) {
+				this.myRoots[current] = current;
+				this.myDistances[current] = 0;
+				break;
+			}
+			path.add(current);
+			current = next;
+		}
+		// compress the path, from the end to the start
+		int root = this.myRoots[current];
+		int distance = this.myDistances[current];
+		for (int i = path.size() - 1; i >= 0; i--) {
+			distance++;
+			this.myRoots[path.get(i)] = root;
+			this.myDistances[path.get(i)] = distance;
+		}
+	}
+
+	/**
+	 * Return the score of the given location id, i.e. its average fitness
+	 * value over the free elements, or its fitness value if there are no free
+	 * elements.
+	 * 
+	 * @param locId
+	 *            a non-negative integer, which represents a
+	 *            configuration/location
+	 * @return the score of the given location id
+	 */
+	private double getScoreOf(int locId) {
+		if (this.myFreeMask == 0) {
+			return this.myLandscape.getScoreOfLocId(locId);
+		}
+		return this.myLandscape.getAverageScoreOf(locId, this.myFreeMask);
+	}
+}
@@ -0,0 +1,127 @@
+package simulation;
+
+import agent.Agent;
+import util.RandomGen;
+import util.RunningStatistics;
+
+import java.util.ArrayList;
+
+public class AdaptiveRunner {
+	private Case myCase;
+	private StoppingRule myRule;
+	private String myTypes[];
+	/**
+	 * the mean final performance of each agent type per run
+	 */
+	private RunningStatistics myTypeStats[];
+	/**
+	 * the difference of the mean final performance between each two agent
+	 * types per run, in the order (0,1), (0,2), ..., (1,2), ...
+	 */
+	private RunningStatistics myDifferenceStats[];
+	private int myRuns;
+
+	/**
+	 * Create a runner which takes the runs of the given case in batches until
+	 * its stopping rule is satisfied. The runs use the seeds 0, 1, 2, ... in
+	 * order, the same as fixed runs, so that the output files of the first R
+	 * adaptive runs are the same as those of R fixed runs.
+	 * 
+	 * @param c
+	 *            a case object with a stopping rule
+	 * @see StoppingRule
+	 */
+	public AdaptiveRunner(Case c) {
+		this.myCase = c;
+		this.myRule = c.getStoppingRule();
+		ArrayList<Agent> agents = c.getAgentList();
+		this.myTypes = new String[agents.size()];
+		this.myTypeStats = new RunningStatistics[agents.size()];
+		for (int i = 0; i < agents.size(); i++) {
+			this.myTypes[i] = agents.get(i).getType();
+			this.myTypeStats[i] = new RunningStatistics();
+		}
+		this.myDifferenceStats = new RunningStatistics[agents.size()
+				* (agents.size() - 1) / 2];
+		for (int i = 0; i < this.myDifferenceStats.length; i++) {
+			this.myDifferenceStats[i] = new RunningStatistics();
+		}
+		this.myRuns = 0;
+	}
+
+	/**
+	 * Take the runs batch by batch, check the stopping rule after each batch,
+	 * and report the achieved precision when stopped.
+	 */
+	public void run() {
+		String reason = "maximum number of runs";
+		while (this.myRuns < this.myRule.getMaxRuns()) {
+			int end = Math.min(this.myRuns + this.myRule.getBatchSize(),
+					this.myRule.getMaxRuns());
+			for (; this.myRuns < end; this.myRuns++) {
+				RandomGen.setSeed(this.myRuns);
+				Simulator s = new Simulator(this.myCase);
+				s.startSimulation();
+				this.collect(s);
+			}
+			if (this.myRule.isPrecise(this.myTypeStats)) {
+				reason = "target width";
+				break;
+			}
+			if (this.myRule.isSignificant(this.myDifferenceStats)) {
+				reason = "significant differences";
+				break;
+			}
+		}
+		this.report(reason);
+	}
+
+	/**
+	 * Add the mean final performance of each agent type in the given run to
+	 * the running statistics.
+	 * 
+	 * @param s
+	 *            a simulator which has finished a run
+	 */
+	private void collect(Simulator s) {
+		double means[] = new double[this.myTypes.length];
+		for (int i = 0; i < this.myTypes.length; i++) {
+			means[i] = s.getMeanFinalScoreOf(this.myTypes[i]);
+			this.myTypeStats[i].add(means[i]);
+		}
+		int k = 0;
+		for (int i = 0; i < this.myTypes.length; i++) {
+			for (int j = i + 1; j < this.myTypes.length; j++) {
+				this.myDifferenceStats[k++].add(means[i] - means[j]);
+			}
+		}
+	}
+
+	/**
+	 * Print the number of runs, the reason to stop, and the mean and the half
+	 * width of the confidence interval of each agent type and each difference.
+	 * 
+	 * @param reason
+	 *            a string, which indicates why the runs stopped
+	 */
+	private void report(String reason) {
+		double confidence = this.myRule.getConfidence();
+		System.out.println("adaptive runs : " + this.myRuns + " (stopped by "
+				+ reason + ")");
+		for (int i = 0; i < this.myTypes.length; i++) {
+			System.out.println("\t" + this.myTypes[i] + "\t: "
+					+ this.myTypeStats[i].getMean() + " +/- "
+					+ this.myTypeStats[i].getHalfWidth(confidence));
+		}
+		int k = 0;
+		for (int i = 0; i < this.myTypes.length; i++) {
+			for (int j = i + 1; j < this.myTypes.length; j++) {
+				System.out.println("\t" + this.myTypes[i] + " - "
+						+ this.myTypes[j] + "\t: "
+						+ this.myDifferenceStats[k].getMean() + " +/- "
+						+ this.myDifferenceStats[k].getHalfWidth(confidence));
+				k++;
+			}
+		}
+	}
+}
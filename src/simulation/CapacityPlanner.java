@@ -0,0 +1,194 @@
+package simulation;
+
+import agent.Agent;
+import landscape.InfluenceMatrix;
+import util.OutputWriter;
+import util.RandomGen;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.TreeSet;
+
+public class CapacityPlanner {
+	private static final double MEGABYTE = 1 << 20;
+	/**
+	 * the runs of the calibration case which warm up the code, and the runs
+	 * which are timed
+	 */
+	private static final int WARM_UP_RUNS = 3;
+	private static final int TIMED_RUNS = 5;
+
+	/**
+	 * the measured nanoseconds per unit of landscape cost and of exploration
+	 * cost on this host
+	 */
+	private double myLandscapeNanos;
+	private double myExplorationNanos;
+	private int myCaseNum;
+	private long myTotalRuns;
+	private long myTotalLines;
+	private double myTotalOutputBytes;
+	private double myTotalSeconds;
+	/**
+	 * the largest memory of one run and the case it belongs to
+	 */
+	private long myPeakBytes;
+	private int myPeakCase;
+	private boolean myHasRaces;
+
+	/**
+	 * Create a planner which estimates the memory, the output and the time of
+	 * the cases given one by one, without running them. The time is
+	 * calibrated on this host by a short benchmark of landscape construction
+	 * and exploration, i.e. a few runs of a small case whose output is
+	 * discarded, in nanoseconds per unit of the cost model.
+	 * 
+	 * @see CostModel
+	 */
+	public CapacityPlanner() {
+		this.calibrate();
+		this.myCaseNum = 0;
+		this.myTotalRuns = 0;
+		this.myTotalLines = 0;
+		this.myTotalOutputBytes = 0;
+		this.myTotalSeconds = 0;
+		this.myPeakBytes = 0;
+		this.myPeakCase = -1;
+		this.myHasRaces = false;
+		System.out.println("calibration : "
+				+ format(this.myLandscapeNanos) + " ns per landscape value, "
+				+ format(this.myExplorationNanos) + " ns per fitness look-up");
+		System.out.println("CASE\tN\tK\tSHOCKS\tLANDSCAPE\tRUNS\tLANDSCAPES_MB"
+				+ "\tTABLE_MB\tROWS\tOUTPUT_MB\tSECONDS");
+	}
+
+	/**
+	 * Estimate the given case and print one line of the table, i.e. the
+	 * memory of the landscapes and of the fitness contribution table of one
+	 * run, and the output lines, output size and time of all the runs. An
+	 * adaptive case is estimated with its maximum number of runs.
+	 * 
+	 * @param c
+	 *            a case object
+	 */
+	public void add(Case c) {
+		int caseIndex = this.myCaseNum++;
+		InfluenceMatrix inf = c.getInf();
+		int runs = c.getRuns();
+		if (c.isAdaptive()) {
+			runs = c.getStoppingRule().getMaxRuns();
+		}
+		if (!c.getRaces().isEmpty()) {
+			this.myHasRaces = true;
+		}
+		long landscapeBytes = CostModel.getLandscapeBytes(c);
+		long tableBytes = CostModel.getContributionTableBytes(c);
+		long lines = runs * CostModel.getOutputLines(c);
+		double outputBytes = (double) runs * CostModel.getOutputBytes(c);
+		double seconds = runs
+				* (CostModel.getLandscapeCost(c) * this.myLandscapeNanos + CostModel
+						.getExplorationCost(c) * this.myExplorationNanos)
+				/ 1e9;
+		System.out.println(caseIndex + "\t" + inf.getN() + "\t" + inf.getK()
+				+ "\t" + c.getTauList().size() + "\t" + c.getLandscapeType()
+				+ "\t" + (c.isAdaptive() ? "<=" : "") + runs + "\t"
+				+ format(landscapeBytes / MEGABYTE) + "\t"
+				+ format(tableBytes / MEGABYTE) + "\t" + lines + "\t"
+				+ format(outputBytes / MEGABYTE) + "\t" + format(seconds));
+		this.myTotalRuns += runs;
+		this.myTotalLines += lines;
+		this.myTotalOutputBytes += outputBytes;
+		this.myTotalSeconds += seconds;
+		if (CostModel.getRunBytes(c) > this.myPeakBytes) {
+			this.myPeakBytes = CostModel.getRunBytes(c);
+			this.myPeakCase = caseIndex;
+		}
+	}
+
+	/**
+	 * Print the total of the cases given so far, and how many of the largest
+	 * runs fit in the memory budget of the current heap at the same time.
+	 */
+	public void finish() {
+		System.out.println("total\t\t\t\t\t" + this.myTotalRuns + "\t\t\t"
+				+ this.myTotalLines + "\t"
+				+ format(this.myTotalOutputBytes / MEGABYTE) + "\t"
+				+ format(this.myTotalSeconds));
+		if (this.myPeakCase < 0) {
+			return;
+		}
+		long budget = (long) (0.8 * Runtime.getRuntime().maxMemory());
+		System.out.println("largest run : case " + this.myPeakCase
+				+ ", about " + format(this.myPeakBytes / MEGABYTE)
+				+ " MB, i.e. " + Math.max(budget / this.myPeakBytes, 0)
+				+ " run(s) at a time in 80% of the current heap of "
+				+ format(Runtime.getRuntime().maxMemory() / MEGABYTE) + " MB");
+		System.out.println("the time is for 1 worker, before the landscapes "
+				+ "are shared between consecutive cases");
+		if (this.myHasRaces) {
+			System.out.println("the races are not included");
+		}
+	}
+
+	/**
+	 * Time a few runs of a small case with 2 shocks, N = 12 and K = 3, and
+	 * set the nanoseconds per unit of landscape cost and of exploration cost.
+	 */
+	private void calibrate() {
+		int n = 12;
+		InfluenceMatrix inf = new InfluenceMatrix(n, 3);
+		ArrayList<HashSet<Integer>> plan = new ArrayList<HashSet<Integer>>();
+		for (int i = 0; i < 2; i++) {
+			HashSet<Integer> iteration = new HashSet<Integer>();
+			for (int j = i * n / 2; j < (i + 1) * n / 2; j++) {
+				iteration.add(j);
+			}
+			plan.add(iteration);
+		}
+		ArrayList<Agent> agents = new ArrayList<Agent>();
+		agents.add(new Agent(inf, plan, 1, "exhaustive", 20, 1, false, true,
+				false, false));
+		agents.add(new Agent(inf, plan, 2, "random", 20, 0.5, false, false,
+				false, false));
+		agents.add(new Agent(inf, plan, 1, "averaging", 5, 1, true, true,
+				false, false));
+		TreeSet<Integer> tauList = new TreeSet<Integer>();
+		tauList.add(10);
+		tauList.add(100000);
+		Case c = new Case(WARM_UP_RUNS + TIMED_RUNS, inf, 0.5, 0.5, tauList,
+				agents, "full", false, false, "uniform", null,
+				new ArrayList<PlanRace>());
+		long landscapeTime = 0;
+		long explorationTime = 0;
+		OutputWriter.setDiscarding(true);
+		for (int i = 0; i < c.getRuns(); i++) {
+			RandomGen.setSeed(i);
+			long start = System.nanoTime();
+			Simulator s = new Simulator(c);
+			long built = System.nanoTime();
+			s.startSimulation();
+			long end = System.nanoTime();
+			if (i >= WARM_UP_RUNS) {
+				landscapeTime += built - start;
+				explorationTime += end - built;
+			}
+		}
+		OutputWriter.setDiscarding(false);
+		Simulator.releaseContributionTable();
+		this.myLandscapeNanos = landscapeTime
+				/ (TIMED_RUNS * CostModel.getLandscapeCost(c));
+		this.myExplorationNanos = explorationTime
+				/ (TIMED_RUNS * CostModel.getExplorationCost(c));
+	}
+
+	/**
+	 * Return the given value with 3 decimal places.
+	 * 
+	 * @param value
+	 *            a value
+	 * @return a string of the value
+	 */
+	private static String format(double value) {
+		return String.format("%.3f", value);
+	}
+}
@@ -13,6 +13,12 @@ public class Case {
 	private double myDelta;
 	private ArrayList<Integer> myTauList;
 	private ArrayList<Agent> myAgentList;
+	private String myLandscapeType;
+	private boolean myIsExact;
+	private boolean myIsCommonRandom;
+	private String myStarts;
+	private StoppingRule myStoppingRule;
+	private ArrayList<PlanRace> myRaces;
 
 	/**
 	 * Create a new Case object with the given parameters.
@@ -33,15 +39,48 @@ public class Case {
 	 *            a list of shock times
 	 * @param agentList
 	 *            a list of agent objects
+	 * @param landscapeType
+	 *            a string, which indicates how the landscapes are generated,
+	 *            "full" for landscapes from a stored fitness contribution
+	 *            table, "fused" for landscapes from contributions generated on
+	 *            the fly, "composite" for landscapes stored as one
+	 *            sub-landscape for each connected component and "lazy" for
+	 *            landscapes evaluated on demand
+	 * @param isExact
+	 *            a boolean, which indicates if the expected curves of the
+	 *            steepest ascent agents are computed exactly instead of
+	 *            sampled
+	 * @param isCommonRandom
+	 *            a boolean, which indicates if the nth agents of all the agent
+	 *            types share their start location and candidate choices
+	 * @param starts
+	 *            a string, which indicates how the start locations are placed,
+	 *            "uniform" for independent uniform random starts, "stratified"
+	 *            for one random start in each stratum of consecutive location
+	 *            ids and "latin" for a Latin hypercube over the elements
+	 * @param stoppingRule
+	 *            a stopping rule for adaptive runs, or null for the fixed
+	 *            number of runs
+	 * @param races
+	 *            a list of plan races, which are run with the environment of
+	 *            this case
 	 */
 	public Case(int runs, InfluenceMatrix inf, double bias, double delta,
-			TreeSet<Integer> tauList, ArrayList<Agent> agentList) {
+			TreeSet<Integer> tauList, ArrayList<Agent> agentList,
+			String landscapeType, boolean isExact, boolean isCommonRandom,
+			String starts, StoppingRule stoppingRule, ArrayList<PlanRace> races) {
 		this.myRuns = runs;
 		this.myInf = inf;
 		this.myBias = bias;
 		this.myDelta = delta;
 		this.myTauList = new ArrayList<Integer>(tauList);
 		this.myAgentList = agentList;
+		this.myLandscapeType = landscapeType;
+		this.myIsExact = isExact;
+		this.myIsCommonRandom = isCommonRandom;
+		this.myStarts = starts;
+		this.myStoppingRule = stoppingRule;
+		this.myRaces = races;
 	}
 
 	/**
@@ -98,6 +137,122 @@ public class Case {
 		return new ArrayList<Agent>(this.myAgentList);
 	}
 
+	/**
+	 * Return the landscape type.
+	 * 
+	 * @return the landscape type
+	 */
+	public String getLandscapeType() {
+		return this.myLandscapeType;
+	}
+
+	/**
+	 * Return true if the expected curves of the steepest ascent agents are
+	 * computed exactly.
+	 * 
+	 * @return true if the expected curves are computed exactly
+	 */
+	public boolean isExact() {
+		return this.myIsExact;
+	}
+
+	/**
+	 * Return true if the nth agents of all the agent types share their start
+	 * location and candidate choices.
+	 * 
+	 * @return true if common random numbers are used
+	 */
+	public boolean isCommonRandom() {
+		return this.myIsCommonRandom;
+	}
+
+	/**
+	 * Return the start placement.
+	 * 
+	 * @return the start placement
+	 */
+	public String getStarts() {
+		return this.myStarts;
+	}
+
+	/**
+	 * Return true if the number of runs is adaptive.
+	 * 
+	 * @return true if the number of runs is adaptive
+	 */
+	public boolean isAdaptive() {
+		return this.myStoppingRule != null;
+	}
+
+	/**
+	 * Return the stopping rule for adaptive runs, or null for the fixed number
+	 * of runs.
+	 * 
+	 * @return the stopping rule for adaptive runs
+	 */
+	public StoppingRule getStoppingRule() {
+		return this.myStoppingRule;
+	}
+
+	/**
+	 * Return the list of plan races.
+	 * 
+	 * @return the list of plan races
+	 */
+	public ArrayList<PlanRace> getRaces() {
+		return new ArrayList<PlanRace>(this.myRaces);
+	}
+
+	/**
+	 * Return the names of the output files of the agents of this case, which
+	 * include the bias, delta, constraint, strategy and type of each agent.
+	 * 
+	 * @return a list of output file names
+	 */
+	public ArrayList<String> getOutputFileNames() {
+		ArrayList<String> result = new ArrayList<String>();
+		for (Agent agt : this.myAgentList) {
+			result.add(Simulator.constructOutputFileName(this.myInf,
+					this.myBias, this.myDelta, this.myIsExact, agt));
+		}
+		return result;
+	}
+
+	/**
+	 * Return true if the given case gets the same fitness contribution table
+	 * as this case under the same seed, i.e. it has the same influence matrix
+	 * object, delta and number of shocks, and both or neither of them use
+	 * fused tables. The bias and the shock times do not change the table.
+	 * 
+	 * @param c
+	 *            a case object
+	 * @return true if the two cases have the same fitness contribution table
+	 */
+	public boolean hasSameContributionTableAs(Case c) {
+		return this.myInf == c.myInf && this.myDelta == c.myDelta
+				&& this.myTauList.size() == c.myTauList.size()
+				&& this.myLandscapeType.equals("fused") == c.myLandscapeType
+						.equals("fused");
+	}
+
+	/**
+	 * Return true if the given case has the same environment as this case,
+	 * i.e. the same influence matrix object, bias, delta, tau list and
+	 * landscape type, so that the two cases get the same landscapes under the
+	 * same seed. The influence matrix objects are shared by the cases whose
+	 * matrices are read from the same file.
+	 * 
+	 * @param c
+	 *            a case object
+	 * @return true if the two cases have the same environment
+	 */
+	public boolean hasSameEnvironmentAs(Case c) {
+		return this.myInf == c.myInf && this.myBias == c.myBias
+				&& this.myDelta == c.myDelta
+				&& this.myTauList.equals(c.myTauList)
+				&& this.myLandscapeType.equals(c.myLandscapeType);
+	}
+
 	/**
 	 * Return a string representation of the Case object.
 	 */
@@ -105,10 +260,17 @@ public class Case {
 	public String toString() {
 		String result = "runs = " + this.myRuns + "\ninf = \n" + this.myInf
 				+ "\nbias = " + this.myBias + "\ndelta = " + this.myDelta
-				+ "\nTau = " + this.myTauList + "\nAgents = ";
+				+ "\nTau = " + this.myTauList + "\nlandscape = "
+				+ this.myLandscapeType + "\nexact = " + this.myIsExact
+				+ "\ncrn = " + this.myIsCommonRandom + "\nstarts = "
+				+ this.myStarts + "\nadaptive = " + this.myStoppingRule
+				+ "\nAgents = ";
 		for (Agent agt : this.myAgentList) {
 			result += ("\n" + agt);
 		}
+		for (PlanRace race : this.myRaces) {
+			result += ("\n" + race);
+		}
 		return result;
 	}
 }
@@ -0,0 +1,243 @@
+package simulation;
+
+import util.Journal;
+import util.RandomGen;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+public class CasePlanner {
+	/**
+	 * the consecutive cases of the same fitness contribution table which are
+	 * not run yet
+	 */
+	private ArrayList<Case> myGroup;
+	/**
+	 * the indices of the cases in the group, in the order they are added
+	 */
+	private ArrayList<Integer> myGroupIndices;
+	/**
+	 * the output file names of the cases in the group
+	 */
+	private HashSet<String> myFileNames;
+	/**
+	 * the number of cases added so far
+	 */
+	private int myCaseNum;
+	/**
+	 * the scheduler of the runs when more than one run is simulated at the
+	 * same time
+	 */
+	private RunScheduler myScheduler;
+
+	/**
+	 * Create a planner which runs the cases given one by one. Consecutive
+	 * cases of the same fitness contribution table (influence matrix, delta
+	 * and number of shocks) are grouped, and the group is run seed by seed:
+	 * for each seed, the fitness contribution table is generated once for all
+	 * the cases of the group, and consecutive cases of the same environment
+	 * (also bias, shock times and landscape type) share the landscapes as
+	 * well, before they are freed. The output of every case is the same as if
+	 * it ran alone, because each case starts from the state of the global
+	 * random generator right after its landscapes were generated, the table
+	 * does not draw from the global random generator, and the output files
+	 * are the same.
+	 * 
+	 * A case is not grouped if one of its output files is an output file of
+	 * the group, since the runs would interleave in it. The output file names
+	 * include the bias, so the cases of a sweep over bias with the same agent
+	 * types are grouped. Adaptive cases and cases with races are run alone.
+	 * 
+	 * With a journal, the runs which are completed according to it are
+	 * skipped, except for adaptive cases and cases with races, whose runs are
+	 * all needed for their statistics and are taken again without writing
+	 * the completed output.
+	 * 
+	 * With more than one worker, the seeds of the groups are not run right
+	 * away but given to a scheduler as units of work, which runs them at the
+	 * same time and commits their output in the same order as above. Adaptive
+	 * cases and cases with races run after the units before them.
+	 * 
+	 * @see Journal
+	 * @see RunScheduler
+	 */
+	public CasePlanner() {
+		this(new RunScheduler());
+	}
+
+	/**
+	 * Same as above, but with the given scheduler, e.g. a coordinator of
+	 * worker processes, which gets the seeds of the groups if it runs them at
+	 * the same time.
+	 * 
+	 * @param scheduler
+	 *            a scheduler of the runs
+	 * @see Coordinator
+	 */
+	public CasePlanner(RunScheduler scheduler) {
+		this.myGroup = new ArrayList<Case>();
+		this.myGroupIndices = new ArrayList<Integer>();
+		this.myFileNames = new HashSet<String>();
+		this.myCaseNum = 0;
+		this.myScheduler = scheduler;
+	}
+
+	/**
+	 * Add the next case. The cases before it are run first if it can not join
+	 * their group.
+	 * 
+	 * @param c
+	 *            a case object
+	 */
+	public void add(Case c) {
+		int caseIndex = this.myCaseNum++;
+		if (c.isAdaptive() || !c.getRaces().isEmpty()) {
+			this.finish();
+			Journal.setCase(caseIndex);
+			runAlone(c);
+			return;
+		}
+		if (!this.canJoin(c)) {
+			this.runGroup();
+		}
+		this.myGroup.add(c);
+		this.myGroupIndices.add(caseIndex);
+		this.myFileNames.addAll(c.getOutputFileNames());
+	}
+
+	/**
+	 * Run the cases which are not run yet.
+	 */
+	public void finish() {
+		this.runGroup();
+		this.myScheduler.run();
+	}
+
+	/**
+	 * Run the cases of the group, or give them to the scheduler seed by seed
+	 * if there is more than one worker, then clear the group.
+	 */
+	private void runGroup() {
+		if (this.myGroup.isEmpty()) {
+			return;
+		}
+		int maxRuns = 0;
+		for (Case c : this.myGroup) {
+			maxRuns = Math.max(maxRuns, c.getRuns());
+		}
+		if (this.myScheduler.isParallel()) {
+			this.scheduleGroup(maxRuns);
+			return;
+		}
+		for (int i = 0; i < maxRuns; i++) {
+			Case last = null;
+			Simulator environment = null;
+			for (int k = 0; k < this.myGroup.size(); k++) {
+				Case c = this.myGroup.get(k);
+				Journal.setCase(this.myGroupIndices.get(k));
+				if (i >= c.getRuns() || Journal.isRunDone(i)) {
+					continue;
+				}
+				Simulator s;
+				if (last != null && last.hasSameEnvironmentAs(c)) {
+					s = new Simulator(c, environment);
+				} else {
+					// the table of the seed is taken again, see Simulator
+					RandomGen.setSeed(i);
+					s = new Simulator(c);
+					last = c;
+					environment = s;
+				}
+				s.startSimulation();
+				Journal.endRun(i);
+			}
+		}
+		this.myGroup.clear();
+		this.myGroupIndices.clear();
+		this.myFileNames.clear();
+	}
+
+	/**
+	 * Give the cases of the group to the scheduler, one unit for each seed,
+	 * then clear the group.
+	 * 
+	 * @param maxRuns
+	 *            the largest number of runs of the cases of the group
+	 */
+	private void scheduleGroup(int maxRuns) {
+		for (int i = 0; i < maxRuns; i++) {
+			RunUnit unit = new RunUnit(i, this.myScheduler.getUnitNum());
+			for (int k = 0; k < this.myGroup.size(); k++) {
+				Case c = this.myGroup.get(k);
+				Journal.setCase(this.myGroupIndices.get(k));
+				if (i < c.getRuns() && !Journal.isRunDone(i)) {
+					unit.add(c, this.myGroupIndices.get(k));
+				}
+			}
+			if (!unit.isEmpty()) {
+				this.myScheduler.add(unit);
+			}
+			if (this.myScheduler.isFull()) {
+				this.myScheduler.run();
+			}
+		}
+		this.myGroup.clear();
+		this.myGroupIndices.clear();
+		this.myFileNames.clear();
+	}
+
+	/**
+	 * Return true if the given case can join the group, i.e. it has the same
+	 * fitness contribution table as the group and none of its output files is
+	 * an output file of the group.
+	 * 
+	 * @param c
+	 *            a case object
+	 * @return true if the case can join the group
+	 */
+	private boolean canJoin(Case c) {
+		if (this.myGroup.isEmpty()) {
+			return true;
+		}
+		if (!this.myGroup.get(0).hasSameContributionTableAs(c)) {
+			return false;
+		}
+		for (String fileName : c.getOutputFileNames()) {
+			if (this.myFileNames.contains(fileName)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Run the races of the given case, then its runs, either a fixed number
+	 * or until its stopping rule is satisfied.
+	 * 
+	 * @param c
+	 *            a case object
+	 */
+	private static void runAlone(Case c) {
+		// race the plans with the environment of the case
+		for (PlanRace race : c.getRaces()) {
+			race.run(c);
+		}
+		if (c.getAgentList().isEmpty() && !c.getRaces().isEmpty()) {
+			return;
+		}
+		// take runs until the stopping rule is satisfied
+		if (c.isAdaptive()) {
+			new AdaptiveRunner(c).run();
+			return;
+		}
+		for (int i = 0; i < c.getRuns(); i++) {
+			if (Journal.isRunDone(i)) {
+				continue;
+			}
+			RandomGen.setSeed(i);
+			Simulator s = new Simulator(c);
+			s.startSimulation();
+			Journal.endRun(i);
+		}
+	}
+}
@@ -0,0 +1,382 @@
+package simulation;
+
+import util.OutputBuffer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+
+public class Coordinator extends RunScheduler {
+	/**
+	 * the number of times a unit is handed out before the coordinator gives
+	 * up, e.g. when the unit crashes every worker which runs it
+	 */
+	private static final int MAX_ATTEMPTS = 3;
+
+	private String myConfigPath;
+	/**
+	 * the maximum heap of each launched worker in megabytes, 0 for the same
+	 * JVM options as the coordinator
+	 */
+	private int myWorkerHeap;
+	private ServerSocket myServer;
+	/**
+	 * the units which wait for a worker, and the units which have been run
+	 * and wait to be committed
+	 */
+	private LinkedBlockingDeque<RunUnit> myPending;
+	private LinkedBlockingQueue<RunUnit> myDone;
+	/**
+	 * the number of times each unit has been handed out
+	 */
+	private HashMap<RunUnit, Integer> myAttempts;
+	private ArrayList<Socket> mySockets;
+	/**
+	 * the number of worker processes which may still be launched to replace
+	 * the ones which died
+	 */
+	private int myRelaunches;
+	/**
+	 * the first case index of the units which are not committed yet, sent
+	 * with each unit so that the workers can drop the cases before it
+	 */
+	private volatile int myFirstCase;
+	private volatile boolean myIsClosing;
+
+	/**
+	 * Create a coordinator which hands the units of work of the given config
+	 * file to worker processes over local TCP sockets, instead of running them
+	 * on threads, so that each worker has a heap of its own. The given number
+	 * of worker JVMs are launched with the same class path and JVM options as
+	 * this one, including its maximum heap, and more workers can connect to
+	 * the printed port, e.g. from the command line with "--worker host:port".
+	 * 
+	 * Each worker takes the next unit, longest first by the cost model, when
+	 * it is done with the last one, so the work is spread dynamically. If a
+	 * worker dies or its connection breaks, its unit is handed to another
+	 * worker, and a new worker is launched in its place. The output of the
+	 * units is sent back to the coordinator and committed in the order of the
+	 * output, so the output files are the same as running in one process.
+	 * 
+	 * @param configPath
+	 *            a string, which directs to the input config xml file
+	 * @param workerNum
+	 *            a non-negative integer, the number of worker processes to
+	 *            launch
+	 * @see Worker
+	 */
+	public Coordinator(String configPath, int workerNum) {
+		this(configPath, workerNum, 0);
+	}
+
+	/**
+	 * Same as above, but the maximum heap of each launched worker is given,
+	 * instead of the one of this JVM, e.g. so that a coordinator with a small
+	 * heap launches workers with large heaps.
+	 * 
+	 * @param configPath
+	 *            a string, which directs to the input config xml file
+	 * @param workerNum
+	 *            a non-negative integer, the number of worker processes to
+	 *            launch
+	 * @param workerHeap
+	 *            a non-negative integer, the maximum heap of each worker in
+	 *            megabytes, 0 for the same JVM options as this one
+	 * @see Worker
+	 */
+	public Coordinator(String configPath, int workerNum, int workerHeap) {
+		this.myConfigPath = new File(configPath).getAbsolutePath();
+		this.myWorkerHeap = workerHeap;
+		this.myPending = new LinkedBlockingDeque<RunUnit>();
+		this.myDone = new LinkedBlockingQueue<RunUnit>();
+		this.myAttempts = new HashMap<RunUnit, Integer>();
+		this.mySockets = new ArrayList<Socket>();
+		this.myRelaunches = MAX_ATTEMPTS * Math.max(workerNum, 1);
+		this.myFirstCase = 0;
+		this.myIsClosing = false;
+		try {
+			this.myServer = new ServerSocket(0, 50,
+					InetAddress.getLoopbackAddress());
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.out.println("ERROR : can not open the coordinator socket");
+			System.exit(1);
+		}
+		System.out.println("coordinator : listening on port "
+				+ this.myServer.getLocalPort());
+		Thread acceptor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				Coordinator.this.accept();
+			}
+		});
+		acceptor.setDaemon(true);
+		acceptor.start();
+		for (int i = 0; i < workerNum; i++) {
+			this.launchWorker();
+		}
+	}
+
+	/**
+	 * Return true, since the units are always run by the workers.
+	 */
+	@Override
+	public boolean isParallel() {
+		return true;
+	}
+
+	/**
+	 * Hand the units added so far to the workers, longest first, and commit
+	 * their output in order as they come back.
+	 */
+	@Override
+	public void run() {
+		if (this.myUnits.isEmpty()) {
+			return;
+		}
+		this.setFirstCase(0);
+		for (RunUnit unit : this.getLongestFirst()) {
+			this.myPending.addLast(unit);
+		}
+		int next = 0;
+		try {
+			while (next < this.myUnits.size()) {
+				RunUnit done = this.myDone.take();
+				done.setDone();
+				next = this.commitFrom(next);
+				this.setFirstCase(next);
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+		this.myUnits.clear();
+	}
+
+	/**
+	 * Set the first case index of the units which are not committed yet to
+	 * the one of the given unit. The units are added in the order of their
+	 * cases, so no unit from the given one on needs a case before it.
+	 * 
+	 * @param next
+	 *            the index of the first unit which is not committed yet
+	 */
+	private void setFirstCase(int next) {
+		if (next < this.myUnits.size()) {
+			this.myFirstCase = this.myUnits.get(next).getCaseIndices().get(0);
+		}
+	}
+
+	/**
+	 * Close the connections, so that the workers exit, and stop listening.
+	 */
+	public void close() {
+		this.myIsClosing = true;
+		try {
+			this.myServer.close();
+			synchronized (this.mySockets) {
+				for (Socket socket : this.mySockets) {
+					socket.close();
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Accept the connections of the workers, and serve each of them on a
+	 * thread of its own, until the coordinator is closed.
+	 */
+	private void accept() {
+		while (!this.myIsClosing) {
+			try {
+				final Socket socket = this.myServer.accept();
+				synchronized (this.mySockets) {
+					this.mySockets.add(socket);
+				}
+				Thread server = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						Coordinator.this.serve(socket);
+					}
+				});
+				server.setDaemon(true);
+				server.start();
+			} catch (Exception e) {
+				if (!this.myIsClosing) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Send the config file to the worker on the given socket, then send it
+	 * one unit at a time and receive the output of each case of the unit. A
+	 * unit whose output is not received is handed out again.
+	 * 
+	 * The messages are: the absolute path of the config file (UTF), then for
+	 * each unit the seed, the first case index which is not committed yet,
+	 * the number of cases and their indices (ints), which
+	 * are answered for each case by the number of output units (int) and
+	 * for each of them the file name (UTF) and the length (int) and the bytes
+	 * of the output in UTF-8.
+	 * 
+	 * @param socket
+	 *            a socket connected to a worker
+	 */
+	private void serve(Socket socket) {
+		RunUnit unit = null;
+		try {
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(socket.getOutputStream()));
+			DataInputStream in = new DataInputStream(new BufferedInputStream(
+					socket.getInputStream()));
+			out.writeUTF(this.myConfigPath);
+			out.flush();
+			while (true) {
+				unit = this.myPending.takeFirst();
+				this.countAttempt(unit);
+				ArrayList<Integer> caseIndices = unit.getCaseIndices();
+				out.writeInt(unit.getSeed());
+				out.writeInt(this.myFirstCase);
+				out.writeInt(caseIndices.size());
+				for (int caseIndex : caseIndices) {
+					out.writeInt(caseIndex);
+				}
+				out.flush();
+				OutputBuffer buffers[] = new OutputBuffer[caseIndices.size()];
+				for (int k = 0; k < buffers.length; k++) {
+					buffers[k] = new OutputBuffer();
+					int outputNum = in.readInt();
+					for (int u = 0; u < outputNum; u++) {
+						String fileName = in.readUTF();
+						byte bytes[] = new byte[in.readInt()];
+						in.readFully(bytes);
+						buffers[k].add(fileName, new String(bytes, "UTF-8"));
+					}
+				}
+				unit.setBuffers(buffers);
+				this.myDone.put(unit);
+				unit = null;
+			}
+		} catch (Exception e) {
+			if (this.myIsClosing) {
+				return;
+			}
+			System.out.println("WARNING : lost worker "
+					+ socket.getRemoteSocketAddress()
+					+ (unit == null ? "" : ", seed " + unit.getSeed()
+							+ " of case(s) " + unit.getCaseIndices()
+							+ " is handed out again"));
+			if (unit != null) {
+				this.myPending.addFirst(unit);
+			}
+			try {
+				socket.close();
+			} catch (Exception e2) {
+				e2.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Count one more attempt of the given unit, and stop if it has been
+	 * handed out too many times.
+	 * 
+	 * @param unit
+	 *            a unit of work
+	 */
+	private synchronized void countAttempt(RunUnit unit) {
+		Integer attempts = this.myAttempts.get(unit);
+		attempts = (attempts == null ? 0 : attempts) + 1;
+		if (attempts > MAX_ATTEMPTS) {
+			System.out.println("ERROR : seed " + unit.getSeed() + " of case(s) "
+					+ unit.getCaseIndices() + " failed on " + MAX_ATTEMPTS
+					+ " workers");
+			System.exit(1);
+		}
+		this.myAttempts.put(unit, attempts);
+	}
+
+	/**
+	 * Launch a worker JVM with the same class path and JVM options as this
+	 * one, except the maximum heap if the worker heap is given, which
+	 * connects to the coordinator, and launch another one when it dies before
+	 * the coordinator is closed.
+	 */
+	private synchronized void launchWorker() {
+		ArrayList<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin"
+				+ File.separator + "java");
+		for (String option : ManagementFactory.getRuntimeMXBean()
+				.getInputArguments()) {
+			if (this.myWorkerHeap == 0
+					|| (!option.startsWith("-Xmx") && !option
+							.startsWith("-XX:MaxHeapSize="))) {
+				command.add(option);
+			}
+		}
+		if (this.myWorkerHeap > 0) {
+			command.add("-Xmx" + this.myWorkerHeap + "m");
+		}
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add("Main");
+		command.add("--worker");
+		command.add("127.0.0.1:" + this.myServer.getLocalPort());
+		try {
+			final Process process = new ProcessBuilder(command).inheritIO()
+					.start();
+			Thread watcher = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					Coordinator.this.watch(process);
+				}
+			});
+			watcher.setDaemon(true);
+			watcher.start();
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.out.println("ERROR : can not launch a worker");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Wait for the given worker process to exit, and launch another one in
+	 * its place unless the coordinator is closed.
+	 * 
+	 * @param process
+	 *            a worker process
+	 */
+	private void watch(Process process) {
+		try {
+			process.waitFor();
+		} catch (InterruptedException e) {
+			return;
+		}
+		if (this.myIsClosing) {
+			return;
+		}
+		synchronized (this) {
+			if (this.myRelaunches == 0) {
+				System.out.println("ERROR : too many workers died");
+				System.exit(1);
+			}
+			this.myRelaunches--;
+		}
+		this.launchWorker();
+	}
+}
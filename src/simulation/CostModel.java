@@ -0,0 +1,217 @@
+package simulation;
+
+import agent.Agent;
+import landscape.InfluenceMatrix;
+import landscape.Landscape;
+
+import java.util.HashSet;
+
+public class CostModel {
+	/**
+	 * the estimated bytes of one line of an output file
+	 */
+	public static final int LINE_BYTES = 70;
+	/**
+	 * the estimated bytes of one location id in a set of neighbours, i.e. a
+	 * boxed integer and a hash set entry
+	 */
+	private static final int SET_ENTRY_BYTES = 48;
+
+	/**
+	 * Return the estimated bytes of the fitness contribution table of one run
+	 * of the given case, i.e. N x 2 x 2^K doubles for each stored shock layer.
+	 * A fused table is not stored, and a lazy case keeps at most two layers
+	 * when its agents let the earlier layers go.
+	 * 
+	 * @param c
+	 *            a case object
+	 * @return the estimated bytes of the fitness contribution table
+	 */
+	public static long getContributionTableBytes(Case c) {
+		if (c.getLandscapeType().equals("fused")) {
+			return 0;
+		}
+		InfluenceMatrix inf = c.getInf();
+		long layers = c.getTauList().size() + 1;
+		if (c.getLandscapeType().equals("lazy")) {
+			layers = Math.min(layers, 2);
+		}
+		return layers * inf.getN() * 2 * (1L << inf.getK()) * 8;
+	}
+
+	/**
+	 * Return the estimated bytes of the landscapes of one run of the given
+	 * case, i.e. (shocks + 1) x (N + 1) landscapes of 2^N doubles each when
+	 * they are stored in full, of one sub-landscape for each connected
+	 * component when they are composite, and of a bit set of local optima
+	 * each when they are lazy.
+	 * 
+	 * @param c
+	 *            a case object
+	 * @return the estimated bytes of the landscapes
+	 */
+	public static long getLandscapeBytes(Case c) {
+		InfluenceMatrix inf = c.getInf();
+		long landscapes = (long) (c.getTauList().size() + 1) * (inf.getN() + 1);
+		if (c.getLandscapeType().equals("composite")) {
+			long size = 0;
+			for (int component[] : inf.getComponents()) {
+				size += 1L << component.length;
+			}
+			return landscapes * size * 8;
+		} else if (c.getLandscapeType().equals("lazy")) {
+			return landscapes * (1L << inf.getN()) / 8;
+		}
+		return landscapes * (1L << inf.getN()) * 8;
+	}
+
+	/**
+	 * Return the estimated bytes of the working sets of the agents of the
+	 * given case, i.e. the largest set of neighbours an agent holds at a
+	 * time, which is all the values of the unimplemented elements for an
+	 * averaging agent.
+	 * 
+	 * @param c
+	 *            a case object
+	 * @return the estimated bytes of the working sets
+	 */
+	public static long getWorkingBytes(Case c) {
+		long max = 0;
+		int n = c.getInf().getN();
+		for (Agent agt : c.getAgentList()) {
+			int implemented = 0;
+			for (HashSet<Integer> iteration : agt.getIterationPlan()) {
+				long size = Landscape.getNeighbourNum(iteration.size(),
+						agt.getProcessingPower());
+				implemented += iteration.size();
+				if (agt.isAveraging()) {
+					size += 1L << Math.max(n - implemented, 0);
+				}
+				max = Math.max(max, size);
+			}
+		}
+		return max * SET_ENTRY_BYTES;
+	}
+
+	/**
+	 * Return the estimated number of output lines of one run of the given
+	 * case, i.e. about one line for each element and each iteration for every
+	 * agent.
+	 * 
+	 * @param c
+	 *            a case object
+	 * @return the estimated number of output lines of one run
+	 */
+	public static long getOutputLines(Case c) {
+		long lines = 0;
+		int n = c.getInf().getN();
+		for (Agent agt : c.getAgentList()) {
+			lines += (long) agt.getTotalNum()
+					* (2 * n + agt.getIterationPlan().size());
+		}
+		return lines;
+	}
+
+	/**
+	 * Return the estimated bytes of the output of one run of the given case.
+	 * 
+	 * @param c
+	 *            a case object
+	 * @return the estimated bytes of the output of one run
+	 */
+	public static long getOutputBytes(Case c) {
+		return getOutputLines(c) * LINE_BYTES;
+	}
+
+	/**
+	 * Return the estimated peak bytes of one run of the given case with its
+	 * own landscapes, i.e. the fitness contribution table, the landscapes,
+	 * the working sets and the output, which is buffered in memory when the
+	 * runs are scheduled.
+	 * 
+	 * @param c
+	 *            a case object
+	 * @return the estimated peak bytes of one run
+	 */
+	public static long getRunBytes(Case c) {
+		return getContributionTableBytes(c) + getLandscapeBytes(c)
+				+ getWorkingBytes(c) + 2 * getOutputBytes(c);
+	}
+
+	/**
+	 * Return the estimated cost of generating the fitness contribution table
+	 * and the landscapes of one run of the given case, in fitness
+	 * contribution look-ups.
+	 * 
+	 * @param c
+	 *            a case object
+	 * @return the estimated cost of the landscapes of one run
+	 */
+	public static double getLandscapeCost(Case c) {
+		InfluenceMatrix inf = c.getInf();
+		double table = (double) (c.getTauList().size() + 1) * inf.getN() * 2
+				* (1L << inf.getK());
+		if (c.getLandscapeType().equals("lazy")) {
+			return table;
+		}
+		return table + (double) getLandscapeBytes(c) / 8 * inf.getN();
+	}
+
+	/**
+	 * Return the estimated cost of the exploration of all the agents of one
+	 * run of the given case, in fitness look-ups. In each iteration, an agent
+	 * climbs for about as many steps as the elements in the iteration, and in
+	 * each step it tries a share (its constraint) of the neighbours within its
+	 * processing power over the elements in the iteration, since the explorers
+	 * only change those; the exploration of the elements implemented before is
+	 * commented out in Simulator. An averaging agent looks up all the values
+	 * of the unimplemented elements for each neighbour. A sampled agent which
+	 * is not averaging checks for local optima on stored landscapes, whose
+	 * bitmap over all the locations may be built once for each iteration and
+	 * each landscape it visits, for all the agents of the type; most
+	 * locations are found not to be local optima at their first neighbours.
+	 * 
+	 * @param c
+	 *            a case object
+	 * @return the estimated cost of the exploration of one run
+	 */
+	public static double getExplorationCost(Case c) {
+		double cost = 0;
+		int n = c.getInf().getN();
+		boolean isStored = !c.getLandscapeType().equals("lazy")
+				&& !c.getLandscapeType().equals("composite");
+		for (Agent agt : c.getAgentList()) {
+			double agentCost = 0;
+			int implemented = 0;
+			for (HashSet<Integer> iteration : agt.getIterationPlan()) {
+				if (isStored && !agt.isAveraging() && !agt.isSteepest()) {
+					cost += (double) (c.getTauList().size() + 1) * (1L << n)
+							* Math.min(2, Landscape.getNeighbourNum(
+									iteration.size(), agt.getProcessingPower()));
+				}
+				double tries = Landscape.getNeighbourNum(iteration.size(),
+						agt.getProcessingPower());
+				implemented += iteration.size();
+				tries *= agt.getConstraint() * Math.max(iteration.size(), 1);
+				if (agt.isAveraging()) {
+					tries *= (double) (1L << Math.max(n - implemented, 0));
+				}
+				agentCost += tries;
+			}
+			cost += agentCost * agt.getTotalNum();
+		}
+		return cost;
+	}
+
+	/**
+	 * Return the estimated cost of one run of the given case with its own
+	 * landscapes, in fitness look-ups.
+	 * 
+	 * @param c
+	 *            a case object
+	 * @return the estimated cost of one run
+	 */
+	public static double getRunCost(Case c) {
+		return getLandscapeCost(c) + getExplorationCost(c);
+	}
+}
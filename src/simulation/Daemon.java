@@ -0,0 +1,188 @@
+package simulation;
+
+import util.ConfigReader;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Iterator;
+
+public class Daemon {
+	/**
+	 * the line which stops the daemon
+	 */
+	private static final String SHUTDOWN = "shutdown";
+
+	/**
+	 * Run the jobs given on the standard input one by one, until the end of
+	 * the input or a line "shutdown", and report each of them on the standard
+	 * output. A line is either the path of a config xml file, or "@" and the
+	 * path of a batch file, which lists one config xml file per line.
+	 * 
+	 * The jobs run in the same process one after another, so the code stays
+	 * compiled and warm, and the influence matrices read by a job are kept
+	 * for the next ones. The settings outside the cases, i.e.
+	 * &lt;threads&gt;, &lt;journal&gt; and &lt;scheduler&gt;, only apply to
+	 * the job of their config file. The paths in the config files and the
+	 * output files are relative to the working directory of the daemon, as
+	 * for a single run.
+	 */
+	public static void run() {
+		try {
+			BufferedReader in = new BufferedReader(new InputStreamReader(
+					System.in));
+			PrintWriter out = new PrintWriter(System.out, true);
+			serve(in, out);
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Same as above, but the jobs are received over local TCP connections on
+	 * the given port (0 for any free port, which is printed), one connection
+	 * at a time, and each job is reported on its connection. The daemon stops
+	 * when a connection sends "shutdown".
+	 * 
+	 * @param port
+	 *            a non-negative integer, the port to listen on
+	 */
+	public static void listen(int port) {
+		try {
+			ServerSocket server = new ServerSocket(port, 50,
+					InetAddress.getLoopbackAddress());
+			System.out.println("daemon : listening on port "
+					+ server.getLocalPort());
+			boolean isShutdown = false;
+			while (!isShutdown) {
+				Socket socket = server.accept();
+				BufferedReader in = new BufferedReader(new InputStreamReader(
+						socket.getInputStream(), "UTF-8"));
+				PrintWriter out = new PrintWriter(new OutputStreamWriter(
+						socket.getOutputStream(), "UTF-8"), true);
+				isShutdown = serve(in, out);
+				socket.close();
+			}
+			server.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.out.println("ERROR : can not open the daemon socket");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Run the jobs read from the given input until its end or a line
+	 * "shutdown", and report each of them to the given output.
+	 * 
+	 * @param in
+	 *            a reader of the jobs, one per line
+	 * @param out
+	 *            a writer of the reports, one line per config file
+	 * @return true if the daemon should stop
+	 * @throws Exception
+	 *             if the input can not be read
+	 */
+	private static boolean serve(BufferedReader in, PrintWriter out)
+			throws Exception {
+		String line = in.readLine();
+		while (line != null) {
+			line = line.trim();
+			if (line.equals(SHUTDOWN)) {
+				out.println("daemon : shutdown");
+				return true;
+			}
+			if (line.startsWith("@")) {
+				runBatch(line.substring(1).trim(), out);
+			} else if (line.length() > 0) {
+				runJob(line, out);
+			}
+			line = in.readLine();
+		}
+		return false;
+	}
+
+	/**
+	 * Run the config xml files listed in the given batch file one by one.
+	 * Empty lines and lines starting with "#" are skipped.
+	 * 
+	 * @param batchPath
+	 *            a string, which directs to the batch file
+	 * @param out
+	 *            a writer of the reports
+	 */
+	private static void runBatch(String batchPath, PrintWriter out) {
+		try {
+			BufferedReader batch = new BufferedReader(new FileReader(batchPath));
+			String line = batch.readLine();
+			while (line != null) {
+				line = line.trim();
+				if (line.length() > 0 && !line.startsWith("#")) {
+					runJob(line, out);
+				}
+				line = batch.readLine();
+			}
+			batch.close();
+		} catch (Exception e) {
+			out.println("failed @" + batchPath + " : " + e);
+		}
+	}
+
+	/**
+	 * Run all the cases of the given config xml file as a single run would,
+	 * then report the number of cases and the time taken, or the failure.
+	 * The settings outside the cases are reset before and after the job, and
+	 * the fitness contribution table of the daemon's thread is released.
+	 * 
+	 * All the cases are parsed before the first one runs, so a config whose
+	 * cases have errors, e.g. an unknown agent type or an invalid sweep, is
+	 * reported as failed and the daemon goes on with the next job. Errors in
+	 * the settings outside the cases, or during the runs, still stop the
+	 * daemon as they stop a single run.
+	 * 
+	 * @param configPath
+	 *            a string, which directs to the config xml file
+	 * @param out
+	 *            a writer of the reports
+	 */
+	private static void runJob(String configPath, PrintWriter out) {
+		if (!new File(configPath).isFile()) {
+			out.println("failed " + configPath + " : no such file");
+			return;
+		}
+		long start = System.nanoTime();
+		int caseNum = 0;
+		try {
+			ConfigReader.check(configPath);
+		} catch (Exception e) {
+			out.println("failed " + configPath + " : " + e.getMessage());
+			return;
+		}
+		try {
+			ConfigReader.resetSettings();
+			Iterator<Case> cases = ConfigReader.stream(configPath);
+			CasePlanner planner = new CasePlanner();
+			while (cases.hasNext()) {
+				planner.add(cases.next());
+				caseNum++;
+			}
+			planner.finish();
+			out.println("done " + configPath + " : " + caseNum
+					+ " case(s) in " + (System.nanoTime() - start) / 1000000
+					+ " ms");
+		} catch (Exception e) {
+			e.printStackTrace();
+			out.println("failed " + configPath + " : " + e);
+		} finally {
+			ConfigReader.resetSettings();
+			Simulator.releaseContributionTable();
+		}
+	}
+}
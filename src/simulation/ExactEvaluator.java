@@ -0,0 +1,225 @@
+package simulation;
+
+import landscape.*;
+import agent.*;
+import util.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+public class ExactEvaluator {
+	private Agent myAgent;
+	private Landscape myLandscapeTable[][];
+	private ArrayList<Integer> myTauList;
+	private int myN;
+	/**
+	 * bits of the elements of each iteration in a location id
+	 */
+	private int myIterationMasks[];
+
+	// sums over all start locations, indexed by time
+	private double myScoreSums[];
+	private double myMaxSums[];
+	private double myMinSums[];
+	// sums of the last records, indexed by the time after the last record,
+	// i.e. from which the last record is carried on
+	private double myFinalScoreSums[];
+	private double myFinalMaxSums[];
+	private double myFinalMinSums[];
+	private int myLastTime;
+	private double myMeanFinalScore;
+	/**
+	 * the listener of the simulation which is given the records instead of
+	 * the output file, or null
+	 */
+	private SimulationListener myListener;
+
+	/**
+	 * Create an exact evaluator for the agents of the given type. The agent
+	 * must use steepest ascent, so that its exploration is a deterministic
+	 * Markov chain over locations: the next location only depends on the
+	 * current location, the landscape and the iteration.
+	 * 
+	 * The start location of an agent is uniformly distributed over all 2^N
+	 * location ids, as in Agent.nextAgent(). Propagating this distribution
+	 * through the deterministic transitions moves the probability 1/2^N of
+	 * each start location along its climb, therefore the expected curve is
+	 * the average of the climbs from all the start locations, each of which is
+	 * taken from the shared memo of steepest ascent climbs.
+	 * 
+	 * The shock number starts from 0 for each climb.
+	 * 
+	 * @param agent
+	 *            an agent object using steepest ascent
+	 * @param landscapeTable
+	 *            a 2-dimensional table of landscapes, (total shock number + 1)
+	 *            by (N + 1)
+	 * @param tauList
+	 *            a list of shock times
+	 * @see SteepestAscentMemo
+	 */
+	public ExactEvaluator(Agent agent, Landscape landscapeTable[][],
+			ArrayList<Integer> tauList) {
+		this.myAgent = agent;
+		this.myLandscapeTable = landscapeTable;
+		this.myTauList = tauList;
+		this.myListener = Simulation.getListener();
+		this.myN = agent.getInf().getN();
+		ArrayList<HashSet<Integer>> plan = agent.getIterationPlan();
+		this.myIterationMasks = new int[plan.size()];
+		for (int i = 0; i < plan.size(); i++) {
+			for (int element : plan.get(i)) {
+				this.myIterationMasks[i] |= 1 << (this.myN - 1 - element);
+			}
+		}
+	}
+
+	/**
+	 * Compute the expected curve and write one record for each time to the
+	 * current output file, or give it to the listener of the simulation. A
+	 * record is the seed, the time, and the expected fitness value, maximum
+	 * and minimum of the final landscape. An agent which has finished keeps
+	 * its last record for the rest of the curve.
+	 */
+	public void run() {
+		this.myScoreSums = new double[16];
+		this.myMaxSums = new double[16];
+		this.myMinSums = new double[16];
+		this.myFinalScoreSums = new double[16];
+		this.myFinalMaxSums = new double[16];
+		this.myFinalMinSums = new double[16];
+		this.myLastTime = 0;
+		int locIdNum = 1 << this.myN;
+		for (int start = 0; start < locIdNum; start++) {
+			this.climbFrom(start);
+		}
+		double finalScore = 0.0;
+		double finalMax = 0.0;
+		double finalMin = 0.0;
+		for (int t = 0; t <= this.myLastTime; t++) {
+			finalScore += this.myFinalScoreSums[t];
+			finalMax += this.myFinalMaxSums[t];
+			finalMin += this.myFinalMinSums[t];
+			double score = (this.myScoreSums[t] + finalScore) / locIdNum;
+			double max = (this.myMaxSums[t] + finalMax) / locIdNum;
+			double min = (this.myMinSums[t] + finalMin) / locIdNum;
+			if (this.myListener == null) {
+				OutputWriter.writeLine(RandomGen.getSeed() + "\t" + t + "\t"
+						+ score + "\t" + max + "\t" + min);
+			} else {
+				this.myListener.record(new TrajectoryRecord(RandomGen
+						.getSeed(), this.myAgent.getType(), -1, t, -1, -1,
+						score, max, min));
+			}
+		}
+		// every climb has finished after the last time
+		this.myMeanFinalScore = (finalScore + this.myFinalScoreSums[this.myLastTime + 1])
+				/ locIdNum;
+	}
+
+	/**
+	 * Return the expected final fitness value, after run.
+	 * 
+	 * @return the expected final fitness value
+	 */
+	public double getMeanFinalScore() {
+		return this.myMeanFinalScore;
+	}
+
+	/**
+	 * Follow the climbs of an agent from the given start location through all
+	 * the iterations, and add its records to the sums.
+	 * 
+	 * @param start
+	 *            the start location id
+	 */
+	private void climbFrom(int start) {
+		int locId = start;
+		int time = 0;
+		int shock = 0;
+		int implementedNum = 0;
+		for (int i = 0; i < this.myIterationMasks.length; i++) {
+			// detect new shock
+			if (shock < this.myTauList.size()
+					&& time > this.myTauList.get(shock)) {
+				shock++;
+			}
+			this.record(time++, shock, locId);
+			int freeMask = 0;
+			if (this.myAgent.isAveraging()) {
+				freeMask = ~(this.getImplementedMaskOf(i) | this.myIterationMasks[i])
+						& (int) ((1L << this.myN) - 1);
+			}
+			SteepestAscentMemo memo = this.myLandscapeTable[shock][implementedNum]
+					.getSteepestAscentMemo(this.myIterationMasks[i], freeMask,
+							this.myAgent.getProcessingPower());
+			int next = memo.getSuccessorOf(locId);
+			while (next != locId) {
+				locId = next;
+				this.record(time++, shock, locId);
+				next = memo.getSuccessorOf(locId);
+			}
+			implementedNum += Integer.bitCount(this.myIterationMasks[i]);
+		}
+		// the last record stays for the rest of the curve
+		Landscape finalLandscape = this.myLandscapeTable[shock][this.myN];
+		this.ensureCapacity(time);
+		this.myFinalScoreSums[time] += finalLandscape.getScoreOfLocId(locId);
+		this.myFinalMaxSums[time] += finalLandscape.getMax();
+		this.myFinalMinSums[time] += finalLandscape.getMin();
+	}
+
+	/**
+	 * Add one record to the sums.
+	 * 
+	 * @param time
+	 *            the time of the record
+	 * @param shock
+	 *            the shock number of the record
+	 * @param locId
+	 *            the location id of the record
+	 */
+	private void record(int time, int shock, int locId) {
+		this.ensureCapacity(time);
+		Landscape finalLandscape = this.myLandscapeTable[shock][this.myN];
+		this.myScoreSums[time] += finalLandscape.getScoreOfLocId(locId);
+		this.myMaxSums[time] += finalLandscape.getMax();
+		this.myMinSums[time] += finalLandscape.getMin();
+		this.myLastTime = Math.max(this.myLastTime, time);
+	}
+
+	/**
+	 * Return the bits of the elements before the given iteration.
+	 * 
+	 * @param iteration
+	 *            an iteration number
+	 * @return the bits of the elements before the given iteration
+	 */
+	private int getImplementedMaskOf(int iteration) {
+		int mask = 0;
+		for (int i = 0; i < iteration; i++) {
+			mask |= this.myIterationMasks[i];
+		}
+		return mask;
+	}
+
+	/**
+	 * Make sure the sums can be indexed by the given time.
+	 * 
+	 * @param time
+	 *            a time
+	 */
+	private void ensureCapacity(int time) {
+		if (time < this.myScoreSums.length) {
+			return;
+		}
+		int length = Math.max(2 * this.myScoreSums.length, time + 1);
+		this.myScoreSums = Arrays.copyOf(this.myScoreSums, length);
+		this.myMaxSums = Arrays.copyOf(this.myMaxSums, length);
+		this.myMinSums = Arrays.copyOf(this.myMinSums, length);
+		this.myFinalScoreSums = Arrays.copyOf(this.myFinalScoreSums, length);
+		this.myFinalMaxSums = Arrays.copyOf(this.myFinalMaxSums, length);
+		this.myFinalMinSums = Arrays.copyOf(this.myFinalMinSums, length);
+	}
+}
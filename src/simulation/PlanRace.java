@@ -0,0 +1,437 @@
+package simulation;
+
+import agent.Agent;
+import landscape.InfluenceMatrix;
+import random.MersenneTwisterFast;
+import util.ConfigReader;
+import util.OutputWriter;
+import util.RandomGen;
+import util.RunningStatistics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.TreeSet;
+
+public class PlanRace {
+	/**
+	 * the largest number of plans to be enumerated without sampling
+	 */
+	private static final int MAX_PLAN_NUM = 10000;
+	/**
+	 * the seed of the random generator for sampling plans
+	 */
+	private static final long SAMPLE_SEED = 900111;
+
+	private String myType;
+	private int myNum;
+	private int myProcessingPower;
+	private double myConstraint;
+	private boolean myIsAveraging;
+	private boolean myIsExhaustive;
+	private boolean myIsSteepest;
+	private String mySpace;
+	private int mySampleSize;
+	private int myBatchSize;
+	private double myConfidence;
+	private boolean myIsHalving;
+
+	/**
+	 * Create a race among iteration plans for agents of one kind. All the
+	 * plans in the given space (or a sample of them) are raced against each
+	 * other on shared landscapes: in each round, every remaining plan is
+	 * simulated as one agent type on the same batch of new seeds. After each
+	 * round, the plans which are clearly inferior, i.e. the upper bound of
+	 * their confidence interval is below the best lower bound, are dropped.
+	 * With halving, only the better half of the remaining plans by mean goes
+	 * on to the next round as well (successive halving). The race ends when
+	 * one plan remains or the runs of the case are used up.
+	 * 
+	 * @param type
+	 *            the type name of the race, used in the output file name
+	 * @param num
+	 *            the number of agents of each plan in each run
+	 * @param processingPower
+	 *            the processing power of the agents
+	 * @param constraint
+	 *            the amount of constraint resource of the agents
+	 * @param isAveraging
+	 *            a boolean, which indicates if the agents use averaging scores
+	 * @param isExhaustive
+	 *            a boolean, which indicates if the agents use exhaustive search
+	 * @param isSteepest
+	 *            a boolean, which indicates if the agents use steepest ascent
+	 * @param space
+	 *            a string, "partitions" for all the ways to split the elements
+	 *            into iterations, where the iterations are ordered by their
+	 *            smallest elements, or "orderings" for all the ways to split
+	 *            the elements into iterations in any order
+	 * @param sampleSize
+	 *            the number of plans randomly sampled from the space, 0 for all
+	 *            the plans in the space
+	 * @param batchSize
+	 *            the number of seeds in each round
+	 * @param confidence
+	 *            a value in (0, 1), which indicates the confidence level of
+	 *            the confidence intervals
+	 * @param isHalving
+	 *            a boolean, which indicates if the worse half of the plans is
+	 *            dropped after each round
+	 */
+	public PlanRace(String type, int num, int processingPower,
+			double constraint, boolean isAveraging, boolean isExhaustive,
+			boolean isSteepest, String space, int sampleSize, int batchSize,
+			double confidence, boolean isHalving) {
+		if (!space.equals("partitions") && !space.equals("orderings")) {
+			ConfigReader.fail("ERROR : unknown plan space " + space);
+		}
+		if (num <= 0 || batchSize <= 0 || sampleSize < 0) {
+			ConfigReader.fail("ERROR : num and batch should be positive and sample should be non-negative");
+		}
+		if (confidence <= 0 || confidence >= 1) {
+			ConfigReader.fail("ERROR : confidence should be in (0, 1), given "
+					+ confidence);
+		}
+		this.myType = type;
+		this.myNum = num;
+		this.myProcessingPower = processingPower;
+		this.myConstraint = constraint;
+		this.myIsAveraging = isAveraging;
+		this.myIsExhaustive = isExhaustive;
+		this.myIsSteepest = isSteepest;
+		this.mySpace = space;
+		this.mySampleSize = sampleSize;
+		this.myBatchSize = batchSize;
+		this.myConfidence = confidence;
+		this.myIsHalving = isHalving;
+	}
+
+	/**
+	 * Run the race with the environment and runs of the given case, and write
+	 * the ranked list of plans to a file. Each line of the file is the rank,
+	 * the plan, the number of seeds it was simulated on, its mean final
+	 * fitness value, and the lower and upper bounds of the confidence interval
+	 * of the mean. The plans which stayed longer are ranked higher, and plans
+	 * which were dropped in the same round are ranked by their means.
+	 * 
+	 * @param c
+	 *            a case object
+	 */
+	public void run(Case c) {
+		InfluenceMatrix inf = c.getInf();
+		final ArrayList<ArrayList<HashSet<Integer>>> plans = this
+				.constructPlans(inf.getN());
+		final RunningStatistics stats[] = new RunningStatistics[plans.size()];
+		// the round in which each plan was dropped, MAX_VALUE if not dropped
+		final int droppedRounds[] = new int[plans.size()];
+		ArrayList<Integer> remaining = new ArrayList<Integer>();
+		for (int i = 0; i < plans.size(); i++) {
+			stats[i] = new RunningStatistics();
+			droppedRounds[i] = Integer.MAX_VALUE;
+			remaining.add(i);
+		}
+
+		OutputWriter.setDiscarding(true);
+		int seed = 0;
+		int round = 0;
+		while (remaining.size() > 1 && seed < c.getRuns()) {
+			int end = Math.min(seed + this.myBatchSize, c.getRuns());
+			for (; seed < end; seed++) {
+				RandomGen.setSeed(seed);
+				ArrayList<Agent> agents = new ArrayList<Agent>();
+				for (int i : remaining) {
+					agents.add(new Agent(inf, copyPlan(plans.get(i)),
+							this.myProcessingPower, "p" + i, this.myNum,
+							this.myConstraint, this.myIsAveraging,
+							this.myIsExhaustive, false, this.myIsSteepest));
+				}
+				Simulator s = new Simulator(c, agents);
+				s.startSimulation();
+				for (int i : remaining) {
+					stats[i].add(s.getMeanFinalScoreOf("p" + i));
+				}
+			}
+			round++;
+			// drop the clearly inferior plans
+			double bestLower = Double.NEGATIVE_INFINITY;
+			for (int i : remaining) {
+				bestLower = Math.max(bestLower, stats[i].getMean()
+						- stats[i].getHalfWidth(this.myConfidence));
+			}
+			ArrayList<Integer> survivors = new ArrayList<Integer>();
+			for (int i : remaining) {
+				if (stats[i].getMean() + stats[i].getHalfWidth(this.myConfidence) < bestLower) {
+					droppedRounds[i] = round;
+				} else {
+					survivors.add(i);
+				}
+			}
+			// keep the better half
+			if (this.myIsHalving && survivors.size() > 1) {
+				Collections.sort(survivors, new Comparator<Integer>() {
+					@Override
+					public int compare(Integer a, Integer b) {
+						return Double.compare(stats[b].getMean(),
+								stats[a].getMean());
+					}
+				});
+				int keep = (survivors.size() + 1) / 2;
+				for (int k = keep; k < survivors.size(); k++) {
+					droppedRounds[survivors.get(k)] = round;
+				}
+				survivors = new ArrayList<Integer>(survivors.subList(0, keep));
+			}
+			remaining = survivors;
+		}
+		OutputWriter.setDiscarding(false);
+
+		// rank all the plans
+		ArrayList<Integer> ranking = new ArrayList<Integer>();
+		for (int i = 0; i < plans.size(); i++) {
+			ranking.add(i);
+		}
+		Collections.sort(ranking, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				if (droppedRounds[a] != droppedRounds[b]) {
+					return droppedRounds[a] > droppedRounds[b] ? -1 : 1;
+				}
+				return Double.compare(stats[b].getMean(), stats[a].getMean());
+			}
+		});
+		OutputWriter.setOutputFile("r_n" + inf.getN() + "k" + inf.getK()
+				+ "_b" + c.getBias() + "d" + c.getDelta() + "_" + this.myType
+				+ ".txt");
+		for (int r = 0; r < ranking.size(); r++) {
+			int i = ranking.get(r);
+			double halfWidth = stats[i].getHalfWidth(this.myConfidence);
+			OutputWriter.writeLine((r + 1) + "\t" + planToString(plans.get(i))
+					+ "\t" + stats[i].getCount() + "\t" + stats[i].getMean()
+					+ "\t" + (stats[i].getMean() - halfWidth) + "\t"
+					+ (stats[i].getMean() + halfWidth));
+		}
+		OutputWriter.close();
+		int best = ranking.get(0);
+		System.out.println("race " + this.myType + " : " + plans.size()
+				+ " plans, " + seed + " seeds, best "
+				+ planToString(plans.get(best)) + " "
+				+ stats[best].getMean() + " +/- "
+				+ stats[best].getHalfWidth(this.myConfidence));
+	}
+
+	/**
+	 * Return all the plans in the space, or a random sample of them.
+	 * 
+	 * @param n
+	 *            the number of elements
+	 * @return a list of plans
+	 */
+	private ArrayList<ArrayList<HashSet<Integer>>> constructPlans(int n) {
+		double planNum = countPlans(n, this.mySpace);
+		MersenneTwisterFast random = new MersenneTwisterFast(SAMPLE_SEED);
+		if (planNum <= MAX_PLAN_NUM) {
+			ArrayList<ArrayList<HashSet<Integer>>> result = new ArrayList<ArrayList<HashSet<Integer>>>();
+			this.enumeratePlans(new int[n], 0, 0, result);
+			if (this.mySampleSize == 0 || this.mySampleSize >= result.size()) {
+				return result;
+			}
+			// pick a sample without replacement
+			for (int i = 0; i < this.mySampleSize; i++) {
+				Collections.swap(result, i,
+						i + random.nextInt(result.size() - i));
+			}
+			return new ArrayList<ArrayList<HashSet<Integer>>>(result.subList(
+					0, this.mySampleSize));
+		}
+		if (this.mySampleSize == 0) {
+			System.out.println("ERROR : " + (long) planNum + " plans in "
+					+ this.mySpace + " of " + n
+					+ " elements are too many, please give a sample size");
+			System.exit(1);
+		}
+		// generate random plans, each element goes to a random iteration
+		ArrayList<ArrayList<HashSet<Integer>>> result = new ArrayList<ArrayList<HashSet<Integer>>>();
+		HashSet<String> sampled = new HashSet<String>();
+		for (int attempt = 0; result.size() < this.mySampleSize
+				&& attempt < 100 * this.mySampleSize; attempt++) {
+			int labels[] = new int[n];
+			for (int e = 0; e < n; e++) {
+				labels[e] = random.nextInt(n);
+			}
+			ArrayList<HashSet<Integer>> plan = new ArrayList<HashSet<Integer>>();
+			TreeSet<Integer> usedLabels = new TreeSet<Integer>();
+			for (int label : labels) {
+				usedLabels.add(label);
+			}
+			for (int label : usedLabels) {
+				HashSet<Integer> iteration = new HashSet<Integer>();
+				for (int e = 0; e < n; e++) {
+					if (labels[e] == label) {
+						iteration.add(e);
+					}
+				}
+				plan.add(iteration);
+			}
+			if (this.mySpace.equals("partitions")) {
+				Collections.sort(plan, new Comparator<HashSet<Integer>>() {
+					@Override
+					public int compare(HashSet<Integer> a, HashSet<Integer> b) {
+						return Collections.min(a) - Collections.min(b);
+					}
+				});
+			}
+			if (sampled.add(planToString(plan))) {
+				result.add(plan);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Enumerate the plans recursively. The elements before the given element
+	 * are already assigned to iterations, where the iterations are numbered by
+	 * their smallest elements (a restricted growth string). When all the
+	 * elements are assigned, the plan is added, and for "orderings" all the
+	 * orders of its iterations are added.
+	 * 
+	 * @param assignment
+	 *            the iteration number of each element
+	 * @param element
+	 *            the next element to be assigned
+	 * @param iterationNum
+	 *            the number of iterations used so far
+	 * @param result
+	 *            a list of plans to be added to
+	 */
+	private void enumeratePlans(int assignment[], int element,
+			int iterationNum, ArrayList<ArrayList<HashSet<Integer>>> result) {
+		if (element == assignment.length) {
+			ArrayList<HashSet<Integer>> plan = new ArrayList<HashSet<Integer>>();
+			for (int i = 0; i < iterationNum; i++) {
+				plan.add(new HashSet<Integer>());
+			}
+			for (int e = 0; e < assignment.length; e++) {
+				plan.get(assignment[e]).add(e);
+			}
+			if (this.mySpace.equals("partitions")) {
+				result.add(plan);
+			} else {
+				permute(plan, 0, result);
+			}
+			return;
+		}
+		for (int i = 0; i <= iterationNum; i++) {
+			assignment[element] = i;
+			this.enumeratePlans(assignment, element + 1,
+					Math.max(iterationNum, i + 1), result);
+		}
+	}
+
+	/**
+	 * Add all the orders of the iterations of the given plan, where the
+	 * iterations before the given position are fixed.
+	 * 
+	 * @param plan
+	 *            a plan
+	 * @param position
+	 *            the first position to be permuted
+	 * @param result
+	 *            a list of plans to be added to
+	 */
+	private static void permute(ArrayList<HashSet<Integer>> plan,
+			int position, ArrayList<ArrayList<HashSet<Integer>>> result) {
+		if (position == plan.size()) {
+			result.add(new ArrayList<HashSet<Integer>>(plan));
+			return;
+		}
+		for (int i = position; i < plan.size(); i++) {
+			Collections.swap(plan, position, i);
+			permute(plan, position + 1, result);
+			Collections.swap(plan, position, i);
+		}
+	}
+
+	/**
+	 * Return the number of plans in the given space of n elements, i.e. the
+	 * Bell number for "partitions" and the ordered Bell (Fubini) number for
+	 * "orderings". The number is computed in floating point, since it grows
+	 * beyond a long quickly.
+	 * 
+	 * @param n
+	 *            the number of elements
+	 * @param space
+	 *            "partitions" or "orderings"
+	 * @return the number of plans
+	 */
+	private static double countPlans(int n, String space) {
+		// Stirling numbers of the second kind, S(n, k)
+		double stirling[] = new double[n + 1];
+		stirling[0] = 1;
+		for (int m = 1; m <= n; m++) {
+			for (int k = m; k >= 1; k--) {
+				stirling[k] = k * stirling[k] + stirling[k - 1];
+			}
+			stirling[0] = 0;
+		}
+		double result = 0;
+		double factorial = 1;
+		for (int k = 1; k <= n; k++) {
+			factorial *= k;
+			result += space.equals("partitions") ? stirling[k] : factorial
+					* stirling[k];
+		}
+		return result;
+	}
+
+	/**
+	 * Return a deep copy of the given plan.
+	 * 
+	 * @param plan
+	 *            a plan
+	 * @return a deep copy of the given plan
+	 */
+	private static ArrayList<HashSet<Integer>> copyPlan(
+			ArrayList<HashSet<Integer>> plan) {
+		ArrayList<HashSet<Integer>> result = new ArrayList<HashSet<Integer>>();
+		for (HashSet<Integer> iteration : plan) {
+			result.add(new HashSet<Integer>(iteration));
+		}
+		return result;
+	}
+
+	/**
+	 * Return the string of the given plan in the config file format, e.g.
+	 * (0,1)(2,3).
+	 * 
+	 * @param plan
+	 *            a plan
+	 * @return the string of the given plan
+	 */
+	private static String planToString(ArrayList<HashSet<Integer>> plan) {
+		String result = "";
+		for (HashSet<Integer> iteration : plan) {
+			String elements = "";
+			for (int element : new TreeSet<Integer>(iteration)) {
+				elements += (elements.isEmpty() ? "" : ",") + element;
+			}
+			result += "(" + elements + ")";
+		}
+		return result;
+	}
+
+	/**
+	 * Return a string representation of the race.
+	 */
+	@Override
+	public String toString() {
+		return "race " + this.myType + " : num = " + this.myNum + ", power = "
+				+ this.myProcessingPower + ", constraint = "
+				+ this.myConstraint + ", averaging = " + this.myIsAveraging
+				+ ", exhaustive = " + this.myIsExhaustive + ", steepest = "
+				+ this.myIsSteepest + ", space = " + this.mySpace
+				+ ", sample = " + this.mySampleSize + ", batch = "
+				+ this.myBatchSize + ", confidence = " + this.myConfidence
+				+ ", halving = " + this.myIsHalving;
+	}
+}
@@ -0,0 +1,479 @@
+package simulation;
+
+import landscape.*;
+import agent.*;
+import util.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+public class PopulationEngine {
+	/**
+	 * the number of agents advanced together in lock-step
+	 */
+	private static final int BATCH_SIZE = 64;
+	/**
+	 * phases of an agent, at the start of an iteration, exploring within an
+	 * iteration, or done with all iterations
+	 */
+	private static final int START = 0;
+	private static final int EXPLORE = 1;
+	private static final int DONE = 2;
+
+	private Landscape myLandscapeTable[][];
+	private ArrayList<Integer> myTauList;
+	private int myN;
+
+	private int myTotalNum;
+	private int myProcessingPower;
+	private double myConstraint;
+	private boolean myIsAveraging;
+	private boolean myIsExhaustive;
+	/**
+	 * bits of the elements of each iteration in a location id
+	 */
+	private int myIterationMasks[];
+	/**
+	 * for each iteration, all the changes of 1 to processing power elements of
+	 * the iteration, as bits to be toggled in a location id
+	 */
+	private int myFlipMasks[][];
+	/**
+	 * for each iteration, a gather table which maps the location ids reachable
+	 * within the iteration to bits of the visited bitmap
+	 */
+	private int myGatherTables[][];
+	private long myTypeSeed;
+	private double myFinalScoreSum;
+
+	// states of the agents in the current batch
+	private int myLocIds[];
+	private int myIterations[];
+	private int myImplementedMasks[];
+	private int myTimes[];
+	private int myShocks[];
+	private int myPhases[];
+	private long myRandomStates[];
+	private int myCandidates[][];
+	private int myCandidateNums[];
+	private long myVisited[][];
+	private int myNumToTry[];
+	private int myNumTried[];
+	private boolean myFoundBetter[];
+	private double myCurrentScores[];
+	private StringBuilder myLines[];
+	/**
+	 * the listener of the simulation which is given the records instead of
+	 * the output file, or null, and the records of each agent in the batch
+	 */
+	private SimulationListener myListener;
+	private ArrayList<ArrayList<TrajectoryRecord>> myRecords;
+	private String myType;
+
+	/**
+	 * Create a population engine for all the agents of the given type. The
+	 * states of the agents are kept in primitive arrays instead of agent
+	 * objects, and the agents are advanced in lock-step batches, one
+	 * exploration step of every agent in the batch at a time, over the shared
+	 * landscapes.
+	 * 
+	 * The exploration strategies are the same as in the simulator, except
+	 * that each agent has its own random stream (for its initial location and
+	 * its candidate choices) and its own shock number starting from 0.
+	 * Therefore, the results are statistically equivalent but not identical
+	 * to simulating the agents one by one.
+	 * 
+	 * @param agent
+	 *            an agent object, which gives the type, total number,
+	 *            iteration plan and exploration strategy of the agents
+	 * @param landscapeTable
+	 *            a 2-dimensional table of landscapes, (total shock number + 1)
+	 *            by (N + 1)
+	 * @param tauList
+	 *            a list of shock times
+	 */
+	public PopulationEngine(Agent agent, Landscape landscapeTable[][],
+			ArrayList<Integer> tauList) {
+		this.myLandscapeTable = landscapeTable;
+		this.myTauList = tauList;
+		this.myN = agent.getInf().getN();
+		this.myTotalNum = agent.getTotalNum();
+		this.myProcessingPower = agent.getProcessingPower();
+		this.myConstraint = agent.getConstraint();
+		this.myIsAveraging = agent.isAveraging();
+		this.myIsExhaustive = agent.isExhaustive();
+
+		ArrayList<HashSet<Integer>> plan = agent.getIterationPlan();
+		this.myIterationMasks = new int[plan.size()];
+		this.myFlipMasks = new int[plan.size()][];
+		this.myGatherTables = new int[plan.size()][];
+		int maxCandidateNum = 0;
+		int maxVisitedSize = 1;
+		for (int i = 0; i < plan.size(); i++) {
+			int mask = 0;
+			for (int element : plan.get(i)) {
+				mask |= 1 << (this.myN - 1 - element);
+			}
+			this.myIterationMasks[i] = mask;
+			// enumerate all the subsets of the mask with 1 to processing
+			// power bits
+			ArrayList<Integer> flips = new ArrayList<Integer>();
+			int subset = (0 - mask) & mask;
+			while (subset != 0) {
+				if (Integer.bitCount(subset) <= this.myProcessingPower) {
+					flips.add(subset);
+				}
+				subset = (subset - mask) & mask;
+			}
+			this.myFlipMasks[i] = new int[flips.size()];
+			for (int j = 0; j < flips.size(); j++) {
+				this.myFlipMasks[i][j] = flips.get(j);
+			}
+			this.myGatherTables[i] = CompiledInfluenceMatrix
+					.buildGatherTable(mask);
+			maxCandidateNum = Math.max(maxCandidateNum, flips.size());
+			maxVisitedSize = Math.max(maxVisitedSize,
+					((1 << Integer.bitCount(mask)) + 63) >> 6);
+		}
+		this.myTypeSeed = RandomGen.getRandomGen().nextLong();
+
+		this.myLocIds = new int[BATCH_SIZE];
+		this.myIterations = new int[BATCH_SIZE];
+		this.myImplementedMasks = new int[BATCH_SIZE];
+		this.myTimes = new int[BATCH_SIZE];
+		this.myShocks = new int[BATCH_SIZE];
+		this.myPhases = new int[BATCH_SIZE];
+		this.myRandomStates = new long[BATCH_SIZE];
+		this.myCandidates = new int[BATCH_SIZE][maxCandidateNum];
+		this.myCandidateNums = new int[BATCH_SIZE];
+		this.myVisited = new long[BATCH_SIZE][maxVisitedSize];
+		this.myNumToTry = new int[BATCH_SIZE];
+		this.myNumTried = new int[BATCH_SIZE];
+		this.myFoundBetter = new boolean[BATCH_SIZE];
+		this.myCurrentScores = new double[BATCH_SIZE];
+		this.myLines = new StringBuilder[BATCH_SIZE];
+		for (int b = 0; b < BATCH_SIZE; b++) {
+			this.myLines[b] = new StringBuilder();
+		}
+		this.myListener = Simulation.getListener();
+		this.myRecords = new ArrayList<ArrayList<TrajectoryRecord>>();
+		for (int b = 0; b < BATCH_SIZE; b++) {
+			this.myRecords.add(new ArrayList<TrajectoryRecord>());
+		}
+		this.myType = agent.getType();
+	}
+
+	/**
+	 * Simulate all the agents batch by batch. Within a batch, every active
+	 * agent takes one step in turn until all of them are done. The records of
+	 * each agent are buffered and written to the current output file after the
+	 * batch, in the order of agent numbers.
+	 */
+	public void run() {
+		this.myFinalScoreSum = 0.0;
+		for (int first = 0; first < this.myTotalNum; first += BATCH_SIZE) {
+			int size = Math.min(BATCH_SIZE, this.myTotalNum - first);
+			for (int b = 0; b < size; b++) {
+				this.myRandomStates[b] = this.myTypeSeed + (first + b + 1L)
+						* 0x9E3779B97F4A7C15L;
+				this.myLocIds[b] = this.nextInt(b, 1 << this.myN);
+				this.myIterations[b] = 0;
+				this.myImplementedMasks[b] = 0;
+				this.myTimes[b] = 0;
+				this.myShocks[b] = 0;
+				this.myPhases[b] = START;
+				this.myLines[b].setLength(0);
+				this.myRecords.get(b).clear();
+			}
+			int activeNum = size;
+			while (activeNum > 0) {
+				for (int b = 0; b < size; b++) {
+					if (this.myPhases[b] == DONE) {
+						continue;
+					}
+					this.step(b, first + b);
+					if (this.myPhases[b] == DONE) {
+						activeNum--;
+						this.myFinalScoreSum += this.myLandscapeTable[this.myShocks[b]][this.myN]
+								.getScoreOfLocId(this.myLocIds[b]);
+					}
+				}
+			}
+			for (int b = 0; b < size; b++) {
+				if (this.myListener == null) {
+					OutputWriter.write(this.myLines[b].toString());
+					continue;
+				}
+				for (TrajectoryRecord record : this.myRecords.get(b)) {
+					this.myListener.record(record);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Return the mean final fitness value of the agents, after run.
+	 * 
+	 * @return the mean final fitness value of the agents
+	 */
+	public double getMeanFinalScore() {
+		return this.myFinalScoreSum / this.myTotalNum;
+	}
+
+	/**
+	 * Take one step of the given agent: start an iteration, try one candidate,
+	 * or finish the exploration of an iteration.
+	 * 
+	 * @param b
+	 *            the agent's position in the batch
+	 * @param num
+	 *            the agent's number
+	 */
+	private void step(int b, int num) {
+		if (this.myPhases[b] == START) {
+			// detect new shock
+			if (this.myShocks[b] < this.myTauList.size()
+					&& this.myTimes[b] > this.myTauList.get(this.myShocks[b])) {
+				this.myShocks[b]++;
+			}
+			// write log for initial config
+			this.writeLine(b, num);
+			this.myTimes[b]++;
+			this.startExplore(b);
+			this.myPhases[b] = EXPLORE;
+		} else if (this.myIsExhaustive) {
+			if (this.myNumTried[b] < this.myNumToTry[b]
+					&& this.myCandidateNums[b] > 0) {
+				int candidate = this.tryCandidate(b);
+				if (candidate >= 0) {
+					// pick the better one, but not update the candidates
+					this.myLocIds[b] = candidate;
+					this.myFoundBetter[b] = true;
+				}
+			} else if (this.myFoundBetter[b]) {
+				// update the candidates around the new location
+				this.buildCandidates(b);
+				this.myNumTried[b] = 0;
+				this.myFoundBetter[b] = false;
+				this.writeLine(b, num);
+				this.myTimes[b]++;
+			} else {
+				this.finishIteration(b);
+			}
+		} else {
+			if (this.myNumTried[b] < this.myNumToTry[b]
+					&& this.myCandidateNums[b] > 0) {
+				int candidate = this.tryCandidate(b);
+				if (candidate >= 0) {
+					this.myLocIds[b] = candidate;
+					this.buildCandidates(b);
+					this.myNumTried[b] = 0;
+				}
+				this.writeLine(b, num);
+				this.myTimes[b]++;
+			} else {
+				this.finishIteration(b);
+			}
+		}
+	}
+
+	/**
+	 * Start the exploration of the current iteration: clear the visited
+	 * bitmap, collect the candidates around the current location and deal
+	 * with the constraint.
+	 * 
+	 * @param b
+	 *            the agent's position in the batch
+	 */
+	private void startExplore(int b) {
+		int iteration = this.myIterations[b];
+		int visitedSize = ((1 << Integer
+				.bitCount(this.myIterationMasks[iteration])) + 63) >> 6;
+		for (int i = 0; i < visitedSize; i++) {
+			this.myVisited[b][i] = 0;
+		}
+		this.markVisited(b, this.myLocIds[b]);
+		this.buildCandidates(b);
+		this.myNumTried[b] = 0;
+		this.myFoundBetter[b] = false;
+		if (!this.myIsExhaustive && !this.myIsAveraging) {
+			// random exploration without averaging has no constraint
+			this.myNumToTry[b] = Integer.MAX_VALUE;
+		} else {
+			this.myNumToTry[b] = (int) Math.ceil(this.myConstraint
+					* this.myCandidateNums[b]);
+		}
+		if (this.myIsAveraging) {
+			this.myCurrentScores[b] = this.getLandscape(b).getAverageScoreOf(
+					this.myLocIds[b], this.getFreeMask(b));
+		}
+	}
+
+	/**
+	 * Pick one candidate randomly, remove it from the candidates and mark it
+	 * visited. Return the candidate if it is not worse than the current
+	 * location, or -1 otherwise.
+	 * 
+	 * @param b
+	 *            the agent's position in the batch
+	 * @return the candidate if it is not worse than the current location, or
+	 *         -1 otherwise
+	 */
+	private int tryCandidate(int b) {
+		int idx = this.nextInt(b, this.myCandidateNums[b]);
+		int candidate = this.myCandidates[b][idx];
+		this.myCandidates[b][idx] = this.myCandidates[b][--this.myCandidateNums[b]];
+		this.markVisited(b, candidate);
+		this.myNumTried[b]++;
+		Landscape ldscp = this.getLandscape(b);
+		if (this.myIsAveraging) {
+			double candidateScore = ldscp.getAverageScoreOf(candidate,
+					this.getFreeMask(b));
+			if (candidateScore >= this.myCurrentScores[b]) {
+				this.myCurrentScores[b] = candidateScore;
+				return candidate;
+			}
+		} else if (ldscp.getScoreOfLocId(candidate) >= ldscp
+				.getScoreOfLocId(this.myLocIds[b])) {
+			return candidate;
+		}
+		return -1;
+	}
+
+	/**
+	 * Collect the unvisited neighbours of the current location w.r.t. the
+	 * elements of the current iteration as candidates.
+	 * 
+	 * @param b
+	 *            the agent's position in the batch
+	 */
+	private void buildCandidates(int b) {
+		int flips[] = this.myFlipMasks[this.myIterations[b]];
+		int candidates[] = this.myCandidates[b];
+		int count = 0;
+		for (int i = 0; i < flips.length; i++) {
+			int neighbour = this.myLocIds[b] ^ flips[i];
+			if (!this.isVisited(b, neighbour)) {
+				candidates[count++] = neighbour;
+			}
+		}
+		this.myCandidateNums[b] = count;
+	}
+
+	/**
+	 * Add the elements of the current iteration into the implemented elements
+	 * and move to the next iteration.
+	 * 
+	 * @param b
+	 *            the agent's position in the batch
+	 */
+	private void finishIteration(int b) {
+		this.myImplementedMasks[b] |= this.myIterationMasks[this.myIterations[b]];
+		this.myIterations[b]++;
+		this.myPhases[b] = (this.myIterations[b] == this.myIterationMasks.length) ? DONE
+				: START;
+	}
+
+	/**
+	 * Return the landscape of the agent's shock number and number of
+	 * implemented elements.
+	 * 
+	 * @param b
+	 *            the agent's position in the batch
+	 * @return the agent's current landscape
+	 */
+	private Landscape getLandscape(int b) {
+		return this.myLandscapeTable[this.myShocks[b]][Integer
+				.bitCount(this.myImplementedMasks[b])];
+	}
+
+	/**
+	 * Return the bits of the unimplemented elements excluding the elements in
+	 * the current iteration, i.e. the elements to be averaged over.
+	 * 
+	 * @param b
+	 *            the agent's position in the batch
+	 * @return the bits of the elements to be averaged over
+	 */
+	private int getFreeMask(int b) {
+		return ~(this.myImplementedMasks[b] | this.myIterationMasks[this.myIterations[b]])
+				& (int) ((1L << this.myN) - 1);
+	}
+
+	/**
+	 * Mark the given location id visited in the current iteration.
+	 * 
+	 * @param b
+	 *            the agent's position in the batch
+	 * @param locId
+	 *            a location id reachable within the current iteration
+	 */
+	private void markVisited(int b, int locId) {
+		int idx = CompiledInfluenceMatrix.gather(
+				this.myGatherTables[this.myIterations[b]], locId);
+		this.myVisited[b][idx >> 6] |= 1L << (idx & 63);
+	}
+
+	/**
+	 * Return true if the given location id is visited in the current
+	 * iteration.
+	 * 
+	 * @param b
+	 *            the agent's position in the batch
+	 * @param locId
+	 *            a location id reachable within the current iteration
+	 * @return true if the given location id is visited
+	 */
+	private boolean isVisited(int b, int locId) {
+		int idx = CompiledInfluenceMatrix.gather(
+				this.myGatherTables[this.myIterations[b]], locId);
+		return (this.myVisited[b][idx >> 6] & (1L << (idx & 63))) != 0;
+	}
+
+	/**
+	 * Return a random integer in [0, bound) from the agent's own random stream
+	 * (SplitMix64).
+	 * 
+	 * @param b
+	 *            the agent's position in the batch
+	 * @param bound
+	 *            a positive integer
+	 * @return a random integer in [0, bound)
+	 */
+	private int nextInt(int b, int bound) {
+		long z = (this.myRandomStates[b] += 0x9E3779B97F4A7C15L);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z = z ^ (z >>> 31);
+		return (int) (((z >>> 32) * bound) >>> 32);
+	}
+
+	/**
+	 * Buffer one record of the given agent, in the same format as the
+	 * simulator, or as a record object for the listener of the simulation.
+	 * 
+	 * @param b
+	 *            the agent's position in the batch
+	 * @param num
+	 *            the agent's number
+	 */
+	private void writeLine(int b, int num) {
+		Landscape finalLandscape = this.myLandscapeTable[this.myShocks[b]][this.myN];
+		if (this.myListener != null) {
+			this.myRecords.get(b).add(
+					new TrajectoryRecord(RandomGen.getSeed(), this.myType, num,
+							this.myTimes[b], this.myShocks[b],
+							this.myIterations[b], finalLandscape
+									.getScoreOfLocId(this.myLocIds[b]),
+							finalLandscape.getMax(), finalLandscape.getMin()));
+			return;
+		}
+		this.myLines[b].append(RandomGen.getSeed()).append('\t').append(num)
+				.append('\t').append(this.myTimes[b]).append('\t')
+				.append(this.myShocks[b]).append('\t')
+				.append(this.myIterations[b]).append('\t')
+				.append(finalLandscape.getScoreOfLocId(this.myLocIds[b]))
+				.append('\t').append(finalLandscape.getMax()).append('\t')
+				.append(finalLandscape.getMin()).append('\n');
+	}
+}
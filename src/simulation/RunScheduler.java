@@ -0,0 +1,301 @@
+package simulation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+public class RunScheduler {
+	/**
+	 * the number of units which are collected before they are run, so that
+	 * the units waiting in memory are bounded for long configs
+	 */
+	private static final int WINDOW_SIZE = 1024;
+	private static final long MEGABYTE = 1L << 20;
+
+	private static int myWorkerNum = 1;
+	/**
+	 * the memory budget in bytes, 0 for the default
+	 */
+	private static long myBudget = 0;
+
+	/**
+	 * the units which are not run yet, in the order of the output
+	 */
+	protected ArrayList<RunUnit> myUnits;
+
+	/**
+	 * Set the number of runs which are simulated at the same time, each on a
+	 * thread of its own. 1 (the default) means the runs are simulated one by
+	 * one in the calling thread, without a scheduler.
+	 * 
+	 * @param workerNum
+	 *            a positive integer, which indicates the number of workers
+	 */
+	public static void setWorkerNum(int workerNum) {
+		if (workerNum <= 0) {
+			System.out
+					.println("ERROR worker number should be positive, given "
+							+ workerNum);
+			System.exit(1);
+		}
+		myWorkerNum = workerNum;
+	}
+
+	/**
+	 * Return the number of runs which are simulated at the same time.
+	 * 
+	 * @return the number of workers
+	 */
+	public static int getWorkerNum() {
+		return myWorkerNum;
+	}
+
+	/**
+	 * Set the memory budget of the runs which are simulated at the same time.
+	 * 
+	 * @param megabytes
+	 *            a positive integer, which indicates the budget in megabytes
+	 */
+	public static void setBudget(int megabytes) {
+		if (megabytes <= 0) {
+			System.out.println("ERROR budget should be positive, given "
+					+ megabytes);
+			System.exit(1);
+		}
+		myBudget = megabytes * MEGABYTE;
+	}
+
+	/**
+	 * Return the memory budget in bytes, by default 80% of the maximum heap.
+	 * 
+	 * @return the memory budget in bytes
+	 */
+	public static long getBudget() {
+		if (myBudget > 0) {
+			return myBudget;
+		}
+		return (long) (0.8 * Runtime.getRuntime().maxMemory());
+	}
+
+	/**
+	 * Set the number of workers and the memory budget back to the defaults,
+	 * e.g. before the next config runs in the same process.
+	 */
+	public static void resetSettings() {
+		myWorkerNum = 1;
+		myBudget = 0;
+	}
+
+	/**
+	 * Create a scheduler which runs units of work on several threads at the
+	 * same time. The units are started longest first by the cost model, so
+	 * that a long unit does not start last and keep the other workers idle,
+	 * except that the next unit to be committed is started as soon as it can,
+	 * and a unit is only started while the estimated memory of the running
+	 * units and the output waiting to be committed stays within the budget.
+	 * When no unit fits, the next unit in the order of the output runs alone,
+	 * with a warning if it needs more than the budget by itself.
+	 * 
+	 * The output of the units is committed in the order they are added,
+	 * therefore the output files are the same as if the units ran one by one.
+	 * 
+	 * @see CostModel
+	 * @see RunUnit
+	 */
+	public RunScheduler() {
+		this.myUnits = new ArrayList<RunUnit>();
+	}
+
+	/**
+	 * Return true if the units are run at the same time, i.e. there is more
+	 * than one worker.
+	 * 
+	 * @return true if the units are run at the same time
+	 */
+	public boolean isParallel() {
+		return myWorkerNum > 1;
+	}
+
+	/**
+	 * Add the given unit after the units added before.
+	 * 
+	 * @param unit
+	 *            a unit of work
+	 */
+	public void add(RunUnit unit) {
+		this.myUnits.add(unit);
+	}
+
+	/**
+	 * Return the number of units added so far, which is also the position of
+	 * the next unit in the order of the output.
+	 * 
+	 * @return the number of units
+	 */
+	public int getUnitNum() {
+		return this.myUnits.size();
+	}
+
+	/**
+	 * Return true if the units added so far should be run before more units
+	 * are added.
+	 * 
+	 * @return true if the window of units is full
+	 */
+	public boolean isFull() {
+		return this.myUnits.size() >= WINDOW_SIZE;
+	}
+
+	/**
+	 * Run the units added so far, and commit their output in order.
+	 */
+	public void run() {
+		if (this.myUnits.isEmpty()) {
+			return;
+		}
+		long budget = getBudget();
+		ArrayList<RunUnit> pending = this.getLongestFirst();
+		ExecutorService executor = Executors.newFixedThreadPool(myWorkerNum,
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r);
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		ExecutorCompletionService<RunUnit> completion = new ExecutorCompletionService<RunUnit>(
+				executor);
+		long inUse = 0;
+		int running = 0;
+		int next = 0;
+		try {
+			while (next < this.myUnits.size()) {
+				// admit the units while they fit in the budget
+				while (running < myWorkerNum && !pending.isEmpty()) {
+					RunUnit unit = this.pick(pending, budget - inUse,
+							running == 0, next);
+					if (unit == null) {
+						break;
+					}
+					pending.remove(unit);
+					inUse += unit.getBytes();
+					running++;
+					final RunUnit task = unit;
+					completion.submit(new Callable<RunUnit>() {
+						@Override
+						public RunUnit call() {
+							task.run();
+							return task;
+						}
+					});
+				}
+				// the estimate is replaced by the captured output
+				RunUnit done = completion.take().get();
+				running--;
+				done.setDone();
+				inUse += done.getBufferBytes() - done.getBytes();
+				while (next < this.myUnits.size()
+						&& this.myUnits.get(next).isDone()) {
+					RunUnit unit = this.myUnits.get(next);
+					inUse -= unit.getBufferBytes();
+					unit.commit();
+					next++;
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+		executor.shutdown();
+		this.myUnits.clear();
+	}
+
+	/**
+	 * Return the units which are not run yet, longest first by the cost
+	 * model, and in the order of the output for the same cost.
+	 * 
+	 * @return a list of units
+	 */
+	protected ArrayList<RunUnit> getLongestFirst() {
+		ArrayList<RunUnit> result = new ArrayList<RunUnit>(this.myUnits);
+		Collections.sort(result, new Comparator<RunUnit>() {
+			@Override
+			public int compare(RunUnit u1, RunUnit u2) {
+				if (u1.getCost() != u2.getCost()) {
+					return u1.getCost() > u2.getCost() ? -1 : 1;
+				}
+				return u1.getOrder() - u2.getOrder();
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Commit the units which are run, from the given position on in the order
+	 * of the output, until the first unit which is not run yet.
+	 * 
+	 * @param next
+	 *            the position of the next unit to be committed
+	 * @return the position of the next unit to be committed after this
+	 */
+	protected int commitFrom(int next) {
+		while (next < this.myUnits.size() && this.myUnits.get(next).isDone()) {
+			this.myUnits.get(next).commit();
+			next++;
+		}
+		return next;
+	}
+
+	/**
+	 * Return the unit to start next, or null if none can start now. The next
+	 * unit to be committed comes first if it is pending and fits in the given
+	 * memory, so that the output is committed (and released) steadily, e.g.
+	 * for the journal, then the longest pending unit which fits. If none fits
+	 * and no unit is running, the first pending unit in the order of the
+	 * output runs alone.
+	 * 
+	 * @param pending
+	 *            the pending units, longest first
+	 * @param available
+	 *            the memory left in the budget in bytes
+	 * @param isIdle
+	 *            true if no unit is running
+	 * @param next
+	 *            the position of the next unit to be committed
+	 * @return a unit to start, or null
+	 */
+	private RunUnit pick(ArrayList<RunUnit> pending, long available,
+			boolean isIdle, int next) {
+		RunUnit first = pending.get(0);
+		for (RunUnit unit : pending) {
+			if (unit.getOrder() < first.getOrder()) {
+				first = unit;
+			}
+		}
+		if (first.getOrder() == next && first.getBytes() <= available) {
+			return first;
+		}
+		for (RunUnit unit : pending) {
+			if (unit.getBytes() <= available) {
+				return unit;
+			}
+		}
+		if (!isIdle) {
+			return null;
+		}
+		if (first.getBytes() > getBudget()) {
+			System.out.println("WARNING : seed " + first.getSeed()
+					+ " of case(s) " + first.getCaseIndices() + " needs about "
+					+ first.getBytes() / MEGABYTE
+					+ " MB, more than the budget of " + getBudget() / MEGABYTE
+					+ " MB");
+		}
+		return first;
+	}
+}
@@ -0,0 +1,254 @@
+package simulation;
+
+import agent.Agent;
+import util.Journal;
+import util.OutputBuffer;
+import util.OutputWriter;
+import util.RandomGen;
+
+import java.util.ArrayList;
+
+public class RunUnit {
+	private int mySeed;
+	/**
+	 * the position of the unit in the order of the output
+	 */
+	private int myOrder;
+	private ArrayList<Case> myCases;
+	private ArrayList<Integer> myCaseIndices;
+	/**
+	 * the captured output of each case, null until the unit is run and after
+	 * it is committed
+	 */
+	private OutputBuffer myBuffers[];
+	private long myBytes;
+	private double myCost;
+	/**
+	 * the landscapes of the last environment, and the most landscapes held
+	 * at the same time, i.e. while the next environment is generated
+	 */
+	private long myLastLandscapeBytes;
+	private long myPeakLandscapeBytes;
+	private long myTableBytes;
+	private long myWorkingBytes;
+	private long myOutputBytes;
+	private boolean myIsDone;
+
+	/**
+	 * Create an empty unit of work, which runs the given seed of consecutive
+	 * cases of the same fitness contribution table on one thread, sharing the
+	 * table and the landscapes as CasePlanner does, and captures their output
+	 * to be committed later in order.
+	 * 
+	 * @param seed
+	 *            a seed, i.e. the run number
+	 * @param order
+	 *            a non-negative integer, the position of the unit in the
+	 *            order of the output
+	 * @see CasePlanner
+	 */
+	public RunUnit(int seed, int order) {
+		this.mySeed = seed;
+		this.myOrder = order;
+		this.myCases = new ArrayList<Case>();
+		this.myCaseIndices = new ArrayList<Integer>();
+		this.myBuffers = null;
+		this.myBytes = 0;
+		this.myCost = 0;
+		this.myLastLandscapeBytes = 0;
+		this.myPeakLandscapeBytes = 0;
+		this.myTableBytes = 0;
+		this.myWorkingBytes = 0;
+		this.myOutputBytes = 0;
+		this.myIsDone = false;
+	}
+
+	/**
+	 * Add the run of the given case with the seed of the unit, and update the
+	 * estimated cost and memory of the unit. A case of the same environment
+	 * as the case before it shares its landscapes, otherwise its landscapes
+	 * are generated while the landscapes before are still held.
+	 * 
+	 * @param c
+	 *            a case object
+	 * @param caseIndex
+	 *            the index of the case in the config file, after the sweeps
+	 *            are expanded
+	 */
+	public void add(Case c, int caseIndex) {
+		boolean isSharing = !this.myCases.isEmpty()
+				&& this.myCases.get(this.myCases.size() - 1)
+						.hasSameEnvironmentAs(c);
+		this.myCases.add(c);
+		this.myCaseIndices.add(caseIndex);
+		this.myCost += CostModel.getExplorationCost(c);
+		if (!isSharing) {
+			long landscapeBytes = CostModel.getLandscapeBytes(c);
+			this.myCost += CostModel.getLandscapeCost(c);
+			this.myPeakLandscapeBytes = Math.max(this.myPeakLandscapeBytes,
+					this.myLastLandscapeBytes + landscapeBytes);
+			this.myLastLandscapeBytes = landscapeBytes;
+		}
+		this.myTableBytes = Math.max(this.myTableBytes,
+				CostModel.getContributionTableBytes(c));
+		this.myWorkingBytes = Math.max(this.myWorkingBytes,
+				CostModel.getWorkingBytes(c));
+		this.myOutputBytes += 2 * CostModel.getOutputBytes(c);
+		this.myBytes = this.myTableBytes + this.myPeakLandscapeBytes
+				+ this.myWorkingBytes + this.myOutputBytes;
+	}
+
+	/**
+	 * Run the cases of the unit on the calling thread. Each case runs with
+	 * copies of its agents, so that the other seeds of the case can run on
+	 * other threads at the same time, and its output is captured.
+	 */
+	public void run() {
+		this.myBuffers = new OutputBuffer[this.myCases.size()];
+		Case last = null;
+		Simulator environment = null;
+		for (int k = 0; k < this.myCases.size(); k++) {
+			Case c = this.myCases.get(k);
+			ArrayList<Agent> agents = new ArrayList<Agent>();
+			for (Agent agt : c.getAgentList()) {
+				agents.add(new Agent(agt));
+			}
+			this.myBuffers[k] = new OutputBuffer();
+			OutputWriter.capture(this.myBuffers[k]);
+			Simulator s;
+			if (last != null && last.hasSameEnvironmentAs(c)) {
+				s = new Simulator(c, agents, environment);
+			} else {
+				RandomGen.setSeed(this.mySeed);
+				s = new Simulator(c, agents);
+				last = c;
+				environment = s;
+			}
+			s.startSimulation();
+		}
+		OutputWriter.capture(null);
+		Simulator.releaseContributionTable();
+	}
+
+	/**
+	 * Write the captured output of the cases to their files in order, record
+	 * the completed runs in the journal, and release the output.
+	 */
+	public void commit() {
+		for (int k = 0; k < this.myCases.size(); k++) {
+			Journal.setCase(this.myCaseIndices.get(k));
+			OutputWriter.commit(this.myBuffers[k], this.mySeed);
+			Journal.endRun(this.mySeed);
+		}
+		this.myBuffers = null;
+	}
+
+	/**
+	 * Return the captured output of each case, e.g. to send it to the
+	 * coordinator.
+	 * 
+	 * @return an array of output buffers, one for each case, or null if the
+	 *         unit is not run
+	 */
+	public OutputBuffer[] getBuffers() {
+		return this.myBuffers;
+	}
+
+	/**
+	 * Set the output of each case, e.g. when the unit has been run by a
+	 * worker process.
+	 * 
+	 * @param buffers
+	 *            an array of output buffers, one for each case
+	 */
+	public void setBuffers(OutputBuffer buffers[]) {
+		this.myBuffers = buffers;
+	}
+
+	/**
+	 * Return true if the unit has no case.
+	 * 
+	 * @return true if the unit has no case
+	 */
+	public boolean isEmpty() {
+		return this.myCases.isEmpty();
+	}
+
+	/**
+	 * Return the seed of the unit.
+	 * 
+	 * @return the seed of the unit
+	 */
+	public int getSeed() {
+		return this.mySeed;
+	}
+
+	/**
+	 * Return the position of the unit in the order of the output.
+	 * 
+	 * @return the position of the unit
+	 */
+	public int getOrder() {
+		return this.myOrder;
+	}
+
+	/**
+	 * Return the indices of the cases of the unit.
+	 * 
+	 * @return a list of case indices
+	 */
+	public ArrayList<Integer> getCaseIndices() {
+		return new ArrayList<Integer>(this.myCaseIndices);
+	}
+
+	/**
+	 * Return the estimated peak bytes of the unit while it runs.
+	 * 
+	 * @return the estimated peak bytes
+	 * @see CostModel
+	 */
+	public long getBytes() {
+		return this.myBytes;
+	}
+
+	/**
+	 * Return the bytes of the captured output, which is held until the unit
+	 * is committed.
+	 * 
+	 * @return the bytes of the captured output
+	 */
+	public long getBufferBytes() {
+		long bytes = 0;
+		for (int k = 0; this.myBuffers != null && k < this.myBuffers.length; k++) {
+			bytes += this.myBuffers[k].getBytes();
+		}
+		return bytes;
+	}
+
+	/**
+	 * Return the estimated cost of the unit, in fitness look-ups.
+	 * 
+	 * @return the estimated cost
+	 * @see CostModel
+	 */
+	public double getCost() {
+		return this.myCost;
+	}
+
+	/**
+	 * Return true if the unit has run and waits to be committed.
+	 * 
+	 * @return true if the unit has run
+	 */
+	public boolean isDone() {
+		return this.myIsDone;
+	}
+
+	/**
+	 * Mark the unit as run, called by the scheduler when the run of the unit
+	 * is collected.
+	 */
+	public void setDone() {
+		this.myIsDone = true;
+	}
+}
@@ -0,0 +1,413 @@
+package simulation;
+
+import agent.Agent;
+import landscape.InfluenceMatrix;
+import util.ConfigReader;
+import util.OutputListener;
+import util.OutputWriter;
+import util.RandomGen;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.TreeSet;
+
+public class ScalingBenchmark {
+	private static final double MEGABYTE = 1 << 20;
+	/**
+	 * the header of the result file, one line for each point of the grid
+	 */
+	private static final String HEADER = "N,K,AVERAGING,POWER,LANDSCAPE,RUNS,"
+			+ "AGENT_STEPS_PER_S,LANDSCAPE_BUILDS_PER_S,PEAK_HEAP_MB,"
+			+ "OUTPUT_BYTES_PER_STEP";
+	/**
+	 * the least number of runs and nanoseconds of each point which warm up the
+	 * code, and which are measured, so that the small points are measured
+	 * over many runs, and the largest number of runs of a point
+	 */
+	private static final int WARM_UP_RUNS = 1;
+	private static final long WARM_UP_NANOS = 200000000L;
+	private static final int TIMED_RUNS = 3;
+	private static final long TIMED_NANOS = 500000000L;
+	private static final int MAX_RUNS = 10000;
+	/**
+	 * the number of agents of each point
+	 */
+	private static final int AGENT_NUM = 5;
+	/**
+	 * the largest estimated cost of one run in fitness look-ups, above which
+	 * a point is skipped, so that the grid finishes in minutes
+	 */
+	private static final double MAX_RUN_COST = 2e8;
+	/**
+	 * the largest N whose landscapes are stored in full, the larger ones are
+	 * lazy
+	 */
+	private static final int MAX_FULL_N = 16;
+	/**
+	 * the relative change from the baseline which is flagged as a regression,
+	 * i.e. lower throughput or higher peak heap
+	 */
+	private static final double TOLERANCE = 0.2;
+
+	/**
+	 * the line of the result file of each measured point, by the key of the
+	 * point
+	 */
+	private HashMap<String, String[]> myResults;
+	/**
+	 * the number of output lines and characters received for the current
+	 * point
+	 */
+	private long myLineNum;
+	private long myCharNum;
+
+	/**
+	 * Create a benchmark which simulates a grid of generated cases from
+	 * small to large, and measures how the throughput and the memory scale
+	 * with N, K, averaging and processing power, i.e. the agent steps (output
+	 * lines) per second of exploration, the landscapes built per second, the
+	 * peak heap and the output bytes per step. The seconds are the CPU time of
+	 * the benchmark thread. The output is counted but not
+	 * written.
+	 * 
+	 * N is 4, 8, ..., 24, and K is 0, N / 4, N / 2 and N - 1 for each N. The
+	 * influence matrix of a point is read from inf/ if there is a file of its
+	 * N and K, and generated otherwise. Each point has 1 agent type of 5
+	 * agents, whose plan implements the two halves of the elements one after
+	 * another, and 1 shock; its landscapes are stored in full up to N = 16
+	 * and lazy above. A point whose estimated cost of one run is too large is
+	 * skipped. Each point is warmed up for at least 1 run and 0.2 seconds, and
+	 * measured for at least 3 runs and 0.5 seconds of CPU time.
+	 * 
+	 * @see CostModel
+	 */
+	public ScalingBenchmark() {
+		this.myResults = new HashMap<String, String[]>();
+	}
+
+	/**
+	 * Run the grid and write one line for each point to the given CSV file.
+	 * 
+	 * @param csvPath
+	 *            a string, which directs to the result file
+	 */
+	public void run(String csvPath) {
+		try {
+			BufferedWriter writer = new BufferedWriter(new FileWriter(csvPath));
+			writer.write(HEADER + "\n");
+			System.out.println(HEADER);
+			for (int n = 4; n <= 24; n += 4) {
+				TreeSet<Integer> ks = new TreeSet<Integer>();
+				ks.add(0);
+				ks.add(n / 4);
+				ks.add(n / 2);
+				ks.add(n - 1);
+				for (int k : ks) {
+					for (int a = 0; a <= 1; a++) {
+						for (int power = 1; power <= 3; power++) {
+							String line = this.measure(n, k, a == 1, power);
+							if (line != null) {
+								writer.write(line + "\n");
+								writer.flush();
+								System.out.println(line);
+							}
+						}
+					}
+				}
+			}
+			writer.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.out.println("ERROR : can not write to " + csvPath);
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Check that the cases of a sweep over bias with the same agent type, 3
+	 * biases of 3 seeds each on N = 8, generate one fitness contribution table
+	 * for each seed, i.e. that they are grouped and share their tables, and
+	 * print the number of tables. The output is counted but not written.
+	 * 
+	 * @return true if one table is generated for each seed
+	 */
+	public boolean checkTableReuse() {
+		double biases[] = { 0.2, 0.5, 0.8 };
+		OutputWriter.listen(new OutputListener() {
+			@Override
+			public void begin(String fileName) {
+			}
+
+			@Override
+			public void line(String line) {
+			}
+		});
+		// the cases of a sweep share one influence matrix object
+		InfluenceMatrix inf = new InfluenceMatrix(8, 2);
+		long tableNum = Simulator.getContributionTableNum();
+		CasePlanner planner = new CasePlanner();
+		for (double bias : biases) {
+			planner.add(constructCase(inf, false, 1, bias));
+		}
+		planner.finish();
+		tableNum = Simulator.getContributionTableNum() - tableNum;
+		OutputWriter.listen(null);
+		Simulator.releaseContributionTable();
+		System.out.println("table reuse : " + tableNum + " table(s) for "
+				+ TIMED_RUNS + " seed(s) of " + biases.length
+				+ " case(s) of a sweep over bias");
+		if (tableNum != TIMED_RUNS) {
+			System.out
+					.println("ERROR : the cases of a sweep over bias do not share their fitness contribution tables");
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Compare the points of the last run with the same points in the given
+	 * baseline file, written by an earlier run, and print the regressions,
+	 * i.e. the points whose agent steps or landscape builds per second are
+	 * lower, or whose peak heap is higher, by more than 20%.
+	 * 
+	 * @param baselinePath
+	 *            a string, which directs to the baseline file
+	 * @return true if there is no regression
+	 */
+	public boolean compareWith(String baselinePath) {
+		int regressionNum = 0;
+		int pointNum = 0;
+		try {
+			BufferedReader reader = new BufferedReader(new FileReader(
+					baselinePath));
+			String line = reader.readLine();
+			if (line == null || !line.equals(HEADER)) {
+				reader.close();
+				System.out.println("ERROR : " + baselinePath
+						+ " is not a result file of the benchmark");
+				System.exit(1);
+			}
+			line = reader.readLine();
+			while (line != null) {
+				String baseline[] = line.split(",");
+				String result[] = this.myResults.get(getKey(baseline));
+				line = reader.readLine();
+				if (result == null) {
+					continue;
+				}
+				pointNum++;
+				// agent steps and landscape builds per second, and peak heap
+				for (int c = 6; c <= 8; c++) {
+					double before = Double.parseDouble(baseline[c]);
+					double after = Double.parseDouble(result[c]);
+					boolean isWorse = (c == 8 ? after > before
+							* (1 + TOLERANCE) : after < before * (1 - TOLERANCE));
+					if (isWorse) {
+						regressionNum++;
+						System.out.println("REGRESSION : " + getKey(result)
+								+ " " + HEADER.split(",")[c] + " " + baseline[c]
+								+ " -> " + result[c]);
+					}
+				}
+			}
+			reader.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.out.println("ERROR : can not read " + baselinePath);
+			System.exit(1);
+		}
+		System.out.println(regressionNum + " regression(s) in " + pointNum
+				+ " point(s) compared with " + baselinePath);
+		return regressionNum == 0;
+	}
+
+	/**
+	 * Measure one point of the grid, and return its line of the result file,
+	 * or null if it is skipped.
+	 * 
+	 * @param n
+	 *            the number of elements
+	 * @param k
+	 *            the number of dependent elements of each element
+	 * @param isAveraging
+	 *            a boolean, which indicates if the agents use averaging scores
+	 * @param power
+	 *            the processing power of the agents
+	 * @return a line of the result file, or null
+	 */
+	private String measure(int n, int k, boolean isAveraging, int power) {
+		Case c = constructCase(n, k, isAveraging, power);
+		if (CostModel.getRunCost(c) > MAX_RUN_COST) {
+			System.out.println("skip N = " + n + ", K = " + k
+					+ ", averaging = " + isAveraging + ", power = " + power
+					+ " : about " + (long) CostModel.getRunCost(c)
+					+ " look-ups per run");
+			return null;
+		}
+		// count the output of the benchmark thread instead of writing it
+		this.myLineNum = 0;
+		this.myCharNum = 0;
+		OutputWriter.listen(new OutputListener() {
+			@Override
+			public void begin(String fileName) {
+			}
+
+			@Override
+			public void line(String line) {
+				ScalingBenchmark.this.myLineNum++;
+				ScalingBenchmark.this.myCharNum += line.length() + 1;
+			}
+		});
+		System.gc();
+		ArrayList<MemoryPoolMXBean> pools = new ArrayList<MemoryPoolMXBean>();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+				pools.add(pool);
+			}
+		}
+		int seed = 0;
+		long warmUpStart = System.nanoTime();
+		for (int i = 0; i < MAX_RUNS; i++) {
+			if (i >= WARM_UP_RUNS
+					&& System.nanoTime() - warmUpStart >= WARM_UP_NANOS) {
+				break;
+			}
+			RandomGen.setSeed(seed++);
+			new Simulator(c).startSimulation();
+		}
+		// the CPU time of this thread leaves out the JIT and the GC threads
+		ThreadMXBean thread = ManagementFactory.getThreadMXBean();
+		int runs = 0;
+		long landscapeTime = 0;
+		long explorationTime = 0;
+		long lineNum = 0;
+		long charNum = 0;
+		while (runs < MAX_RUNS
+				&& (runs < TIMED_RUNS || landscapeTime + explorationTime < TIMED_NANOS)) {
+			RandomGen.setSeed(seed++);
+			long start = thread.getCurrentThreadCpuTime();
+			Simulator s = new Simulator(c);
+			long built = thread.getCurrentThreadCpuTime();
+			long lines = this.myLineNum;
+			long chars = this.myCharNum;
+			s.startSimulation();
+			long end = thread.getCurrentThreadCpuTime();
+			landscapeTime += built - start;
+			explorationTime += end - built;
+			lineNum += this.myLineNum - lines;
+			charNum += this.myCharNum - chars;
+			runs++;
+		}
+		OutputWriter.listen(null);
+		Simulator.releaseContributionTable();
+		long peak = 0;
+		for (MemoryPoolMXBean pool : pools) {
+			peak += pool.getPeakUsage().getUsed();
+		}
+		long landscapeNum = (long) runs * (c.getTauList().size() + 1)
+				* (n + 1);
+		String result[] = { "" + n, "" + k, "" + isAveraging, "" + power,
+				c.getLandscapeType(), "" + runs,
+				format(lineNum / (explorationTime / 1e9)),
+				format(landscapeNum / (landscapeTime / 1e9)),
+				format(peak / MEGABYTE), format((double) charNum / lineNum) };
+		this.myResults.put(getKey(result), result);
+		return String.join(",", result);
+	}
+
+	/**
+	 * Return the case of the given point of the grid.
+	 * 
+	 * @param n
+	 *            the number of elements
+	 * @param k
+	 *            the number of dependent elements of each element
+	 * @param isAveraging
+	 *            a boolean, which indicates if the agents use averaging scores
+	 * @param power
+	 *            the processing power of the agents
+	 * @return a case object
+	 */
+	private static Case constructCase(int n, int k, boolean isAveraging,
+			int power) {
+		InfluenceMatrix inf;
+		String infFileName = "inf/n" + n + "k" + k + ".txt";
+		if (new File(infFileName).isFile()) {
+			inf = ConfigReader.readInf(infFileName);
+		} else {
+			inf = new InfluenceMatrix(n, k);
+		}
+		return constructCase(inf, isAveraging, power, 0.5);
+	}
+
+	/**
+	 * Same as above, but with the given influence matrix and bias.
+	 * 
+	 * @param inf
+	 *            an influence matrix object
+	 * @param isAveraging
+	 *            a boolean, which indicates if the agents use averaging scores
+	 * @param power
+	 *            the processing power of the agents
+	 * @param bias
+	 *            a value between 0 and 1, the initial uncertainty level
+	 * @return a case object
+	 */
+	private static Case constructCase(InfluenceMatrix inf,
+			boolean isAveraging, int power, double bias) {
+		int n = inf.getN();
+		ArrayList<HashSet<Integer>> plan = new ArrayList<HashSet<Integer>>();
+		for (int i = 0; i < 2; i++) {
+			HashSet<Integer> iteration = new HashSet<Integer>();
+			for (int j = i * n / 2; j < (i + 1) * n / 2; j++) {
+				iteration.add(j);
+			}
+			plan.add(iteration);
+		}
+		ArrayList<Agent> agents = new ArrayList<Agent>();
+		agents.add(new Agent(inf, plan, power, "bench", AGENT_NUM, 1,
+				isAveraging, true, false, false));
+		TreeSet<Integer> tauList = new TreeSet<Integer>();
+		tauList.add(10);
+		tauList.add(100000);
+		return new Case(TIMED_RUNS, inf, bias, 0.5, tauList,
+				agents, n <= MAX_FULL_N ? "full" : "lazy", false, false,
+				"uniform", null, new ArrayList<PlanRace>());
+	}
+
+	/**
+	 * Return the key of a point, i.e. N, K, averaging and power, from its line
+	 * of the result file.
+	 * 
+	 * @param line
+	 *            the values of a line of the result file
+	 * @return the key of the point
+	 */
+	private static String getKey(String line[]) {
+		return "N=" + line[0] + " K=" + line[1] + " averaging=" + line[2]
+				+ " power=" + line[3];
+	}
+
+	/**
+	 * Return the given value with 3 decimal places and a decimal point.
+	 * 
+	 * @param value
+	 *            a value
+	 * @return a string of the value
+	 */
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.3f", value);
+	}
+}
@@ -0,0 +1,170 @@
+package simulation;
+
+import agent.Agent;
+import util.OutputListener;
+import util.OutputWriter;
+import util.RandomGen;
+import util.RunningStatistics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+
+public class Simulation implements Flow.Publisher<TrajectoryRecord> {
+	/**
+	 * the listener of the simulation running on each thread, to which the
+	 * simulators give their records instead of writing lines
+	 */
+	private static ThreadLocal<SimulationListener> myListener = new ThreadLocal<SimulationListener>();
+
+	private Case myCase;
+
+	/**
+	 * Create a simulation of the given case for programs which use the
+	 * simulator in the same process, e.g. an optimisation loop, instead of
+	 * reading the output files. The case can be read from a config file or
+	 * built from code with the constructors of InfluenceMatrix, Agent and
+	 * Case. The runs are simulated as in a single run of the case, with the
+	 * seeds 0, 1, 2, ..., but nothing is written to files or to the journal;
+	 * instead each step which would be a line of output is given as a record,
+	 * either to a listener or to the subscribers of this publisher. The
+	 * records are made from the values of the simulator, so no line is
+	 * formatted or parsed. The races and the stopping
+	 * rule of the case are not applied, i.e. the case runs its agents for
+	 * its given number of runs.
+	 * 
+	 * The agents of the case are copied for each simulation, and the output,
+	 * the random generator and the fitness contribution table are kept per
+	 * thread, so several simulations can run on different threads at the
+	 * same time.
+	 * 
+	 * @param c
+	 *            a case object
+	 * @see SimulationListener
+	 */
+	public Simulation(Case c) {
+		this.myCase = c;
+	}
+
+	/**
+	 * Run the simulation in the calling thread, give the records and the mean
+	 * final fitness value of each agent type in each run to the given
+	 * listener, and return the statistics of the mean final fitness values of
+	 * each agent type over the runs. If the listener is null, only the
+	 * statistics are returned.
+	 * 
+	 * @param listener
+	 *            a simulation listener, or null
+	 * @return the statistics of the mean final fitness values by agent type
+	 */
+	public HashMap<String, RunningStatistics> run(
+			final SimulationListener listener) {
+		ArrayList<Agent> agents = new ArrayList<Agent>();
+		HashMap<String, RunningStatistics> result = new HashMap<String, RunningStatistics>();
+		for (Agent agt : this.myCase.getAgentList()) {
+			agents.add(new Agent(agt));
+			result.put(agt.getType(), new RunningStatistics());
+		}
+		if (listener == null) {
+			myListener.set(new SimulationListener() {
+				@Override
+				public void record(TrajectoryRecord record) {
+				}
+
+				@Override
+				public void runDone(int seed, String type, double meanFinalScore) {
+				}
+			});
+		} else {
+			myListener.set(listener);
+		}
+		// the simulators still open and close their output files
+		OutputWriter.listen(new OutputListener() {
+			@Override
+			public void begin(String fileName) {
+			}
+
+			@Override
+			public void line(String line) {
+			}
+		});
+		try {
+			for (int i = 0; i < this.myCase.getRuns(); i++) {
+				RandomGen.setSeed(i);
+				Simulator s = new Simulator(this.myCase, agents);
+				s.startSimulation();
+				for (Agent agt : agents) {
+					double score = s.getMeanFinalScoreOf(agt.getType());
+					result.get(agt.getType()).add(score);
+					if (listener != null) {
+						listener.runDone(i, agt.getType(), score);
+					}
+				}
+			}
+		} finally {
+			myListener.remove();
+			OutputWriter.listen(null);
+			Simulator.releaseContributionTable();
+		}
+		return result;
+	}
+
+	/**
+	 * Return the listener of the simulation running on the calling thread, or
+	 * null if the simulators of the thread write their output to files.
+	 * 
+	 * @return a simulation listener, or null
+	 */
+	static SimulationListener getListener() {
+		return myListener.get();
+	}
+
+	/**
+	 * Run the simulation on a thread of its own for the given subscriber,
+	 * which receives the records in order and then completes, or receives
+	 * the error which stopped the simulation. The simulation waits while the
+	 * subscriber has not requested more records and its buffer is full, so
+	 * a slow subscriber does not let the records pile up in memory, and it
+	 * stops when the subscriber cancels. Each subscriber gets a simulation of
+	 * its own.
+	 * 
+	 * @param subscriber
+	 *            a subscriber of trajectory records
+	 */
+	@Override
+	public void subscribe(Flow.Subscriber<? super TrajectoryRecord> subscriber) {
+		final SubmissionPublisher<TrajectoryRecord> publisher = new SubmissionPublisher<TrajectoryRecord>();
+		publisher.subscribe(subscriber);
+		Thread producer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Simulation.this.run(new SimulationListener() {
+						@Override
+						public void record(TrajectoryRecord record) {
+							if (publisher.getNumberOfSubscribers() == 0) {
+								throw new CancellationException();
+							}
+							// blocks while the subscriber's buffer is full
+							publisher.submit(record);
+						}
+
+						@Override
+						public void runDone(int seed, String type,
+								double meanFinalScore) {
+						}
+					});
+					publisher.close();
+				} catch (CancellationException e) {
+					publisher.close();
+				} catch (Exception e) {
+					publisher.closeExceptionally(e);
+				}
+			}
+		});
+		producer.setDaemon(true);
+		producer.start();
+	}
+}
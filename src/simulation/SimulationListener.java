@@ -0,0 +1,24 @@
+package simulation;
+
+public interface SimulationListener {
+	/**
+	 * Receive one step of one agent, in the order of the output files.
+	 * 
+	 * @param record
+	 *            a record of one step
+	 */
+	public void record(TrajectoryRecord record);
+
+	/**
+	 * Receive the mean final fitness value of the agents of one type at the
+	 * end of one run.
+	 * 
+	 * @param seed
+	 *            the run number
+	 * @param type
+	 *            the agent type name
+	 * @param meanFinalScore
+	 *            the mean final fitness value of the agents of the type
+	 */
+	public void runDone(int seed, String type, double meanFinalScore);
+}
@@ -3,13 +3,24 @@ package simulation;
 import landscape.*;
 import agent.*;
 import util.*;
+import random.MersenneTwisterFast;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
 import java.lang.Math;
 
 public class Simulator {
+	/**
+	 * streams of common random numbers, for the candidate choices and the
+	 * start locations respectively
+	 */
+	private static final int CHOICE_STREAM = 1;
+	private static final int START_STREAM = 2;
+
 	private InfluenceMatrix myInf;
 	private double myBias;
 	private double myDelta;
@@ -21,6 +32,49 @@ public class Simulator {
 	private Agent myCurrentAgent;
 	private int myCurrentTime;
 	private int myCurrentShock;
+	private boolean myIsExact;
+	private boolean myIsCommonRandom;
+	private String myStarts;
+	/**
+	 * true if the landscapes look up the fitness contribution table on demand,
+	 * so the table layers before the current shock can be released
+	 */
+	private boolean myIsLazy;
+	/**
+	 * true if no agent to come can return to an earlier shock
+	 */
+	private boolean myIsReleasing;
+	/**
+	 * the random generator for the current agent's candidate choices, the
+	 * global random generator unless common random numbers are used
+	 */
+	private MersenneTwisterFast myRandom;
+	/**
+	 * the mean final fitness value of each agent type in this run
+	 */
+	private HashMap<String, Double> myMeanFinalScores;
+	/**
+	 * the state of the global random generator right after the landscapes
+	 * are generated, from which the simulators sharing the landscapes start
+	 */
+	private MersenneTwisterFast myRandomState;
+	/**
+	 * the listener of the simulation which is given the records instead of
+	 * the output file, or null
+	 */
+	private SimulationListener myListener;
+
+	/**
+	 * the last fitness contribution table of each thread, which is reused by
+	 * the next simulator of the thread if it depends on the same seed and
+	 * parameters
+	 */
+	private static ThreadLocal<FitnessContributionTable> myCachedFit = new ThreadLocal<FitnessContributionTable>();
+	/**
+	 * the number of fitness contribution tables generated so far by all the
+	 * threads, e.g. to check that a sweep over bias reuses them
+	 */
+	private static AtomicLong myTableNum = new AtomicLong();
 
 	// private boolean myIsRefactoring;
 
@@ -46,14 +100,79 @@ public class Simulator {
 	 */
 	public Simulator(InfluenceMatrix inf, ArrayList<Agent> agents, double bias,
 			double delta, ArrayList<Integer> tauList) {
+		this(inf, agents, bias, delta, tauList, "full");
+	}
+
+	/**
+	 * Create a simulator with all the settings of the given case.
+	 * 
+	 * @param c
+	 *            a case object
+	 */
+	public Simulator(Case c) {
+		this(c, c.getAgentList());
+	}
+
+	/**
+	 * Same as above, but the given agents are simulated instead of the agents
+	 * of the case.
+	 * 
+	 * @param c
+	 *            a case object
+	 * @param agents
+	 *            a list of agent objects
+	 */
+	public Simulator(Case c, ArrayList<Agent> agents) {
+		this(c.getInf(), agents, c.getBias(), c.getDelta(), c.getTauList(), c
+				.getLandscapeType());
+		this.myIsExact = c.isExact();
+		this.myIsCommonRandom = c.isCommonRandom();
+		this.myStarts = c.getStarts();
+	}
+
+	/**
+	 * Same as the constructor above, but the landscapes are generated
+	 * according to the given landscape type. For "fused", the fitness
+	 * contribution table is not stored, and its values are generated on the
+	 * fly while the landscapes are filled up. For "composite", each landscape
+	 * is stored as one small sub-landscape for each connected component of the
+	 * influence matrix. For "lazy", the landscapes are not stored, and the
+	 * fitness values are evaluated on demand by delta evaluators, which only
+	 * look up the contributions that change between neighbouring locations.
+	 * 
+	 * @param inf
+	 *            an influence matrix object
+	 * @param agents
+	 *            a list of agent objects
+	 * @param bias
+	 *            a value between 0 and 1, which is the initial uncertainty
+	 *            level, 0 for no uncertainty and 1 for full uncertainty
+	 * @param delta
+	 *            a value between 0 and 1, which determines the amount of
+	 *            changes in/after each shock, 0 for no changes and 1 for
+	 *            arbitrary changes
+	 * @param tauList
+	 *            a list of shock times
+	 * @param landscapeType
+	 *            a string, which is "full", "fused", "composite" or "lazy"
+	 */
+	public Simulator(InfluenceMatrix inf, ArrayList<Agent> agents, double bias,
+			double delta, ArrayList<Integer> tauList, String landscapeType) {
 		this.myInf = inf;
 		this.myAgentList = agents;
 		this.myBias = bias;
 		this.myDelta = delta;
 		this.myTauList = tauList;
-		// generate fitness contribution table
-		this.myFit = new FitnessContributionTable(this.myInf, this.myDelta,
-				this.getTotalShockNum());
+		this.myIsExact = false;
+		this.myIsCommonRandom = false;
+		this.myStarts = "uniform";
+		this.myIsLazy = landscapeType.equals("lazy");
+		this.myMeanFinalScores = new HashMap<String, Double>();
+		this.myListener = Simulation.getListener();
+		// generate fitness contribution table, or take the one of the last
+		// simulator if it is the same
+		this.myFit = getContributionTable(this.myInf, this.myDelta,
+				this.getTotalShockNum(), landscapeType.equals("fused"));
 		// generate landscapes
 		this.myLandscapeTable = new Landscape[this.getTotalShockNum() + 1][this.myInf
 				.getN() + 1];
@@ -61,10 +180,19 @@ public class Simulator {
 		for (int i = 0; i < this.myLandscapeTable.length; i++) {
 			// for each step
 			for (int j = 0; j < this.myLandscapeTable[0].length; j++) {
-				this.myLandscapeTable[i][j] = new Landscape(this.myInf,
-						this.myBias, i, j, this.myFit);
+				if (landscapeType.equals("composite")) {
+					this.myLandscapeTable[i][j] = new CompositeLandscape(
+							this.myInf, this.myBias, i, j, this.myFit);
+				} else if (landscapeType.equals("lazy")) {
+					this.myLandscapeTable[i][j] = new LazyLandscape(
+							this.myInf, this.myBias, i, j, this.myFit);
+				} else {
+					this.myLandscapeTable[i][j] = new Landscape(this.myInf,
+							this.myBias, i, j, this.myFit);
+				}
 			}
 		}
+		this.myRandomState = RandomGen.getState();
 		// the same set of agents may run multiple times for different seeds
 		// therefore, we need to reset the agents
 		for (Agent agt : this.myAgentList) {
@@ -72,6 +200,57 @@ public class Simulator {
 		}
 	}
 
+	/**
+	 * Create a simulator with all the settings of the given case, which
+	 * shares the landscapes of the given simulator instead of generating them
+	 * again. The given simulator must have been created under the current seed
+	 * for a case of the same environment, i.e. the same influence matrix,
+	 * bias, delta, tau list and landscape type. The global random generator is
+	 * restored to its state right after the landscapes were generated, so the
+	 * simulation is the same as with a simulator of its own.
+	 * 
+	 * @param c
+	 *            a case object
+	 * @param environment
+	 *            a simulator of a case of the same environment
+	 * @see Case#hasSameEnvironmentAs(Case)
+	 */
+	public Simulator(Case c, Simulator environment) {
+		this(c, c.getAgentList(), environment);
+	}
+
+	/**
+	 * Same as above, but the given agents are simulated instead of the agents
+	 * of the case.
+	 * 
+	 * @param c
+	 *            a case object
+	 * @param agents
+	 *            a list of agent objects
+	 * @param environment
+	 *            a simulator of a case of the same environment
+	 */
+	public Simulator(Case c, ArrayList<Agent> agents, Simulator environment) {
+		this.myInf = c.getInf();
+		this.myAgentList = agents;
+		this.myBias = c.getBias();
+		this.myDelta = c.getDelta();
+		this.myTauList = c.getTauList();
+		this.myIsExact = c.isExact();
+		this.myIsCommonRandom = c.isCommonRandom();
+		this.myStarts = c.getStarts();
+		this.myIsLazy = environment.myIsLazy;
+		this.myMeanFinalScores = new HashMap<String, Double>();
+		this.myListener = Simulation.getListener();
+		this.myFit = environment.myFit;
+		this.myLandscapeTable = environment.myLandscapeTable;
+		this.myRandomState = environment.myRandomState;
+		RandomGen.setState(this.myRandomState);
+		for (Agent agt : this.myAgentList) {
+			agt.reset();
+		}
+	}
+
 	/**
 	 * Take every agent in the agent list to interact with the landscape. The
 	 * simulation starts from the agent's initial location and starts
@@ -88,7 +267,9 @@ public class Simulator {
 	 * sheet. One agent occupies one column.
 	 */
 	public void startSimulation() {
-		for (Agent agt : this.myAgentList) {
+		for (int a = 0; a < this.myAgentList.size(); a++) {
+			Agent agt = this.myAgentList.get(a);
+			this.myIsReleasing = this.isReleasingFrom(a);
 			// the first agent in the case
 			if (this.myCurrentAgent == null) {
 				this.myCurrentAgent = agt;
@@ -101,45 +282,59 @@ public class Simulator {
 				OutputWriter.setOutputFile(this.constructOutputFileName());
 			}
 
+			// compute the expected curve of this type instead of sampling
+			if (this.myIsExact && agt.isSteepest()) {
+				ExactEvaluator evaluator = new ExactEvaluator(agt,
+						this.myLandscapeTable, this.myTauList);
+				evaluator.run();
+				this.myMeanFinalScores.put(agt.getType(),
+						evaluator.getMeanFinalScore());
+				continue;
+			}
+
+			// simulate all the agents of this type together
+			if (agt.isPopulation() && !agt.isSteepest()) {
+				PopulationEngine engine = new PopulationEngine(agt,
+						this.myLandscapeTable, this.myTauList);
+				engine.run();
+				this.myMeanFinalScores.put(agt.getType(),
+						engine.getMeanFinalScore());
+				continue;
+			}
+
+			// stratified start locations for this type, if any
+			int starts[] = this.constructStarts(agt.getTotalNum());
+			double finalScoreSum = 0.0;
+
 			while (agt.hasNextAgent()) {
 				this.myCurrentTime = 0;
+				// the nth agent of every type gets the same random numbers,
+				// and starts from shock 0 as well
+				if (this.myIsCommonRandom) {
+					this.myCurrentShock = 0;
+					this.myRandom = RandomGen.createStream(CHOICE_STREAM,
+							agt.getNum());
+					agt.updateLocId(this.myRandom.nextInt(1 << this.myInf
+							.getN()));
+				} else {
+					this.myRandom = RandomGen.getRandomGen();
+				}
+				if (starts != null) {
+					agt.updateLocId(starts[agt.getNum()]);
+				}
 				while (!this.myCurrentAgent.isDone()) {
 					// detect new shock
 					if (this.myCurrentTime > this.myTauList
 							.get(this.myCurrentShock)) {
 						this.myCurrentShock++;
+						if (this.myIsReleasing) {
+							this.myFit.releaseLayersBefore(this.myCurrentShock);
+						}
 					}
 					// write log for initial config
-					OutputWriter.writeLine(this.constructOutputFileLine());
+					this.writeRecord();
 					this.myCurrentTime++;
-					// choose exploration strategy accordingly
-					if (this.myCurrentAgent.isAveraging()) {
-						if (this.myCurrentAgent.isExhaustive()) {
-							// exhaustive explore
-							this.exhaustiveExploreAveraging(this.myCurrentAgent
-									.getImplementedElements(),
-									this.myCurrentAgent.getCurrentElements(),
-									this.myCurrentAgent
-											.getUnimplementedElements());
-						} else {
-							// random explore
-							this.randomExploreAveraging(this.myCurrentAgent
-									.getImplementedElements(),
-									this.myCurrentAgent.getCurrentElements(),
-									this.myCurrentAgent
-											.getUnimplementedElements());
-						}
-					} else {
-						if (this.myCurrentAgent.isExhaustive()) {
-							// exhaustive explore
-							this.exhaustiveExploreNonAveraging(this.myCurrentAgent
-									.getCurrentElements());
-						} else {
-							// random explore
-							this.randomExploreNonAveraging(this.myCurrentAgent
-									.getCurrentElements());
-						}
-					}
+					this.exploreIteration();
 					// explore on current elements
 					/*
 					 * this.myIsRefactoring = false;
@@ -155,13 +350,176 @@ public class Simulator {
 					// next iteration
 					this.myCurrentAgent.moveToNextIteration();
 				}
+				finalScoreSum += this.myLandscapeTable[this.myCurrentShock][this.myInf
+						.getN()].getScoreOfLocId(this.myCurrentAgent.getLocId());
 				// next agent within the same type
 				agt.nextAgent();
 			}
+			this.myMeanFinalScores.put(agt.getType(),
+					finalScoreSum / agt.getTotalNum());
 		}
 		OutputWriter.close();
 	}
 
+	/**
+	 * Explore with the current agent in its current iteration, according to
+	 * its exploration strategy.
+	 */
+	void exploreIteration() {
+		// choose exploration strategy accordingly
+		if (this.myCurrentAgent.isSteepest()) {
+			// steepest ascent
+			this.steepestExplore(this.myCurrentAgent.getImplementedElements(),
+					this.myCurrentAgent.getCurrentElements(),
+					this.myCurrentAgent.getUnimplementedElements());
+		} else if (this.myCurrentAgent.isAveraging()) {
+			if (this.myCurrentAgent.isExhaustive()) {
+				// exhaustive explore
+				this.exhaustiveExploreAveraging(
+						this.myCurrentAgent.getImplementedElements(),
+						this.myCurrentAgent.getCurrentElements(),
+						this.myCurrentAgent.getUnimplementedElements());
+			} else {
+				// random explore
+				this.randomExploreAveraging(
+						this.myCurrentAgent.getImplementedElements(),
+						this.myCurrentAgent.getCurrentElements(),
+						this.myCurrentAgent.getUnimplementedElements());
+			}
+		} else {
+			if (this.myCurrentAgent.isExhaustive()) {
+				// exhaustive explore
+				this.exhaustiveExploreNonAveraging(this.myCurrentAgent
+						.getCurrentElements());
+			} else {
+				// random explore
+				this.randomExploreNonAveraging(this.myCurrentAgent
+						.getCurrentElements());
+			}
+		}
+	}
+
+	/**
+	 * Make the given agent the current agent at the given location, at the
+	 * beginning of its plan and before the first shock, with the global random
+	 * generator, so that exploreIteration can be called on its own, e.g. by a
+	 * benchmark.
+	 * 
+	 * @param agt
+	 *            an agent object of this simulator
+	 * @param locId
+	 *            a location id to start from
+	 */
+	void startAgent(Agent agt, int locId) {
+		agt.reset();
+		agt.updateLocId(locId);
+		this.myCurrentAgent = agt;
+		this.myCurrentTime = 0;
+		this.myCurrentShock = 0;
+		this.myRandom = RandomGen.getRandomGen();
+	}
+
+	/**
+	 * Return true if the table layers before the current shock can be released
+	 * from the given agent type on. The agents sampled one after another never
+	 * go back to an earlier shock, since the shock number carries on from one
+	 * agent to the next, whereas exact and population agent types, and all
+	 * agents under common random numbers, start from shock 0. Only lazy
+	 * landscapes look up the table after they are created.
+	 * 
+	 * @param first
+	 *            the index of an agent type in the agent list
+	 * @return true if the agents from the given type on can not return to an
+	 *         earlier shock
+	 */
+	private boolean isReleasingFrom(int first) {
+		if (!this.myIsLazy || this.myIsCommonRandom) {
+			return false;
+		}
+		for (int a = first; a < this.myAgentList.size(); a++) {
+			Agent agt = this.myAgentList.get(a);
+			if ((this.myIsExact && agt.isSteepest())
+					|| (agt.isPopulation() && !agt.isSteepest())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Return the mean final fitness value of the agents of the given type in
+	 * this run, after the simulation.
+	 * 
+	 * @param type
+	 *            an agent type name
+	 * @return the mean final fitness value of the agents of the given type
+	 */
+	public double getMeanFinalScoreOf(String type) {
+		return this.myMeanFinalScores.get(type);
+	}
+
+	/**
+	 * Return the fitness contribution table for the current seed and the given
+	 * parameters. The table only depends on them, since its values are drawn
+	 * from a stream of their own, so the table of the last call is returned
+	 * again if the parameters are the same, e.g. for the cases of a sweep
+	 * over bias, and a new table is generated otherwise. Only the last table
+	 * is kept, one for each thread.
+	 * 
+	 * @param inf
+	 *            an influence matrix object
+	 * @param delta
+	 *            a value between 0 and 1, which determines the amount of
+	 *            changes in/after each shock
+	 * @param totalShockNum
+	 *            a non-negative integer, the total number of shocks
+	 * @param isFused
+	 *            a boolean, which indicates if the values are generated on the
+	 *            fly instead of stored
+	 * @return a fitness contribution table object
+	 */
+	private static FitnessContributionTable getContributionTable(
+			InfluenceMatrix inf, double delta, int totalShockNum,
+			boolean isFused) {
+		FitnessContributionTable fit = myCachedFit.get();
+		if (fit != null && fit.getSeed() == RandomGen.getSeed()
+				&& fit.getInf().hasSameDependenceAs(inf)
+				&& fit.getDelta() == delta
+				&& fit.getTotalShockNum() == totalShockNum
+				&& (fit instanceof FusedContributionTable) == isFused) {
+			return fit;
+		}
+		// release the last table before generating the next one
+		myCachedFit.remove();
+		myTableNum.incrementAndGet();
+		if (isFused) {
+			fit = new FusedContributionTable(inf, delta, totalShockNum);
+		} else {
+			fit = new FitnessContributionTable(inf, delta, totalShockNum);
+		}
+		myCachedFit.set(fit);
+		return fit;
+	}
+
+	/**
+	 * Return the number of fitness contribution tables generated so far, i.e.
+	 * the number of times a simulator did not find its table in the cache.
+	 * 
+	 * @return the number of fitness contribution tables generated so far
+	 */
+	public static long getContributionTableNum() {
+		return myTableNum.get();
+	}
+
+	/**
+	 * Release the last fitness contribution table of the calling thread, e.g.
+	 * when the thread is done with its seed, so that the table is not kept in
+	 * memory until the next simulator of the thread.
+	 */
+	public static void releaseContributionTable() {
+		myCachedFit.remove();
+	}
+
 	/**
 	 * Return the total number of shocks, i.e. the size of the set of tau list
 	 * 
@@ -177,22 +535,46 @@ public class Simulator {
 	 * @return a string which is the output file name
 	 */
 	private String constructOutputFileName() {
-		return "o_n"
-				+ this.myInf.getN()
+		return constructOutputFileName(this.myInf, this.myBias, this.myDelta,
+				this.myIsExact, this.myCurrentAgent);
+	}
+
+	/**
+	 * Return the output file name of the given agent in a simulation of the
+	 * given parameters.
+	 * 
+	 * @param inf
+	 *            an influence matrix object
+	 * @param bias
+	 *            a value between 0 and 1, the initial uncertainty level
+	 * @param delta
+	 *            a value between 0 and 1, the amount of changes in/after each
+	 *            shock
+	 * @param isExact
+	 *            a boolean, which indicates if the expected curves of the
+	 *            steepest ascent agents are computed
+	 * @param agt
+	 *            an agent object
+	 * @return a string which is the output file name
+	 */
+	static String constructOutputFileName(InfluenceMatrix inf, double bias,
+			double delta, boolean isExact, Agent agt) {
+		return (isExact && agt.isSteepest() ? "e_n" : "o_n")
+				+ inf.getN()
 				+ "k"
-				+ this.myInf.getK()
+				+ inf.getK()
 				+ "_b"
-				+ ("" + this.myBias)
+				+ ("" + bias)
 				+ "d"
-				+ ("" + this.myDelta)
+				+ ("" + delta)
 				+ "c"
-				+ ("" + this.myCurrentAgent.getConstraint())
+				+ ("" + agt.getConstraint())
 				+ "_"
-				+ (this.myCurrentAgent.isAveraging() ? "averaging"
-						: "nonAveraging")
+				+ (agt.isAveraging() ? "averaging" : "nonAveraging")
 				+ "_"
-				+ (this.myCurrentAgent.isExhaustive() ? "exhaustive" : "random")
-				+ "_" + this.myCurrentAgent.getType() + ".txt";
+				+ (agt.isSteepest() ? "steepest"
+						: (agt.isExhaustive() ? "exhaustive" : "random"))
+				+ "_" + agt.getType() + ".txt";
 	}
 
 	/**
@@ -233,12 +615,9 @@ public class Simulator {
 		HashSet<Integer> unimplementedNeighbours = ldscp
 				.getNeighboursInclusive(this.myCurrentAgent.getLocId(),
 						unimplementedElements, unimplementedElements.size());
-		double currentAverageScore = 0;
-		for (Integer unimplementedNeighbour : unimplementedNeighbours) {
-			currentAverageScore += ldscp
-					.getScoreOfLocId(unimplementedNeighbour);
-		}
-		currentAverageScore /= unimplementedNeighbours.size();
+		double currentAverageScore = ldscp.getAverageScoreOf(
+				this.myCurrentAgent.getLocId(), unimplementedNeighbours,
+				implementedElements);
 		// get neighbour set of the agent's current location
 		HashSet<Integer> implementingNeighbours = ldscp.getNeighboursInclusive(
 				this.myCurrentAgent.getLocId(), implementingElements,
@@ -253,7 +632,7 @@ public class Simulator {
 		while (numTried < numToTry && !implementingNeighbours.isEmpty()) {
 			// pick one candidate randomly
 			int candidateNeighbour = -1;
-			int candidateIdx = RandomGen.randomGen
+			int candidateIdx = this.myRandom
 					.nextInt(implementingNeighbours.size());
 			Iterator<Integer> itr = implementingNeighbours.iterator();
 			for (int i = 0; i <= candidateIdx; i++) {
@@ -263,13 +642,9 @@ public class Simulator {
 			visitedLocIds.add(candidateNeighbour);
 			numTried++;
 			// compute averaging score for candidate location
-			double candidateAverageScore = 0;
-			for (Integer unimplementedNeighbour : unimplementedNeighbours) {
-				candidateAverageScore += ldscp.getScoreOfLocId(ldscp
-						.changeElements(unimplementedNeighbour,
-								candidateNeighbour, implementedElements));
-			}
-			candidateAverageScore /= unimplementedNeighbours.size();
+			double candidateAverageScore = ldscp.getAverageScoreOf(
+					candidateNeighbour, unimplementedNeighbours,
+					implementedElements);
 			// compare and pick the better one
 			if (candidateAverageScore >= currentAverageScore) {
 				this.myCurrentAgent.updateLocId(candidateNeighbour);
@@ -282,7 +657,7 @@ public class Simulator {
 			} else {
 				implementingNeighbours.remove(candidateNeighbour);
 			}
-			OutputWriter.writeLine(this.constructOutputFileLine());
+			this.writeRecord();
 			this.myCurrentTime++;
 		}
 	}
@@ -300,13 +675,27 @@ public class Simulator {
 	 *            changeable elements
 	 */
 	private void randomExploreNonAveraging(HashSet<Integer> implementingElements) {
+		Landscape ldscp = this.myLandscapeTable[this.myCurrentShock][this.myCurrentAgent
+				.getImplementedElements().size()];
+		// at a local optimum, every candidate is tried and rejected, so only
+		// the random draws and the records are repeated
+		if (ldscp.isLocalOptimum(this.myCurrentAgent.getLocId(),
+				this.getMaskOf(implementingElements),
+				this.myCurrentAgent.getProcessingPower())) {
+			int neighbourNum = getNeighbourNum(implementingElements.size(),
+					this.myCurrentAgent.getProcessingPower());
+			for (int t = 0; t < neighbourNum; t++) {
+				this.myRandom.nextInt(neighbourNum - t);
+				this.writeRecord();
+				this.myCurrentTime++;
+			}
+			return;
+		}
 		// create visited set
 		HashSet<Integer> visitedLocIds = new HashSet<Integer>();
 		// put agent's current location into the visited set
 		visitedLocIds.add(this.myCurrentAgent.getLocId());
 		// get neighbour set of the agent's current location
-		Landscape ldscp = this.myLandscapeTable[this.myCurrentShock][this.myCurrentAgent
-				.getImplementedElements().size()];
 		HashSet<Integer> implementingNeighbours = ldscp.getNeighboursInclusive(
 				this.myCurrentAgent.getLocId(), implementingElements,
 				this.myCurrentAgent.getProcessingPower());
@@ -317,7 +706,7 @@ public class Simulator {
 		while (!implementingNeighbours.isEmpty()) {
 			// pick one candidate randomly
 			int candidateNeighbour = -1;
-			int candidateIdx = RandomGen.randomGen
+			int candidateIdx = this.myRandom
 					.nextInt(implementingNeighbours.size());
 			Iterator<Integer> itr = implementingNeighbours.iterator();
 			for (int i = 0; i <= candidateIdx; i++) {
@@ -336,7 +725,7 @@ public class Simulator {
 			} else {
 				implementingNeighbours.remove(candidateNeighbour);
 			}
-			OutputWriter.writeLine(this.constructOutputFileLine());
+			this.writeRecord();
 			this.myCurrentTime++;
 		}
 	}
@@ -379,12 +768,9 @@ public class Simulator {
 		HashSet<Integer> unimplementedNeighbours = ldscp
 				.getNeighboursInclusive(this.myCurrentAgent.getLocId(),
 						unimplementedElements, unimplementedElements.size());
-		double currentAverageScore = 0;
-		for (Integer unimplementedNeighbour : unimplementedNeighbours) {
-			currentAverageScore += ldscp
-					.getScoreOfLocId(unimplementedNeighbour);
-		}
-		currentAverageScore /= unimplementedNeighbours.size();
+		double currentAverageScore = ldscp.getAverageScoreOf(
+				this.myCurrentAgent.getLocId(), unimplementedNeighbours,
+				implementedElements);
 		// get neighbour set of the agent's current location
 		HashSet<Integer> implementingNeighbours = ldscp.getNeighboursInclusive(
 				this.myCurrentAgent.getLocId(), implementingElements,
@@ -405,45 +791,121 @@ public class Simulator {
 						this.myCurrentAgent.getProcessingPower());
 				implementingNeighbours.removeAll(visitedLocIds);
 				numTried = 0;
-				OutputWriter.writeLine(this.constructOutputFileLine());
+				this.writeRecord();
 				this.myCurrentTime++;
 			}
 			// reset foundBetter flag
 			foundBetter = false;
 			// loop to find best config among current neighbours
-			while (numTried < numToTry && !implementingNeighbours.isEmpty()) {
-				// pick one candidate randomly
-				int candidateNeighbour = -1;
-				int candidateIdx = RandomGen.randomGen
-						.nextInt(implementingNeighbours.size());
-				Iterator<Integer> itr = implementingNeighbours.iterator();
-				for (int i = 0; i <= candidateIdx; i++) {
-					candidateNeighbour = itr.next();
+			if (ThreadPool.isParallel()) {
+				// the candidates picked in this pass do not depend on the
+				// decisions, so draw all of them in advance, score them in
+				// parallel and then replay the decisions in the same order
+				ArrayList<Integer> candidateNeighbours = new ArrayList<Integer>();
+				while (numTried < numToTry && !implementingNeighbours.isEmpty()) {
+					int candidateNeighbour = this
+							.pickRandomly(implementingNeighbours);
+					visitedLocIds.add(candidateNeighbour);
+					implementingNeighbours.remove(candidateNeighbour);
+					numTried++;
+					candidateNeighbours.add(candidateNeighbour);
 				}
-				// put the candidate in to visited set and remove it from
-				// neighbouring set
-				visitedLocIds.add(candidateNeighbour);
-				implementingNeighbours.remove(candidateNeighbour);
-				numTried++;
-				// compute averaging score for candidate location
-				double candidateAverageScore = 0;
-				for (Integer unimplementedNeighbour : unimplementedNeighbours) {
-					candidateAverageScore += ldscp.getScoreOfLocId(ldscp
-							.changeElements(unimplementedNeighbour,
-									candidateNeighbour, implementedElements));
+				double candidateAverageScores[] = this.getAverageScoresOf(
+						ldscp, candidateNeighbours, unimplementedNeighbours,
+						implementedElements);
+				for (int i = 0; i < candidateNeighbours.size(); i++) {
+					if (candidateAverageScores[i] >= currentAverageScore) {
+						this.myCurrentAgent.updateLocId(candidateNeighbours
+								.get(i));
+						currentAverageScore = candidateAverageScores[i];
+						foundBetter = true;
+					}
 				}
-				candidateAverageScore /= unimplementedNeighbours.size();
-				// compare and pick the better one, but not update the
-				// neighbouring set
-				if (candidateAverageScore >= currentAverageScore) {
-					this.myCurrentAgent.updateLocId(candidateNeighbour);
-					currentAverageScore = candidateAverageScore;
-					foundBetter = true;
+			} else {
+				while (numTried < numToTry && !implementingNeighbours.isEmpty()) {
+					// pick one candidate randomly
+					int candidateNeighbour = this.pickRandomly(implementingNeighbours);
+					// put the candidate in to visited set and remove it from
+					// neighbouring set
+					visitedLocIds.add(candidateNeighbour);
+					implementingNeighbours.remove(candidateNeighbour);
+					numTried++;
+					// compute averaging score for candidate location
+					double candidateAverageScore = ldscp.getAverageScoreOf(
+							candidateNeighbour, unimplementedNeighbours,
+							implementedElements);
+					// compare and pick the better one, but not update the
+					// neighbouring set
+					if (candidateAverageScore >= currentAverageScore) {
+						this.myCurrentAgent.updateLocId(candidateNeighbour);
+						currentAverageScore = candidateAverageScore;
+						foundBetter = true;
+					}
 				}
 			}
 		} while (foundBetter);
 	}
 
+	/**
+	 * Pick one location id from the given set uniformly at random, using the
+	 * current agent's random generator.
+	 * 
+	 * @param neighbours
+	 *            a non-empty set of location ids
+	 * @return a location id in the given set
+	 */
+	private int pickRandomly(HashSet<Integer> neighbours) {
+		int candidateNeighbour = -1;
+		int candidateIdx = this.myRandom.nextInt(neighbours.size());
+		Iterator<Integer> itr = neighbours.iterator();
+		for (int i = 0; i <= candidateIdx; i++) {
+			candidateNeighbour = itr.next();
+		}
+		return candidateNeighbour;
+	}
+
+	/**
+	 * Compute the averaging scores of the given candidates on the worker
+	 * threads. The candidates are split into one chunk for each thread.
+	 * 
+	 * @param ldscp
+	 *            the current landscape
+	 * @param candidateNeighbours
+	 *            a list of candidate location ids
+	 * @param unimplementedNeighbours
+	 *            a set of location ids, which covers all the possible values
+	 *            of the unimplemented elements
+	 * @param implementedElements
+	 *            a set of element indices, which indicates the elements
+	 *            copied from the candidates
+	 * @return the averaging score of each candidate
+	 */
+	private double[] getAverageScoresOf(final Landscape ldscp,
+			final ArrayList<Integer> candidateNeighbours,
+			final HashSet<Integer> unimplementedNeighbours,
+			final HashSet<Integer> implementedElements) {
+		final double result[] = new double[candidateNeighbours.size()];
+		int chunkNum = Math.min(ThreadPool.getThreadNum(), result.length);
+		ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		for (int c = 0; c < chunkNum; c++) {
+			final int from = (int) ((long) result.length * c / chunkNum);
+			final int to = (int) ((long) result.length * (c + 1) / chunkNum);
+			tasks.add(new Callable<Object>() {
+				@Override
+				public Object call() {
+					for (int i = from; i < to; i++) {
+						result[i] = ldscp.getAverageScoreOf(
+								candidateNeighbours.get(i),
+								unimplementedNeighbours, implementedElements);
+					}
+					return null;
+				}
+			});
+		}
+		ThreadPool.invokeAll(tasks);
+		return result;
+	}
+
 	/**
 	 * An exploration step is to greedily select the best unvisited neighbouring
 	 * configuration/location. Then the agent updates its configuration/location
@@ -457,13 +919,27 @@ public class Simulator {
 	 */
 	private void exhaustiveExploreNonAveraging(
 			HashSet<Integer> implementingElements) {
+		// get current landscape
+		Landscape ldscp = this.myLandscapeTable[this.myCurrentShock][this.myCurrentAgent
+				.getImplementedElements().size()];
+		// at a local optimum, every candidate is tried and rejected, so only
+		// the random draws are repeated
+		if (ldscp.isLocalOptimum(this.myCurrentAgent.getLocId(),
+				this.getMaskOf(implementingElements),
+				this.myCurrentAgent.getProcessingPower())) {
+			int neighbourNum = getNeighbourNum(implementingElements.size(),
+					this.myCurrentAgent.getProcessingPower());
+			int numToTry = (int) Math.ceil(this.myCurrentAgent.getConstraint()
+					* neighbourNum);
+			for (int t = 0; t < numToTry && t < neighbourNum; t++) {
+				this.myRandom.nextInt(neighbourNum - t);
+			}
+			return;
+		}
 		// create visited set
 		HashSet<Integer> visitedLocIds = new HashSet<Integer>();
 		// put agent's current location into the visited set
 		visitedLocIds.add(this.myCurrentAgent.getLocId());
-		// get current landscape
-		Landscape ldscp = this.myLandscapeTable[this.myCurrentShock][this.myCurrentAgent
-				.getImplementedElements().size()];
 		// get neighbour set of the agent's current location
 		HashSet<Integer> implementingNeighbours = ldscp.getNeighboursInclusive(
 				this.myCurrentAgent.getLocId(), implementingElements,
@@ -484,7 +960,7 @@ public class Simulator {
 						this.myCurrentAgent.getProcessingPower());
 				implementingNeighbours.removeAll(visitedLocIds);
 				numTried = 0;
-				OutputWriter.writeLine(this.constructOutputFileLine());
+				this.writeRecord();
 				this.myCurrentTime++;
 			}
 			// reset foundBetter flag
@@ -493,7 +969,7 @@ public class Simulator {
 			while (numTried < numToTry && !implementingNeighbours.isEmpty()) {
 				// pick one candidate randomly
 				int candidateNeighbour = -1;
-				int candidateIdx = RandomGen.randomGen
+				int candidateIdx = this.myRandom
 						.nextInt(implementingNeighbours.size());
 				Iterator<Integer> itr = implementingNeighbours.iterator();
 				for (int i = 0; i <= candidateIdx; i++) {
@@ -515,6 +991,162 @@ public class Simulator {
 		} while (foundBetter);
 	}
 
+	/**
+	 * An exploration step is to deterministically move to the best
+	 * neighbouring configuration/location, if it is strictly better than the
+	 * current one (the lowest location id wins among the equally best ones).
+	 * This exploration step repeats until the current configuration/location
+	 * is the local best. For an averaging agent, the configurations/locations
+	 * are compared by their average fitness values over the unimplemented
+	 * elements excluding the elements in the current iteration. The constraint
+	 * is ignored since no neighbours are picked randomly. This method records
+	 * each exploration step into a file.
+	 * 
+	 * The climbs are taken from a memo shared by all the agents on the same
+	 * landscape, therefore each step of an already resolved climb is a look
+	 * up.
+	 * 
+	 * @param implementedElements
+	 *            a set of element indices, which indicates the positions of the
+	 *            implemented elements
+	 * @param implementingElements
+	 *            a set of element indices, which indicates the positions of the
+	 *            elements in the current iteration
+	 * @param unimplementedElements
+	 *            a set of element indices, which indicates the positions of the
+	 *            unimplemented elements
+	 * @see SteepestAscentMemo
+	 */
+	private void steepestExplore(HashSet<Integer> implementedElements,
+			HashSet<Integer> implementingElements,
+			HashSet<Integer> unimplementedElements) {
+		// get the set of unimplemented elements excluding the current elements
+		// in the current iteration, for average
+		unimplementedElements.removeAll(implementingElements);
+		// get current landscape
+		Landscape ldscp = this.myLandscapeTable[this.myCurrentShock][implementedElements
+				.size()];
+		SteepestAscentMemo memo = ldscp.getSteepestAscentMemo(this
+				.getMaskOf(implementingElements), this.myCurrentAgent
+				.isAveraging() ? this.getMaskOf(unimplementedElements) : 0,
+				this.myCurrentAgent.getProcessingPower());
+		int next = memo.getSuccessorOf(this.myCurrentAgent.getLocId());
+		while (next != this.myCurrentAgent.getLocId()) {
+			this.myCurrentAgent.updateLocId(next);
+			this.writeRecord();
+			this.myCurrentTime++;
+			next = memo.getSuccessorOf(next);
+		}
+	}
+
+	/**
+	 * Return the start locations of the given number of agents according to
+	 * the start placement, or null for uniform random starts. The start
+	 * locations only depend on the seed and the number of agents, so that
+	 * agent types with the same number of agents share them.
+	 * 
+	 * For "stratified", the 2^N location ids are split into one stratum of
+	 * consecutive location ids for each agent, and each agent starts at a
+	 * random location id in its stratum. For "latin", each element is 1 for
+	 * one half of the agents and 0 for the other half, where the halves are
+	 * drawn independently for each element (a Latin hypercube over the N
+	 * binary elements).
+	 * 
+	 * @param num
+	 *            the number of agents
+	 * @return the start location id of each agent, or null for uniform
+	 *         random starts
+	 */
+	private int[] constructStarts(int num) {
+		if (this.myStarts.equals("uniform") || num <= 0) {
+			return null;
+		}
+		int n = this.myInf.getN();
+		MersenneTwisterFast random = RandomGen.createStream(START_STREAM, num);
+		int result[] = new int[num];
+		if (this.myStarts.equals("stratified")) {
+			for (int a = 0; a < num; a++) {
+				long low = ((long) a << n) / num;
+				long high = ((long) (a + 1) << n) / num;
+				result[a] = (int) (low + (high > low ? random
+						.nextInt((int) (high - low)) : 0));
+			}
+		} else {
+			int permutation[] = new int[num];
+			for (int element = 0; element < n; element++) {
+				for (int a = 0; a < num; a++) {
+					permutation[a] = a;
+				}
+				for (int a = num - 1; a > 0; a--) {
+					int b = random.nextInt(a + 1);
+					int temp = permutation[a];
+					permutation[a] = permutation[b];
+					permutation[b] = temp;
+				}
+				for (int a = 0; a < num; a++) {
+					if (2 * permutation[a] >= num) {
+						result[a] |= 1 << (n - 1 - element);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Return the bits of the given elements in a location id.
+	 * 
+	 * @param elements
+	 *            a set of element indices
+	 * @return the bits of the given elements in a location id
+	 */
+	private int getMaskOf(HashSet<Integer> elements) {
+		int mask = 0;
+		for (int element : elements) {
+			mask |= 1 << (this.myInf.getN() - 1 - element);
+		}
+		return mask;
+	}
+
+	/**
+	 * Return the number of location ids whose distances to a location id
+	 * w.r.t. the given number of elements are between 1 and the processing
+	 * power (inclusive), i.e. the size of the unvisited neighbour set at the
+	 * beginning of an exploration.
+	 * 
+	 * @param elementNum
+	 *            the number of changeable elements
+	 * @param processingPower
+	 *            a non-negative integer, which indicates the maximum number of
+	 *            changes to a configuration
+	 * @return the number of neighbours, excluding the location id itself, at
+	 *         most Integer.MAX_VALUE
+	 */
+	private static int getNeighbourNum(int elementNum, int processingPower) {
+		return (int) Math.min(
+				Landscape.getNeighbourNum(elementNum, processingPower),
+				Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Write one record of the exploration step to the current output file, or
+	 * give it to the listener of the simulation if there is one.
+	 */
+	private void writeRecord() {
+		if (this.myListener == null) {
+			OutputWriter.writeLine(this.constructOutputFileLine());
+			return;
+		}
+		Landscape finalLandscape = this.myLandscapeTable[this.myCurrentShock][this.myInf
+				.getN()];
+		this.myListener.record(new TrajectoryRecord(RandomGen.getSeed(),
+				this.myCurrentAgent.getType(), this.myCurrentAgent.getNum(),
+				this.myCurrentTime, this.myCurrentShock, this.myCurrentAgent
+						.getIterationNum(), finalLandscape
+						.getScoreOfLocId(this.myCurrentAgent.getLocId()),
+				finalLandscape.getMax(), finalLandscape.getMin()));
+	}
+
 	/**
 	 * Return a string which is one record in the exploration step.
 	 * 
@@ -557,11 +1189,9 @@ public class Simulator {
 		String xmlFileName = args[0];
 		int shockNum = new Integer(args[1]);
 		int stepNum = new Integer(args[2]);
-		ArrayList<Case> cases = ConfigReader.read(xmlFileName);
-		Case c = cases.get(0);
+		Case c = ConfigReader.stream(xmlFileName).next();
 		RandomGen.setSeed(c.getRuns());
-		Simulator s = new Simulator(c.getInf(), c.getAgentList(), c.getBias(),
-				c.getDelta(), c.getTauList());
+		Simulator s = new Simulator(c);
 		if (shockNum >= s.getTotalShockNum() || shockNum < 0) {
 			System.out
 					.println("ERROR : invalid shock number, please input value within [0, "
@@ -0,0 +1,142 @@
+package simulation;
+
+import util.ConfigReader;
+import util.RunningStatistics;
+
+public class StoppingRule {
+	private int myBatchSize;
+	private double myWidth;
+	private boolean myIsComparing;
+	private double myConfidence;
+	private int myMaxRuns;
+
+	/**
+	 * Create a sequential stopping rule for the number of runs of a case. The
+	 * runs are taken in batches, and after each batch the rule is checked on
+	 * the running statistics of the mean final performance of each agent type
+	 * per run.
+	 * 
+	 * @param batchSize
+	 *            a positive integer, which indicates the number of runs between
+	 *            two checks
+	 * @param width
+	 *            a non-negative value, the runs stop when the half width of the
+	 *            confidence interval of every agent type's mean is at most this
+	 *            value, 0 for not checking the width
+	 * @param isComparing
+	 *            a boolean, the runs stop when the difference between every
+	 *            two agent types is significant, i.e. the confidence interval
+	 *            of the difference does not contain 0
+	 * @param confidence
+	 *            a value in (0, 1), which indicates the confidence level of
+	 *            the confidence intervals
+	 * @param maxRuns
+	 *            a positive integer, which indicates the maximum number of runs
+	 */
+	public StoppingRule(int batchSize, double width, boolean isComparing,
+			double confidence, int maxRuns) {
+		if (batchSize <= 0) {
+			ConfigReader.fail("ERROR : batch size should be positive, given "
+					+ batchSize);
+		}
+		if (width < 0) {
+			ConfigReader.fail("ERROR : width should be non-negative, given "
+					+ width);
+		}
+		if (width == 0 && !isComparing) {
+			ConfigReader.fail("ERROR : adaptive runs need a width or a comparison to stop");
+		}
+		if (confidence <= 0 || confidence >= 1) {
+			ConfigReader.fail("ERROR : confidence should be in (0, 1), given "
+					+ confidence);
+		}
+		if (maxRuns <= 0) {
+			ConfigReader.fail("ERROR : maximum number of runs should be positive, given "
+					+ maxRuns);
+		}
+		this.myBatchSize = batchSize;
+		this.myWidth = width;
+		this.myIsComparing = isComparing;
+		this.myConfidence = confidence;
+		this.myMaxRuns = maxRuns;
+	}
+
+	/**
+	 * Return the number of runs between two checks.
+	 * 
+	 * @return the number of runs between two checks
+	 */
+	public int getBatchSize() {
+		return this.myBatchSize;
+	}
+
+	/**
+	 * Return the confidence level of the confidence intervals.
+	 * 
+	 * @return the confidence level
+	 */
+	public double getConfidence() {
+		return this.myConfidence;
+	}
+
+	/**
+	 * Return the maximum number of runs.
+	 * 
+	 * @return the maximum number of runs
+	 */
+	public int getMaxRuns() {
+		return this.myMaxRuns;
+	}
+
+	/**
+	 * Return true if the half width of the confidence interval of every given
+	 * mean is small enough.
+	 * 
+	 * @param typeStats
+	 *            the running statistics of each agent type
+	 * @return true if the target width is reached
+	 */
+	public boolean isPrecise(RunningStatistics typeStats[]) {
+		if (this.myWidth == 0) {
+			return false;
+		}
+		for (RunningStatistics stats : typeStats) {
+			if (stats.getHalfWidth(this.myConfidence) > this.myWidth) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Return true if every given difference between two agent types is
+	 * significant. At least one difference is needed.
+	 * 
+	 * @param differenceStats
+	 *            the running statistics of the difference between each two
+	 *            agent types, paired by run
+	 * @return true if all the differences are significant
+	 */
+	public boolean isSignificant(RunningStatistics differenceStats[]) {
+		if (!this.myIsComparing || differenceStats.length == 0) {
+			return false;
+		}
+		for (RunningStatistics stats : differenceStats) {
+			if (stats.getHalfWidth(this.myConfidence) >= Math.abs(stats
+					.getMean())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Return a string representation of the stopping rule.
+	 */
+	@Override
+	public String toString() {
+		return "batch = " + this.myBatchSize + ", width = " + this.myWidth
+				+ ", compare = " + this.myIsComparing + ", confidence = "
+				+ this.myConfidence + ", max = " + this.myMaxRuns;
+	}
+}
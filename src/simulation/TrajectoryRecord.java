@@ -0,0 +1,163 @@
+package simulation;
+
+public class TrajectoryRecord {
+	private int mySeed;
+	private String myType;
+	private int myNum;
+	private int myTime;
+	private int myShock;
+	private int myIterationNum;
+	private double myPerformance;
+	private double myMax;
+	private double myMin;
+
+	/**
+	 * Create a record of one step of one agent, i.e. one line of an output
+	 * file, with the agent type of the file. For the expected curve of an
+	 * exact agent type, there is no agent, shock or iteration, and they are
+	 * -1.
+	 * 
+	 * @param seed
+	 *            the run number
+	 * @param type
+	 *            the agent type name
+	 * @param num
+	 *            the number of the agent within its type, or -1
+	 * @param time
+	 *            the time step
+	 * @param shock
+	 *            the number of shocks so far, or -1
+	 * @param iterationNum
+	 *            the current iteration of the agent's plan, or -1
+	 * @param performance
+	 *            the fitness value of the agent's location
+	 * @param max
+	 *            the global maximum of the current landscape
+	 * @param min
+	 *            the global minimum of the current landscape
+	 */
+	public TrajectoryRecord(int seed, String type, int num, int time,
+			int shock, int iterationNum, double performance, double max,
+			double min) {
+		this.mySeed = seed;
+		this.myType = type;
+		this.myNum = num;
+		this.myTime = time;
+		this.myShock = shock;
+		this.myIterationNum = iterationNum;
+		this.myPerformance = performance;
+		this.myMax = max;
+		this.myMin = min;
+	}
+
+	/**
+	 * Create a record from one line of an output file of the given agent
+	 * type, i.e. SEED, AGENT, TIMESTAMP, SHOCK, ITERATION, PERFORMANCE, MAX,
+	 * MIN separated by tabs, or SEED, TIMESTAMP, PERFORMANCE, MAX, MIN for
+	 * the expected curve of an exact agent type.
+	 * 
+	 * @param type
+	 *            the agent type name
+	 * @param line
+	 *            a line of an output file
+	 * @return a record object
+	 */
+	public static TrajectoryRecord parse(String type, String line) {
+		String tokens[] = line.split("\t");
+		if (tokens.length == 5) {
+			return new TrajectoryRecord(Integer.parseInt(tokens[0]), type, -1,
+					Integer.parseInt(tokens[1]), -1, -1,
+					Double.parseDouble(tokens[2]),
+					Double.parseDouble(tokens[3]),
+					Double.parseDouble(tokens[4]));
+		}
+		return new TrajectoryRecord(Integer.parseInt(tokens[0]), type,
+				Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]),
+				Integer.parseInt(tokens[3]), Integer.parseInt(tokens[4]),
+				Double.parseDouble(tokens[5]), Double.parseDouble(tokens[6]),
+				Double.parseDouble(tokens[7]));
+	}
+
+	/**
+	 * Return the run number.
+	 * 
+	 * @return the run number
+	 */
+	public int getSeed() {
+		return this.mySeed;
+	}
+
+	/**
+	 * Return the agent type name.
+	 * 
+	 * @return the agent type name
+	 */
+	public String getType() {
+		return this.myType;
+	}
+
+	/**
+	 * Return the number of the agent within its type, -1 for an expected
+	 * curve.
+	 * 
+	 * @return the number of the agent
+	 */
+	public int getNum() {
+		return this.myNum;
+	}
+
+	/**
+	 * Return the time step.
+	 * 
+	 * @return the time step
+	 */
+	public int getTime() {
+		return this.myTime;
+	}
+
+	/**
+	 * Return the number of shocks so far, -1 for an expected curve.
+	 * 
+	 * @return the number of shocks so far
+	 */
+	public int getShock() {
+		return this.myShock;
+	}
+
+	/**
+	 * Return the current iteration of the agent's plan, -1 for an expected
+	 * curve.
+	 * 
+	 * @return the current iteration
+	 */
+	public int getIterationNum() {
+		return this.myIterationNum;
+	}
+
+	/**
+	 * Return the fitness value of the agent's location.
+	 * 
+	 * @return the fitness value
+	 */
+	public double getPerformance() {
+		return this.myPerformance;
+	}
+
+	/**
+	 * Return the global maximum of the current landscape.
+	 * 
+	 * @return the global maximum
+	 */
+	public double getMax() {
+		return this.myMax;
+	}
+
+	/**
+	 * Return the global minimum of the current landscape.
+	 * 
+	 * @return the global minimum
+	 */
+	public double getMin() {
+		return this.myMin;
+	}
+}
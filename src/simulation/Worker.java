@@ -0,0 +1,89 @@
+package simulation;
+
+import util.ConfigReader;
+import util.OutputBuffer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+public class Worker {
+	/**
+	 * Connect to the coordinator at the given address, then run the units of
+	 * work it sends one by one and send their output back, until the
+	 * coordinator closes the connection. The cases are read from the config
+	 * file given by the coordinator, up to the largest case index received so
+	 * far, without applying the settings outside the cases. Only the cases
+	 * from the first one which is not committed by the coordinator on are
+	 * kept, since the units which need the cases before it are done.
+	 * 
+	 * @param address
+	 *            a string of the form host:port
+	 * @see Coordinator
+	 */
+	public static void run(String address) {
+		int colon = address.lastIndexOf(':');
+		if (colon < 0) {
+			System.out.println("ERROR : invalid coordinator address "
+					+ address + ", should be host:port");
+			System.exit(1);
+		}
+		try {
+			Socket socket = new Socket(address.substring(0, colon),
+					Integer.parseInt(address.substring(colon + 1)));
+			DataInputStream in = new DataInputStream(new BufferedInputStream(
+					socket.getInputStream()));
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(socket.getOutputStream()));
+			Iterator<Case> stream = ConfigReader.stream(in.readUTF(), false);
+			// the cases read so far from the index first on
+			ArrayList<Case> cases = new ArrayList<Case>();
+			int first = 0;
+			while (true) {
+				int seed;
+				try {
+					seed = in.readInt();
+				} catch (EOFException e) {
+					break;
+				}
+				RunUnit unit = new RunUnit(seed, 0);
+				int firstCase = in.readInt();
+				if (firstCase > first) {
+					int dropNum = Math.min(firstCase - first, cases.size());
+					cases.subList(0, dropNum).clear();
+					for (first += dropNum; first < firstCase; first++) {
+						stream.next();
+					}
+				}
+				int caseNum = in.readInt();
+				for (int k = 0; k < caseNum; k++) {
+					int caseIndex = in.readInt();
+					while (first + cases.size() <= caseIndex) {
+						cases.add(stream.next());
+					}
+					unit.add(cases.get(caseIndex - first), caseIndex);
+				}
+				unit.run();
+				for (OutputBuffer buffer : unit.getBuffers()) {
+					out.writeInt(buffer.getUnitNum());
+					for (int u = 0; u < buffer.getUnitNum(); u++) {
+						byte bytes[] = buffer.getText(u).getBytes("UTF-8");
+						out.writeUTF(buffer.getFileName(u));
+						out.writeInt(bytes.length);
+						out.write(bytes);
+					}
+				}
+				out.flush();
+			}
+			socket.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+}
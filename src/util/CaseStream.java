@@ -0,0 +1,452 @@
+package util;
+
+import simulation.Case;
+import simulation.RunScheduler;
+
+import java.io.FileInputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+public class CaseStream implements Iterator<Case> {
+	/**
+	 * the case children which can be swept
+	 */
+	private static final String CASE_SWEEPS[] = { "runs", "bias", "delta",
+			"tau" };
+	/**
+	 * the agent and race children which can be swept
+	 */
+	private static final String AGENT_SWEEPS[] = { "num", "power",
+			"constraint" };
+	/**
+	 * the swept elements whose values are already in the output file names
+	 */
+	private static final String NAMED_SWEEPS[] = { "bias", "delta",
+			"constraint" };
+
+	private FileInputStream myInput;
+	private XMLStreamReader myReader;
+	private DocumentBuilder myBuilder;
+	/**
+	 * the current case node, whose swept elements are overwritten by the
+	 * values of each combination in turn
+	 */
+	private Element myCaseNode;
+	private ArrayList<Element> mySweepNodes;
+	/**
+	 * for each swept element, the listed values, or null for a range
+	 */
+	private String myLists[][];
+	private BigDecimal myFroms[];
+	private BigDecimal mySteps[];
+	private int myCounts[];
+	/**
+	 * the agent and race nodes of the current case and their given types
+	 */
+	private ArrayList<Element> myTypedNodes;
+	private ArrayList<String> myTypes;
+	/**
+	 * the value index of each swept element in the next combination, null if
+	 * all the combinations of the current case have been returned
+	 */
+	private int myIndices[];
+
+	/**
+	 * Create a stream of the cases in the given config xml file. The file is
+	 * parsed incrementally: one case node is held in memory at a time, and its
+	 * sweeps are expanded into cases one by one on demand, so neither the
+	 * memory use nor the startup time depends on the number of cases.
+	 * 
+	 * A number in &lt;runs&gt;, &lt;bias&gt;, &lt;delta&gt; or &lt;tau&gt; of
+	 * a case, or in &lt;num&gt;, &lt;power&gt; or &lt;constraint&gt; of an
+	 * agent or a race, can be replaced by a sweep, either &lt;range from="a"
+	 * to="b" step="s"/&gt; for a, a+s, a+2s, ... up to b inclusive, or
+	 * &lt;list&gt;v1 v2 ...&lt;/list&gt; for the given values. A case with
+	 * sweeps stands for one case per combination of the swept values, in the
+	 * order of nested loops with the first sweep outermost.
+	 * 
+	 * &lt;threads&gt;, &lt;journal&gt; and &lt;scheduler&gt; are applied
+	 * before the first case, wherever they are in the file.
+	 * 
+	 * @param xmlFileName
+	 *            a string, which directs to the input config xml file
+	 */
+	public CaseStream(String xmlFileName) {
+		this(xmlFileName, true);
+	}
+
+	/**
+	 * Same as above, but &lt;threads&gt;, &lt;journal&gt; and
+	 * &lt;scheduler&gt; are only applied if the given flag is true, e.g. they
+	 * are ignored when the cases are only inspected, so that no journal is
+	 * opened and no output file is truncated.
+	 * 
+	 * @param xmlFileName
+	 *            a string, which directs to the input config xml file
+	 * @param isApplyingSettings
+	 *            a boolean, which indicates if the settings outside the cases
+	 *            are applied
+	 */
+	public CaseStream(String xmlFileName, boolean isApplyingSettings) {
+		this.myIndices = null;
+		try {
+			DocumentBuilderFactory dbFactory = DocumentBuilderFactory
+					.newInstance();
+			this.myBuilder = dbFactory.newDocumentBuilder();
+			XMLInputFactory xmlFactory = XMLInputFactory.newInstance();
+			xmlFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+			// optional number of worker threads for parallel work, optional
+			// journal to resume from, and optional scheduler of the runs
+			FileInputStream input = new FileInputStream(xmlFileName);
+			XMLStreamReader reader = xmlFactory.createXMLStreamReader(input);
+			while (isApplyingSettings && reader.hasNext()) {
+				if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+					continue;
+				}
+				if (reader.getLocalName().equals("threads")) {
+					ThreadPool.setThreadNum(Integer.parseInt(reader
+							.getElementText().trim()));
+				} else if (reader.getLocalName().equals("journal")) {
+					Journal.open(reader.getElementText().trim());
+				} else if (reader.getLocalName().equals("scheduler")) {
+					readScheduler(reader);
+				}
+			}
+			reader.close();
+			input.close();
+			this.myInput = new FileInputStream(xmlFileName);
+			this.myReader = xmlFactory.createXMLStreamReader(this.myInput);
+		} catch (Exception e) {
+			if (ConfigReader.isChecking()) {
+				throw new IllegalArgumentException(e.toString(), e);
+			}
+			e.printStackTrace();
+			this.myReader = null;
+		}
+	}
+
+	/**
+	 * Read the settings of the run scheduler, i.e. &lt;workers&gt;, the number
+	 * of runs simulated at the same time, and &lt;budget&gt;, the memory
+	 * budget in megabytes, until the end tag of &lt;scheduler&gt;.
+	 * 
+	 * @param reader
+	 *            a reader at the start tag of &lt;scheduler&gt;
+	 * @throws Exception
+	 *             if the file can not be parsed
+	 * @see RunScheduler
+	 */
+	private static void readScheduler(XMLStreamReader reader) throws Exception {
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.END_ELEMENT
+					&& reader.getLocalName().equals("scheduler")) {
+				return;
+			}
+			if (event != XMLStreamConstants.START_ELEMENT) {
+				continue;
+			}
+			if (reader.getLocalName().equals("workers")) {
+				RunScheduler.setWorkerNum(Integer.parseInt(reader
+						.getElementText().trim()));
+			} else if (reader.getLocalName().equals("budget")) {
+				RunScheduler.setBudget(Integer.parseInt(reader
+						.getElementText().trim()));
+			} else {
+				System.out.println("WARNING : unknown scheduler setting "
+						+ reader.getLocalName());
+			}
+		}
+	}
+
+	/**
+	 * Return true if there is one more case, reading the next case node from
+	 * the file if all the combinations of the current one have been returned.
+	 */
+	@Override
+	public boolean hasNext() {
+		while (this.myIndices == null) {
+			if (!this.readCaseNode()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Return the next case, i.e. the current case node with the swept values
+	 * of the next combination.
+	 */
+	@Override
+	public Case next() {
+		if (!this.hasNext()) {
+			throw new NoSuchElementException();
+		}
+		String suffix = "";
+		String typeSuffixes[] = new String[this.myTypedNodes.size()];
+		for (int i = 0; i < typeSuffixes.length; i++) {
+			typeSuffixes[i] = "";
+		}
+		for (int d = 0; d < this.mySweepNodes.size(); d++) {
+			Element sweepNode = this.mySweepNodes.get(d);
+			String value = this.getValueOf(d, this.myIndices[d]);
+			sweepNode.setTextContent(value);
+			if (contains(NAMED_SWEEPS, sweepNode.getTagName())) {
+				continue;
+			}
+			// tell the output files apart by the agent types
+			String tag = "_" + sweepNode.getTagName() + value;
+			int typedIndex = this.myTypedNodes.indexOf(sweepNode
+					.getParentNode());
+			if (typedIndex >= 0) {
+				typeSuffixes[typedIndex] += tag;
+			} else {
+				suffix += tag;
+			}
+		}
+		for (int i = 0; i < typeSuffixes.length; i++) {
+			this.myTypedNodes.get(i).setAttribute("type",
+					this.myTypes.get(i) + typeSuffixes[i] + suffix);
+		}
+		// move on to the next combination, the last sweep fastest
+		int d = this.myIndices.length - 1;
+		while (d >= 0 && ++this.myIndices[d] == this.myCounts[d]) {
+			this.myIndices[d--] = 0;
+		}
+		if (d < 0) {
+			this.myIndices = null;
+		}
+		return ConfigReader.constructCase(this.myCaseNode);
+	}
+
+	/**
+	 * Cases can not be removed from the stream.
+	 */
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Read the next case node from the file into memory and find its sweeps.
+	 * 
+	 * @return false if there is no more case node
+	 */
+	private boolean readCaseNode() {
+		if (this.myReader == null) {
+			return false;
+		}
+		try {
+			while (this.myReader.hasNext()) {
+				if (this.myReader.next() == XMLStreamConstants.START_ELEMENT
+						&& this.myReader.getLocalName().equals("case")) {
+					Document doc = this.myBuilder.newDocument();
+					this.myCaseNode = this.readElement(doc);
+					this.findSweeps();
+					return true;
+				}
+			}
+			this.myReader.close();
+			this.myInput.close();
+		} catch (Exception e) {
+			if (ConfigReader.isChecking()) {
+				throw new IllegalArgumentException(e.toString(), e);
+			}
+			e.printStackTrace();
+		}
+		this.myReader = null;
+		return false;
+	}
+
+	/**
+	 * Read the element at the current start tag, including its attributes and
+	 * all its children, and stop at its end tag.
+	 * 
+	 * @param doc
+	 *            a document, which creates the nodes
+	 * @return an element object
+	 * @throws Exception
+	 *             if the file can not be parsed
+	 */
+	private Element readElement(Document doc) throws Exception {
+		Element element = doc.createElement(this.myReader.getLocalName());
+		for (int i = 0; i < this.myReader.getAttributeCount(); i++) {
+			element.setAttribute(this.myReader.getAttributeLocalName(i),
+					this.myReader.getAttributeValue(i));
+		}
+		while (true) {
+			int event = this.myReader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				element.appendChild(this.readElement(doc));
+			} else if (event == XMLStreamConstants.CHARACTERS
+					|| event == XMLStreamConstants.CDATA
+					|| event == XMLStreamConstants.SPACE) {
+				element.appendChild(doc.createTextNode(this.myReader.getText()));
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				return element;
+			}
+		}
+	}
+
+	/**
+	 * Find the sweeps of the current case node, record their values, and
+	 * start from the first combination.
+	 */
+	private void findSweeps() {
+		this.mySweepNodes = new ArrayList<Element>();
+		this.myTypedNodes = new ArrayList<Element>();
+		this.myTypes = new ArrayList<String>();
+		for (Node child = this.myCaseNode.getFirstChild(); child != null; child = child
+				.getNextSibling()) {
+			if (child.getNodeType() != Node.ELEMENT_NODE) {
+				continue;
+			}
+			Element setting = (Element) child;
+			if (setting.getTagName().equals("agent")
+					|| setting.getTagName().equals("race")) {
+				this.myTypedNodes.add(setting);
+				this.myTypes.add(setting.getAttribute("type"));
+				for (Node attr = setting.getFirstChild(); attr != null; attr = attr
+						.getNextSibling()) {
+					if (attr.getNodeType() == Node.ELEMENT_NODE) {
+						this.addSweep((Element) attr, AGENT_SWEEPS);
+					}
+				}
+			} else {
+				this.addSweep(setting, CASE_SWEEPS);
+			}
+		}
+		int sweepNum = this.mySweepNodes.size();
+		this.myLists = new String[sweepNum][];
+		this.myFroms = new BigDecimal[sweepNum];
+		this.mySteps = new BigDecimal[sweepNum];
+		this.myCounts = new int[sweepNum];
+		for (int d = 0; d < sweepNum; d++) {
+			this.constructSweep(d, this.getSweepOf(this.mySweepNodes.get(d)));
+		}
+		this.myIndices = new int[sweepNum];
+		for (int d = 0; d < sweepNum; d++) {
+			if (this.myCounts[d] == 0) {
+				// an empty list, no case at all
+				this.myIndices = null;
+			}
+		}
+	}
+
+	/**
+	 * Record the given element as a sweep if it contains a range or a list.
+	 * 
+	 * @param setting
+	 *            an element of the case node
+	 * @param sweepTags
+	 *            the tags of the elements which can be swept
+	 */
+	private void addSweep(Element setting, String sweepTags[]) {
+		if (this.getSweepOf(setting) == null) {
+			return;
+		}
+		if (!contains(sweepTags, setting.getTagName())) {
+			ConfigReader.fail("ERROR : " + setting.getTagName()
+					+ " can not be swept");
+		}
+		this.mySweepNodes.add(setting);
+	}
+
+	/**
+	 * Record the values of the given sweep.
+	 * 
+	 * @param d
+	 *            the index of the sweep
+	 * @param sweep
+	 *            a range or a list element
+	 */
+	private void constructSweep(int d, Element sweep) {
+		if (sweep.getTagName().equals("list")) {
+			String values = sweep.getTextContent().trim();
+			this.myLists[d] = values.equals("") ? new String[0] : values
+					.split("[,\\s]+");
+			this.myCounts[d] = this.myLists[d].length;
+			return;
+		}
+		BigDecimal from = new BigDecimal(sweep.getAttribute("from").trim());
+		BigDecimal to = new BigDecimal(sweep.getAttribute("to").trim());
+		BigDecimal step = new BigDecimal(sweep.getAttribute("step").trim());
+		if (step.signum() <= 0 || to.compareTo(from) < 0) {
+			ConfigReader.fail("ERROR : invalid range from " + from + " to "
+					+ to + " step " + step);
+		}
+		this.myFroms[d] = from;
+		this.mySteps[d] = step;
+		this.myCounts[d] = to.subtract(from)
+				.divide(step, 0, RoundingMode.FLOOR).intValue() + 1;
+	}
+
+	/**
+	 * Return the value of the given sweep at the given index. The values of a
+	 * range are computed in decimal, so 0.1 + 2 * 0.1 is 0.3.
+	 * 
+	 * @param d
+	 *            the index of the sweep
+	 * @param index
+	 *            the index of the value
+	 * @return the value as a string
+	 */
+	private String getValueOf(int d, int index) {
+		if (this.myLists[d] != null) {
+			return this.myLists[d][index];
+		}
+		return this.myFroms[d].add(this.mySteps[d].multiply(new BigDecimal(
+				index))).toPlainString();
+	}
+
+	/**
+	 * Return the range or list child of the given element, or null if it has
+	 * none.
+	 * 
+	 * @param setting
+	 *            an element
+	 * @return the range or list child, or null
+	 */
+	private Element getSweepOf(Element setting) {
+		for (Node child = setting.getFirstChild(); child != null; child = child
+				.getNextSibling()) {
+			if (child.getNodeType() == Node.ELEMENT_NODE
+					&& (child.getNodeName().equals("range") || child
+							.getNodeName().equals("list"))) {
+				return (Element) child;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Return true if the given array contains the given tag.
+	 * 
+	 * @param tags
+	 *            an array of tags
+	 * @param tag
+	 *            a tag
+	 * @return true if the array contains the tag
+	 */
+	private static boolean contains(String tags[], String tag) {
+		for (String t : tags) {
+			if (t.equals(tag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
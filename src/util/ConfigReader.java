@@ -1,13 +1,15 @@
 package util;
 
 import simulation.Case;
+import simulation.PlanRace;
+import simulation.RunScheduler;
+import simulation.StoppingRule;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.TreeSet;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.DocumentBuilder;
-import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
 import org.w3c.dom.Node;
 import org.w3c.dom.NamedNodeMap;
@@ -23,6 +25,27 @@ import java.io.FileReader;
 import landscape.InfluenceMatrix;
 
 public class ConfigReader {
+	/**
+	 * the influence matrices read so far, by file name, so that the cases of
+	 * a sweep share one influence matrix object per file
+	 */
+	private static HashMap<String, InfluenceMatrix> myInfCache = new HashMap<String, InfluenceMatrix>();
+	/**
+	 * the modification time of each file in the cache when it was read, so
+	 * that a file which is changed is read again, e.g. by a daemon
+	 */
+	private static HashMap<String, Long> myInfTimes = new HashMap<String, Long>();
+	/**
+	 * true while the calling thread checks a config file, so that an error in
+	 * the file throws an exception instead of stopping the program
+	 */
+	private static ThreadLocal<Boolean> myIsChecking = new ThreadLocal<Boolean>() {
+		@Override
+		protected Boolean initialValue() {
+			return Boolean.FALSE;
+		}
+	};
+
 	/**
 	 * Parse the input config xml file. Convert each case node into a case
 	 * object and return a list of those case objects
@@ -33,26 +56,116 @@ public class ConfigReader {
 	 */
 	public static ArrayList<Case> read(String xmlFileName) {
 		ArrayList<Case> result = new ArrayList<Case>();
+		Iterator<Case> cases = stream(xmlFileName);
+		while (cases.hasNext()) {
+			result.add(cases.next());
+		}
+		return result;
+	}
+
+	/**
+	 * Parse the input config xml file incrementally. Return the case objects
+	 * one by one, expanding the sweeps of each case node on demand.
+	 * 
+	 * @param xmlFileName
+	 *            a string, which directs to the input config xml file
+	 * @return an iterator of case objects
+	 * @see CaseStream
+	 */
+	public static Iterator<Case> stream(String xmlFileName) {
+		return new CaseStream(xmlFileName);
+	}
+
+	/**
+	 * Same as above, but the settings outside the cases (&lt;threads&gt;,
+	 * &lt;journal&gt; and &lt;scheduler&gt;) are only applied if the given
+	 * flag is true.
+	 * 
+	 * @param xmlFileName
+	 *            a string, which directs to the input config xml file
+	 * @param isApplyingSettings
+	 *            a boolean, which indicates if the settings are applied
+	 * @return an iterator of case objects
+	 * @see CaseStream
+	 */
+	public static Iterator<Case> stream(String xmlFileName,
+			boolean isApplyingSettings) {
+		return new CaseStream(xmlFileName, isApplyingSettings);
+	}
+
+	/**
+	 * Parse all the cases of the input config xml file without running them,
+	 * e.g. before a daemon runs the file, so that an error in the file throws
+	 * an exception instead of stopping the program. The settings outside the
+	 * cases are not applied, and their errors are not found.
+	 * 
+	 * @param xmlFileName
+	 *            a string, which directs to the input config xml file
+	 * @return the number of cases in the file
+	 * @throws IllegalArgumentException
+	 *             if the file can not be read or a case is invalid
+	 */
+	public static int check(String xmlFileName) {
+		myIsChecking.set(Boolean.TRUE);
 		try {
-			File fXmlFile = new File(xmlFileName);
-			DocumentBuilderFactory dbFactory = DocumentBuilderFactory
-					.newInstance();
-			DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-			Document doc = dBuilder.parse(fXmlFile);
-			// reference -
-			// http://www.mkyong.com/java/how-to-read-xml-file-in-java-dom-parser/
-			// read this -
-			// http://stackoverflow.com/questions/13786607/normalization-in-dom-parsing-with-java-how-does-it-work
-			doc.getDocumentElement().normalize();
-			NodeList caseList = doc.getElementsByTagName("case");
-
-			for (int i = 0; i < caseList.getLength(); i++) {
-				result.add(constructCase(caseList.item(i)));
+			int caseNum = 0;
+			Iterator<Case> cases = stream(xmlFileName, false);
+			while (cases.hasNext()) {
+				cases.next();
+				caseNum++;
 			}
-		} catch (Exception e) {
-			e.printStackTrace();
+			return caseNum;
+		} finally {
+			myIsChecking.remove();
 		}
-		return result;
+	}
+
+	/**
+	 * Stop the program with the given error message, or throw an exception
+	 * with the message if the calling thread checks a config file.
+	 * 
+	 * @param message
+	 *            a string, the error message
+	 * @throws IllegalArgumentException
+	 *             if the calling thread checks a config file
+	 */
+	public static void fail(String message) {
+		if (myIsChecking.get()) {
+			throw new IllegalArgumentException(message);
+		}
+		System.out.println(message);
+		System.exit(1);
+	}
+
+	/**
+	 * Return true if the calling thread checks a config file.
+	 */
+	static boolean isChecking() {
+		return myIsChecking.get();
+	}
+
+	/**
+	 * Return the influence matrix object of the given file, as in &lt;inf&gt;
+	 * of a case, e.g. to build a case from code.
+	 * 
+	 * @param infFileName
+	 *            a string, which directs to the file of the influence matrix
+	 * @return an influence matrix object according to the file
+	 */
+	public static InfluenceMatrix readInf(String infFileName) {
+		return getInf(infFileName);
+	}
+
+	/**
+	 * Set &lt;threads&gt;, &lt;journal&gt; and &lt;scheduler&gt; back to the
+	 * defaults, i.e. close the journal and run one run at a time on one
+	 * thread, e.g. before the next config file runs in the same process. The
+	 * cached influence matrices are kept.
+	 */
+	public static void resetSettings() {
+		ThreadPool.setThreadNum(1);
+		Journal.close();
+		RunScheduler.resetSettings();
 	}
 
 	/**
@@ -63,13 +176,19 @@ public class ConfigReader {
 	 *            file
 	 * @return a case object
 	 */
-	private static Case constructCase(Node caseNode) {
+	static Case constructCase(Node caseNode) {
 		int runs = -1;
 		InfluenceMatrix inf = null;
 		double bias = -1;
 		double delta = -1;
 		TreeSet<Integer> tauSet = new TreeSet<Integer>();
 		ArrayList<Agent> agentList = new ArrayList<Agent>();
+		String landscapeType = "full";
+		boolean isExact = false;
+		boolean isCommonRandom = false;
+		String starts = "uniform";
+		Element adaptive = null;
+		ArrayList<PlanRace> races = new ArrayList<PlanRace>();
 
 		NodeList settings = caseNode.getChildNodes();
 		for (int i = 0; i < settings.getLength(); i++) {
@@ -79,7 +198,7 @@ public class ConfigReader {
 				if (setting.getTagName().equals("runs")) {
 					runs = new Integer(setting.getTextContent().trim());
 				} else if (setting.getTagName().equals("inf")) {
-					inf = constructInf(setting.getTextContent().trim());
+					inf = getInf(setting.getTextContent().trim());
 				} else if (setting.getTagName().equals("bias")) {
 					bias = new Double(setting.getTextContent().trim());
 				} else if (setting.getTagName().equals("delta")) {
@@ -88,13 +207,188 @@ public class ConfigReader {
 					tauSet.add(new Integer(setting.getTextContent().trim()));
 				} else if (setting.getTagName().equals("agent")) {
 					agentList.add(constructAgent(setting, inf));
+				} else if (setting.getTagName().equals("landscape")) {
+					landscapeType = setting.getTextContent().trim();
+					if (!landscapeType.equals("full")
+							&& !landscapeType.equals("fused")
+							&& !landscapeType.equals("composite")
+							&& !landscapeType.equals("lazy")) {
+						fail("ERROR : unknown landscape type "
+								+ landscapeType);
+					}
+				} else if (setting.getTagName().equals("exact")) {
+					isExact = setting.getTextContent().trim()
+							.equalsIgnoreCase("true");
+				} else if (setting.getTagName().equals("crn")) {
+					isCommonRandom = setting.getTextContent().trim()
+							.equalsIgnoreCase("true");
+				} else if (setting.getTagName().equals("race")) {
+					races.add(constructRace(setting));
+				} else if (setting.getTagName().equals("adaptive")) {
+					adaptive = setting;
+				} else if (setting.getTagName().equals("starts")) {
+					starts = setting.getTextContent().trim();
+					if (!starts.equals("uniform")
+							&& !starts.equals("stratified")
+							&& !starts.equals("latin")) {
+						fail("ERROR : unknown start placement "
+								+ starts);
+					}
 				} else {
 					System.out.println("WARNING : unknown case element "
 							+ setting.getTagName());
 				}
 			}
 		}
-		return new Case(runs, inf, bias, delta, tauSet, agentList);
+		if (landscapeType.equals("fused") && inf != null
+				&& inf.getK() != inf.getN() - 1) {
+			System.out
+					.println("WARNING : fused fitness contribution table is meant for K = N - 1, given N = "
+							+ inf.getN() + " and K = " + inf.getK());
+		}
+		if (isExact) {
+			for (Agent agt : agentList) {
+				if (!agt.isSteepest()) {
+					System.out.println("WARNING : agent " + agt.getType()
+							+ " is not steepest, it is sampled in exact mode");
+				}
+			}
+		}
+		return new Case(runs, inf, bias, delta, tauSet, agentList,
+				landscapeType, isExact, isCommonRandom, starts,
+				adaptive == null ? null : constructStoppingRule(adaptive, runs),
+				races);
+	}
+
+	/**
+	 * Convert a race node to a plan race object. A race node has a type like
+	 * an agent node, and the same children as an agent node except the plan,
+	 * plus the plan space and the settings of the race.
+	 * 
+	 * @param raceNode
+	 *            an element, which represents a race node in the config xml
+	 *            file
+	 * @return a plan race object
+	 */
+	private static PlanRace constructRace(Element raceNode) {
+		String raceType = raceNode.getAttribute("type");
+		if (raceType.equals("")) {
+			fail("ERROR : race type is missing");
+		}
+		int num = -1;
+		int power = -1;
+		double constraint = 1;
+		boolean isAveraging = false;
+		boolean isExhaustive = false;
+		boolean isSteepest = false;
+		String space = "partitions";
+		int sampleSize = 0;
+		int batchSize = 5;
+		double confidence = 0.95;
+		boolean isHalving = true;
+
+		NodeList attrList = raceNode.getChildNodes();
+		for (int i = 0; i < attrList.getLength(); i++) {
+			Node attrNode = attrList.item(i);
+			if (attrNode.getNodeType() == Node.ELEMENT_NODE) {
+				Element attr = (Element) attrNode;
+				String value = attr.getTextContent().trim();
+				if (attr.getTagName().equals("num")) {
+					num = Integer.parseInt(value);
+				} else if (attr.getTagName().equals("power")) {
+					power = Integer.parseInt(value);
+				} else if (attr.getTagName().equals("constraint")) {
+					constraint = Double.parseDouble(value);
+				} else if (attr.getTagName().equals("averaging")) {
+					isAveraging = value.equalsIgnoreCase("true");
+				} else if (attr.getTagName().equals("exhaustive")) {
+					isExhaustive = value.equalsIgnoreCase("true");
+				} else if (attr.getTagName().equals("steepest")) {
+					isSteepest = value.equalsIgnoreCase("true");
+				} else if (attr.getTagName().equals("space")) {
+					space = value;
+				} else if (attr.getTagName().equals("sample")) {
+					sampleSize = Integer.parseInt(value);
+				} else if (attr.getTagName().equals("batch")) {
+					batchSize = Integer.parseInt(value);
+				} else if (attr.getTagName().equals("confidence")) {
+					confidence = Double.parseDouble(value);
+				} else if (attr.getTagName().equals("halving")) {
+					isHalving = value.equalsIgnoreCase("true");
+				} else {
+					System.out.println("WARNING : unknown race attribute "
+							+ attr.getTagName());
+				}
+			}
+		}
+		return new PlanRace(raceType, num, power, constraint, isAveraging,
+				isExhaustive, isSteepest, space, sampleSize, batchSize,
+				confidence, isHalving);
+	}
+
+	/**
+	 * Return a stopping rule according to the given adaptive node. The batch
+	 * size is 10, the confidence level is 0.95 and the maximum number of runs
+	 * is the given number of runs, unless they are given.
+	 * 
+	 * @param adaptiveNode
+	 *            an adaptive node in the config xml file
+	 * @param runs
+	 *            the number of runs of the case
+	 * @return a stopping rule object
+	 */
+	private static StoppingRule constructStoppingRule(Element adaptiveNode,
+			int runs) {
+		int batchSize = 10;
+		double width = 0;
+		boolean isComparing = false;
+		double confidence = 0.95;
+		int maxRuns = runs;
+
+		NodeList attrList = adaptiveNode.getChildNodes();
+		for (int i = 0; i < attrList.getLength(); i++) {
+			Node attrNode = attrList.item(i);
+			if (attrNode.getNodeType() == Node.ELEMENT_NODE) {
+				Element attr = (Element) attrNode;
+				if (attr.getTagName().equals("batch")) {
+					batchSize = Integer.parseInt(attr.getTextContent().trim());
+				} else if (attr.getTagName().equals("width")) {
+					width = Double.parseDouble(attr.getTextContent().trim());
+				} else if (attr.getTagName().equals("compare")) {
+					isComparing = attr.getTextContent().trim()
+							.equalsIgnoreCase("true");
+				} else if (attr.getTagName().equals("confidence")) {
+					confidence = Double.parseDouble(attr.getTextContent().trim());
+				} else if (attr.getTagName().equals("max")) {
+					maxRuns = Integer.parseInt(attr.getTextContent().trim());
+				} else {
+					System.out.println("WARNING : unknown adaptive attribute "
+							+ attr.getTagName());
+				}
+			}
+		}
+		return new StoppingRule(batchSize, width, isComparing, confidence,
+				maxRuns);
+	}
+
+	/**
+	 * Return the influence matrix object of the given file, which is read
+	 * only once, unless the file is modified after it was read.
+	 * 
+	 * @param infFileName
+	 *            a string, which directs to the file of the influence matrix
+	 * @return an influence matrix object according to the file indicated by the
+	 *         given file name
+	 */
+	private static InfluenceMatrix getInf(String infFileName) {
+		InfluenceMatrix inf = myInfCache.get(infFileName);
+		long time = new File(infFileName).lastModified();
+		if (inf == null || myInfTimes.get(infFileName) != time) {
+			inf = constructInf(infFileName);
+			myInfCache.put(infFileName, inf);
+			myInfTimes.put(infFileName, time);
+		}
+		return inf;
 	}
 
 	/**
@@ -127,6 +421,9 @@ public class ConfigReader {
 			}
 			fRead.close();
 		} catch (Exception e) {
+			if (isChecking()) {
+				throw new IllegalArgumentException(e.toString(), e);
+			}
 			e.printStackTrace();
 		}
 		return new InfluenceMatrix(matrix);
@@ -159,8 +456,7 @@ public class ConfigReader {
 			}
 		}
 		if (agentType.equals("")) {
-			System.out.println("ERROR : agent type is missing");
-			System.exit(1);
+			fail("ERROR : agent type is missing");
 		}
 		// parse the rest children nodes
 		int num = -1;
@@ -168,6 +464,8 @@ public class ConfigReader {
 		boolean isAveraging = false;
 		double constraint = -1;
 		boolean isExhaustive = false;
+		boolean isPopulation = false;
+		boolean isSteepest = false;
 		// boolean isRefactoringAll = false;
 		ArrayList<HashSet<Integer>> plan = new ArrayList<HashSet<Integer>>();
 
@@ -190,6 +488,12 @@ public class ConfigReader {
 				} else if (attr.getTagName().equals("exhaustive")) {
 					isExhaustive = attr.getTextContent().trim()
 							.equalsIgnoreCase("true");
+				} else if (attr.getTagName().equals("population")) {
+					isPopulation = attr.getTextContent().trim()
+							.equalsIgnoreCase("true");
+				} else if (attr.getTagName().equals("steepest")) {
+					isSteepest = attr.getTextContent().trim()
+							.equalsIgnoreCase("true");
 				}
 				// else if (attr.getTagName().equals("refactoring")) {
 				// isRefactoringAll = attr.getTextContent().trim()
@@ -202,7 +506,7 @@ public class ConfigReader {
 			}
 		}
 		return new Agent(inf, plan, power, agentType, num, constraint,
-				isAveraging, isExhaustive/*
+				isAveraging, isExhaustive, isPopulation, isSteepest/*
 										 * , isRefactoringAll
 										 */);
 	}
@@ -0,0 +1,246 @@
+package util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.HashSet;
+
+public class Journal {
+	private static String journalName = null;
+	private static FileOutputStream journalStream = null;
+	/**
+	 * the index of the current case in the config file, after the sweeps are
+	 * expanded
+	 */
+	private static int currentCase = -1;
+	/**
+	 * the completed units, each is "case\tseed\tfile"
+	 */
+	private static HashSet<String> doneUnits = new HashSet<String>();
+	/**
+	 * the completed runs, each is "case\tseed"
+	 */
+	private static HashSet<String> doneRuns = new HashSet<String>();
+
+	/**
+	 * Open the given journal file, which records the progress of the
+	 * simulation, so that an interrupted simulation can be resumed. If the
+	 * journal file exists, the simulation is resumed from it: each output file
+	 * in the journal is truncated to its length at the last record, i.e. the
+	 * partial output of an interrupted unit is removed, and the completed
+	 * units and runs are skipped from now on.
+	 * 
+	 * A unit is the output of one agent type in one run of one case, i.e.
+	 * from OutputWriter.setOutputFile to OutputWriter.close. The journal has
+	 * one line for the beginning and one line for the end of each unit, with
+	 * the length of the output file at that time, and one line for each
+	 * completed run.
+	 * 
+	 * @param fileName
+	 *            a string, which directs to the journal file
+	 */
+	public static void open(String fileName) {
+		journalName = fileName;
+		HashMap<String, Long> lengths = new HashMap<String, Long>();
+		try {
+			File journal = new File(fileName);
+			if (journal.exists()) {
+				byte bytes[] = Files.readAllBytes(journal.toPath());
+				// a record cut by the interruption is removed
+				int length = bytes.length;
+				while (length > 0 && bytes[length - 1] != '\n') {
+					length--;
+				}
+				truncate(fileName, length);
+				String lines[] = new String(bytes, 0, length, "UTF-8")
+						.split("\n");
+				for (String line : lines) {
+					String tokens[] = line.split("\t");
+					if (tokens[0].equals("R")) {
+						doneRuns.add(tokens[1] + "\t" + tokens[2]);
+					} else if (tokens[0].equals("B") || tokens[0].equals("U")) {
+						lengths.put(tokens[3], Long.parseLong(tokens[4]));
+						if (tokens[0].equals("U")) {
+							doneUnits.add(tokens[1] + "\t" + tokens[2] + "\t"
+									+ tokens[3]);
+						}
+					}
+				}
+				for (String outputName : lengths.keySet()) {
+					truncate(outputName, lengths.get(outputName));
+				}
+				System.out.println("resume from " + fileName + " : "
+						+ doneRuns.size() + " runs and " + doneUnits.size()
+						+ " units done");
+			}
+			journalStream = new FileOutputStream(fileName, true);
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Return true if a journal is open.
+	 * 
+	 * @return true if a journal is open
+	 */
+	public static boolean isOpen() {
+		return journalStream != null;
+	}
+
+	/**
+	 * Close the journal if one is open, and forget the completed units and
+	 * runs, e.g. before the next config runs in the same process.
+	 */
+	public static void close() {
+		try {
+			if (journalStream != null) {
+				journalStream.close();
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		journalName = null;
+		journalStream = null;
+		currentCase = -1;
+		doneUnits.clear();
+		doneRuns.clear();
+	}
+
+	/**
+	 * Set the index of the case which runs from now on.
+	 * 
+	 * @param caseIndex
+	 *            the index of a case in the config file, after the sweeps are
+	 *            expanded
+	 */
+	public static void setCase(int caseIndex) {
+		currentCase = caseIndex;
+	}
+
+	/**
+	 * Return true if the run of the current case with the given seed is
+	 * completed according to the journal.
+	 * 
+	 * @param seed
+	 *            a seed, i.e. the run number
+	 * @return true if the run is completed
+	 */
+	public static boolean isRunDone(int seed) {
+		return doneRuns.contains(currentCase + "\t" + seed);
+	}
+
+	/**
+	 * Record that the run of the current case with the given seed is
+	 * completed.
+	 * 
+	 * @param seed
+	 *            a seed, i.e. the run number
+	 */
+	public static void endRun(int seed) {
+		if (!isOpen()) {
+			return;
+		}
+		doneRuns.add(currentCase + "\t" + seed);
+		record("R\t" + currentCase + "\t" + seed);
+	}
+
+	/**
+	 * Record the beginning of a unit, i.e. the output of the current case and
+	 * seed to the given file, unless the unit is completed according to the
+	 * journal.
+	 * 
+	 * @param outputName
+	 *            a string, which directs to the output file
+	 * @return true if the unit is completed, so its output is skipped
+	 */
+	public static boolean beginUnit(String outputName) {
+		return beginUnit(outputName, RandomGen.getSeed());
+	}
+
+	/**
+	 * Same as above, but for the given seed instead of the current seed, e.g.
+	 * when the output of a run on another thread is committed.
+	 * 
+	 * @param outputName
+	 *            a string, which directs to the output file
+	 * @param seed
+	 *            a seed, i.e. the run number
+	 * @return true if the unit is completed, so its output is skipped
+	 */
+	public static boolean beginUnit(String outputName, int seed) {
+		String unit = currentCase + "\t" + seed + "\t" + outputName;
+		if (doneUnits.contains(unit)) {
+			return true;
+		}
+		record("B\t" + unit + "\t" + new File(outputName).length());
+		return false;
+	}
+
+	/**
+	 * Record the end of the unit of the current case and seed to the given
+	 * file, after the file is synchronised with the disk.
+	 * 
+	 * @param outputName
+	 *            a string, which directs to the output file
+	 */
+	public static void endUnit(String outputName) {
+		endUnit(outputName, RandomGen.getSeed());
+	}
+
+	/**
+	 * Same as above, but for the given seed instead of the current seed.
+	 * 
+	 * @param outputName
+	 *            a string, which directs to the output file
+	 * @param seed
+	 *            a seed, i.e. the run number
+	 */
+	public static void endUnit(String outputName, int seed) {
+		String unit = currentCase + "\t" + seed + "\t" + outputName;
+		doneUnits.add(unit);
+		record("U\t" + unit + "\t" + new File(outputName).length());
+	}
+
+	/**
+	 * Append a record to the journal and synchronise it with the disk.
+	 * 
+	 * @param record
+	 *            a line without the new line character
+	 */
+	private static void record(String record) {
+		try {
+			journalStream.write((record + "\n").getBytes("UTF-8"));
+			journalStream.getFD().sync();
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.out.println("ERROR : can not write to journal "
+					+ journalName);
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Truncate the given file to the given length, if it is longer.
+	 * 
+	 * @param fileName
+	 *            a string, which directs to the file
+	 * @param length
+	 *            the length in bytes
+	 * @throws Exception
+	 *             if the file can not be truncated
+	 */
+	private static void truncate(String fileName, long length)
+			throws Exception {
+		File file = new File(fileName);
+		if (!file.exists() || file.length() <= length) {
+			return;
+		}
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(length);
+		raf.close();
+	}
+}
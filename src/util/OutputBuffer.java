@@ -0,0 +1,106 @@
+package util;
+
+import java.util.ArrayList;
+
+public class OutputBuffer {
+	/**
+	 * the output file of each unit, in the order the units are written
+	 */
+	private ArrayList<String> myFileNames;
+	private ArrayList<StringBuilder> myTexts;
+	/**
+	 * the total number of characters in the buffer
+	 */
+	private long myLength;
+
+	/**
+	 * Create an empty buffer, which keeps the output of a simulation in
+	 * memory instead of writing it to files, so that the simulation can run
+	 * on another thread and its output is committed later in order.
+	 * 
+	 * @see OutputWriter#capture(OutputBuffer)
+	 * @see OutputWriter#commit(OutputBuffer, int)
+	 */
+	public OutputBuffer() {
+		this.myFileNames = new ArrayList<String>();
+		this.myTexts = new ArrayList<StringBuilder>();
+		this.myLength = 0;
+	}
+
+	/**
+	 * Start a new unit, i.e. the output to the given file until the next
+	 * unit starts.
+	 * 
+	 * @param fileName
+	 *            a string, which directs to the file to be written (append) to
+	 */
+	void begin(String fileName) {
+		this.myFileNames.add(fileName);
+		this.myTexts.add(new StringBuilder());
+	}
+
+	/**
+	 * Append the given text to the current unit.
+	 * 
+	 * @param text
+	 *            a string, which contains the content to be written
+	 */
+	void append(String text) {
+		this.myTexts.get(this.myTexts.size() - 1).append(text);
+		this.myLength += text.length();
+	}
+
+	/**
+	 * Add a complete unit with the given output, e.g. when the output is
+	 * received from another process.
+	 * 
+	 * @param fileName
+	 *            a string, which directs to the file to be written (append) to
+	 * @param text
+	 *            a string, which contains the content to be written
+	 */
+	public void add(String fileName, String text) {
+		this.begin(fileName);
+		this.append(text);
+	}
+
+	/**
+	 * Return the number of units in the buffer.
+	 * 
+	 * @return the number of units
+	 */
+	public int getUnitNum() {
+		return this.myFileNames.size();
+	}
+
+	/**
+	 * Return the output file of the given unit.
+	 * 
+	 * @param unit
+	 *            an integer between 0 and the number of units - 1 (inclusive)
+	 * @return a string, which directs to the output file
+	 */
+	public String getFileName(int unit) {
+		return this.myFileNames.get(unit);
+	}
+
+	/**
+	 * Return the output of the given unit.
+	 * 
+	 * @param unit
+	 *            an integer between 0 and the number of units - 1 (inclusive)
+	 * @return the output of the unit
+	 */
+	public String getText(int unit) {
+		return this.myTexts.get(unit).toString();
+	}
+
+	/**
+	 * Return the estimated bytes which the buffer takes in memory.
+	 * 
+	 * @return the estimated bytes of the buffer
+	 */
+	public long getBytes() {
+		return 2 * this.myLength;
+	}
+}
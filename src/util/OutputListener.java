@@ -0,0 +1,21 @@
+package util;
+
+public interface OutputListener {
+	/**
+	 * Start a new unit, i.e. the output to the given file until the next unit
+	 * starts.
+	 * 
+	 * @param fileName
+	 *            a string, which directs to the file the output would be
+	 *            written to
+	 */
+	public void begin(String fileName);
+
+	/**
+	 * Receive one line of output of the current unit.
+	 * 
+	 * @param line
+	 *            a string without the new line character
+	 */
+	public void line(String line);
+}
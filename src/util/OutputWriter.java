@@ -1,26 +1,147 @@
 package util;
 
-import java.io.FileWriter;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
 import java.io.BufferedWriter;
 
 public class OutputWriter {
 	private static String fileName = "";
-	private static FileWriter fileWriter = null;
+	private static FileOutputStream fileStream = null;
 	private static BufferedWriter bufWriter = null;
+	private static boolean isDiscarding = false;
+	/**
+	 * true if the current unit is completed according to the journal, so its
+	 * output is skipped
+	 */
+	private static boolean isSkipping = false;
+	/**
+	 * the buffer of each thread which captures its output instead of writing
+	 * it, see capture
+	 */
+	private static ThreadLocal<OutputBuffer> myCapture = new ThreadLocal<OutputBuffer>();
+	/**
+	 * the listener of each thread which receives its output line by line
+	 * instead of writing it, see listen
+	 */
+	private static ThreadLocal<OutputListener> myListener = new ThreadLocal<OutputListener>();
+
+	/**
+	 * Capture the output of the calling thread into the given buffer instead
+	 * of writing it to files, or stop capturing if null is given. The other
+	 * threads are not affected.
+	 * 
+	 * @param buffer
+	 *            an output buffer, or null
+	 */
+	public static void capture(OutputBuffer buffer) {
+		if (buffer == null) {
+			myCapture.remove();
+		} else {
+			myCapture.set(buffer);
+		}
+	}
+
+	/**
+	 * Give the output of the calling thread to the given listener line by
+	 * line instead of writing it to files, or stop listening if null is
+	 * given. The other threads are not affected, and nothing is written to
+	 * the journal.
+	 * 
+	 * @param listener
+	 *            an output listener, or null
+	 */
+	public static void listen(OutputListener listener) {
+		if (listener == null) {
+			myListener.remove();
+		} else {
+			myListener.set(listener);
+		}
+	}
+
+	/**
+	 * Write the output in the given buffer to its files, in the order it was
+	 * captured. With a journal, the units of the current case and the given
+	 * seed which are completed according to it are skipped, and the others
+	 * are recorded as in setOutputFile and close.
+	 * 
+	 * @param buffer
+	 *            an output buffer
+	 * @param seed
+	 *            the run number under which the output was captured
+	 */
+	public static void commit(OutputBuffer buffer, int seed) {
+		for (int u = 0; u < buffer.getUnitNum(); u++) {
+			String unitName = buffer.getFileName(u);
+			if (Journal.isOpen() && Journal.beginUnit(unitName, seed)) {
+				continue;
+			}
+			try {
+				FileOutputStream unitStream = new FileOutputStream(unitName,
+						true);
+				BufferedWriter unitWriter = new BufferedWriter(
+						new OutputStreamWriter(unitStream));
+				unitWriter.write(buffer.getText(u));
+				unitWriter.flush();
+				if (Journal.isOpen()) {
+					unitStream.getFD().sync();
+					unitStream.close();
+					Journal.endUnit(unitName, seed);
+				} else {
+					unitStream.close();
+				}
+			} catch (Exception e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+		}
+	}
+
+	/**
+	 * Set whether the writer discards everything instead of writing to files,
+	 * e.g. when only the statistics of the simulations are needed
+	 * 
+	 * @param discarding
+	 *            a boolean, true for discarding and false for writing
+	 */
+	public static void setDiscarding(boolean discarding) {
+		isDiscarding = discarding;
+	}
 
 	/**
 	 * Set the writer's target file. If the given file name is already existed,
-	 * the writer appends new content to the file
+	 * the writer appends new content to the file. With a journal, the output
+	 * until close is skipped if it has been written before the simulation was
+	 * interrupted.
 	 * 
 	 * @param newName
 	 *            a string, which directs to the file to be written (append) to
+	 * @see Journal
 	 */
 
 	public static void setOutputFile(String newName) {
+		OutputListener listener = myListener.get();
+		if (listener != null) {
+			listener.begin(newName);
+			return;
+		}
+		OutputBuffer buffer = myCapture.get();
+		if (buffer != null) {
+			buffer.begin(newName);
+			return;
+		}
+		if (isDiscarding) {
+			return;
+		}
 		try {
 			fileName = newName;
-			fileWriter = new FileWriter(fileName, true);
-			bufWriter = new BufferedWriter(fileWriter);
+			if (Journal.isOpen()) {
+				isSkipping = Journal.beginUnit(fileName);
+				if (isSkipping) {
+					return;
+				}
+			}
+			fileStream = new FileOutputStream(fileName, true);
+			bufWriter = new BufferedWriter(new OutputStreamWriter(fileStream));
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -33,6 +154,19 @@ public class OutputWriter {
 	 *            a string, which contains the content to be written
 	 */
 	public static void writeLine(String line) {
+		OutputListener listener = myListener.get();
+		if (listener != null) {
+			listener.line(line);
+			return;
+		}
+		OutputBuffer buffer = myCapture.get();
+		if (buffer != null) {
+			buffer.append(line + "\n");
+			return;
+		}
+		if (isDiscarding || isSkipping) {
+			return;
+		}
 		try {
 			bufWriter.write(line + "\n");
 		} catch (Exception e) {
@@ -41,12 +175,60 @@ public class OutputWriter {
 	}
 
 	/**
-	 * Simply close the writer
+	 * Simply write a string to the target file
+	 * 
+	 * @param text
+	 *            a string, which contains the content to be written
+	 */
+	public static void write(String text) {
+		OutputListener listener = myListener.get();
+		if (listener != null) {
+			for (String line : text.split("\n")) {
+				if (line.length() > 0) {
+					listener.line(line);
+				}
+			}
+			return;
+		}
+		OutputBuffer buffer = myCapture.get();
+		if (buffer != null) {
+			buffer.append(text);
+			return;
+		}
+		if (isDiscarding || isSkipping) {
+			return;
+		}
+		try {
+			bufWriter.write(text);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Simply close the writer. With a journal, the file is synchronised with
+	 * the disk and the end of the unit is recorded.
 	 */
 	public static void close() {
+		if (myListener.get() != null || myCapture.get() != null) {
+			return;
+		}
+		if (isDiscarding) {
+			return;
+		}
+		if (isSkipping) {
+			isSkipping = false;
+			return;
+		}
 		try {
 			bufWriter.flush();
-			fileWriter.close();
+			if (Journal.isOpen()) {
+				fileStream.getFD().sync();
+				fileStream.close();
+				Journal.endUnit(fileName);
+			} else {
+				fileStream.close();
+			}
 		} catch (Exception e) {
 			e.printStackTrace();
 			System.out.println("Maybe there is no agent");
@@ -4,29 +4,39 @@ import random.*;
 
 public class RandomGen {
 	private final static long myMagicSeed = 900111;
-	private static int myCurrentSeed = -1;
+	/**
+	 * the run number of each thread, so that runs of different seeds can be
+	 * simulated at the same time on different threads
+	 */
+	private static ThreadLocal<Integer> myCurrentSeed = new ThreadLocal<Integer>() {
+		@Override
+		protected Integer initialValue() {
+			return -1;
+		}
+	};
 
 	/**
-	 * Global random generator object
+	 * Global random generator object of each thread
 	 */
-	public static MersenneTwisterFast randomGen = null;
+	private static ThreadLocal<MersenneTwisterFast> myRandomGen = new ThreadLocal<MersenneTwisterFast>();
 
 	/**
 	 * To avoid the correlation among continuous seeds, this method uses a fixed
 	 * seed to generate a sequence of random integers and takes the ith random
-	 * integer to be the actual seed, where i is the given seed.
+	 * integer to be the actual seed, where i is the given seed. The seed and
+	 * the global random generator belong to the calling thread.
 	 * 
 	 * @param seed
 	 *            an non-negative integer, which is actually the run number
 	 */
 	public static void setSeed(int seed) {
-		myCurrentSeed = seed;
-		randomGen = new MersenneTwisterFast(myMagicSeed);
+		myCurrentSeed.set(seed);
+		MersenneTwisterFast randomGen = new MersenneTwisterFast(myMagicSeed);
 		long newSeed = 0;
 		for (int i = 0; i < seed; i++) {
 			newSeed = randomGen.nextInt();
 		}
-		randomGen = new MersenneTwisterFast(newSeed);
+		myRandomGen.set(new MersenneTwisterFast(newSeed));
 	}
 
 	/**
@@ -35,6 +45,94 @@ public class RandomGen {
 	 * @return the run number instead of the actual seed
 	 */
 	public static int getSeed() {
-		return myCurrentSeed;
+		return myCurrentSeed.get();
+	}
+
+	/**
+	 * Return the global random generator of the calling thread, which is
+	 * null until the seed is set in the thread.
+	 * 
+	 * @return the global random generator
+	 */
+	public static MersenneTwisterFast getRandomGen() {
+		return myRandomGen.get();
+	}
+
+	/**
+	 * Return a copy of the current state of the global random generator.
+	 * 
+	 * @return a copy of the global random generator
+	 */
+	public static MersenneTwisterFast getState() {
+		return (MersenneTwisterFast) myRandomGen.get().clone();
+	}
+
+	/**
+	 * Restore the global random generator to the given state, which is kept
+	 * unchanged, so that it can be restored again. The seed is unchanged.
+	 * 
+	 * @param state
+	 *            a state returned by getState() under the current seed
+	 */
+	public static void setState(MersenneTwisterFast state) {
+		myRandomGen.set((MersenneTwisterFast) state.clone());
+	}
+
+	/**
+	 * Return a new random generator which is determined by the current seed
+	 * and the given stream and index only, independent of how many values
+	 * have been drawn from the global random generator. E.g., giving the
+	 * agent number as the index, the nth agents of different agent types get
+	 * the same random values.
+	 * 
+	 * @param stream
+	 *            an integer, which identifies the purpose of the random values
+	 * @param index
+	 *            an integer, which identifies the user of the random values
+	 * @return a new random generator
+	 */
+	public static MersenneTwisterFast createStream(int stream, int index) {
+		return createStream(myCurrentSeed.get(), stream, index);
+	}
+
+	/**
+	 * Same as above, but under the given run number instead of the current
+	 * seed, e.g. for the values which are generated on demand by other
+	 * threads.
+	 * 
+	 * @param seed
+	 *            an non-negative integer, which is actually the run number
+	 * @param stream
+	 *            an integer, which identifies the purpose of the random values
+	 * @param index
+	 *            an integer, which identifies the user of the random values
+	 * @return a new random generator
+	 */
+	public static MersenneTwisterFast createStream(int seed, int stream,
+			int index) {
+		return new MersenneTwisterFast(new int[] { (int) myMagicSeed, seed,
+				stream, index });
+	}
+
+	/**
+	 * Return a random double in [0, 1) which is determined by the given stream
+	 * seed and counter only. Unlike the global random generator, the values can
+	 * be generated in any order, and the same value is returned whenever the
+	 * same stream seed and counter are given. The bits are produced by the
+	 * SplitMix64 finalizer.
+	 * 
+	 * @param streamSeed
+	 *            a long, which identifies a stream of random values
+	 * @param counter
+	 *            a non-negative long, which indicates the position in the
+	 *            stream
+	 * @return a random double in [0, 1)
+	 */
+	public static double hashDouble(long streamSeed, long counter) {
+		long z = streamSeed + (counter + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z = z ^ (z >>> 31);
+		return (z >>> 11) * 0x1.0p-53;
 	}
 }
@@ -0,0 +1,120 @@
+package util;
+
+public class RunningStatistics {
+	private int myCount;
+	private double myMean;
+	private double mySquaredDeviationSum;
+
+	/**
+	 * Create an empty running statistics object, which keeps the count, mean
+	 * and variance of the values added so far without storing them (Welford's
+	 * algorithm).
+	 */
+	public RunningStatistics() {
+		this.myCount = 0;
+		this.myMean = 0.0;
+		this.mySquaredDeviationSum = 0.0;
+	}
+
+	/**
+	 * Add one value.
+	 * 
+	 * @param value
+	 *            a value
+	 */
+	public void add(double value) {
+		this.myCount++;
+		double deviation = value - this.myMean;
+		this.myMean += deviation / this.myCount;
+		this.mySquaredDeviationSum += deviation * (value - this.myMean);
+	}
+
+	/**
+	 * Return the number of values added.
+	 * 
+	 * @return the number of values added
+	 */
+	public int getCount() {
+		return this.myCount;
+	}
+
+	/**
+	 * Return the mean of the values added.
+	 * 
+	 * @return the mean of the values added
+	 */
+	public double getMean() {
+		return this.myMean;
+	}
+
+	/**
+	 * Return the sample variance of the values added, 0 for less than 2
+	 * values.
+	 * 
+	 * @return the sample variance of the values added
+	 */
+	public double getVariance() {
+		if (this.myCount < 2) {
+			return 0.0;
+		}
+		return this.mySquaredDeviationSum / (this.myCount - 1);
+	}
+
+	/**
+	 * Return the half width of the confidence interval of the mean at the
+	 * given confidence level, using the normal approximation. The half width
+	 * is infinite for less than 2 values.
+	 * 
+	 * @param confidence
+	 *            a value in (0, 1), e.g. 0.95
+	 * @return the half width of the confidence interval of the mean
+	 */
+	public double getHalfWidth(double confidence) {
+		if (this.myCount < 2) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return getNormalQuantile(0.5 + confidence / 2)
+				* Math.sqrt(this.getVariance() / this.myCount);
+	}
+
+	/**
+	 * Return the quantile of the standard normal distribution at the given
+	 * probability, by Acklam's rational approximation (relative error below
+	 * 1.2e-9).
+	 * 
+	 * @param p
+	 *            a probability in (0, 1)
+	 * @return the quantile of the standard normal distribution
+	 */
+	public static double getNormalQuantile(double p) {
+		final double a[] = { -3.969683028665376e+01, 2.209460984245205e+02,
+				-2.759285104469687e+02, 1.383577518672690e+02,
+				-3.066479806614716e+01, 2.506628277459239e+00 };
+		final double b[] = { -5.447609879822406e+01, 1.615858368580409e+02,
+				-1.556989798598866e+02, 6.680131188771972e+01,
+				-1.328068155288572e+01 };
+		final double c[] = { -7.784894002430293e-03, -3.223964580411365e-01,
+				-2.400758277161838e+00, -2.549732539343734e+00,
+				4.374664141464968e+00, 2.938163982698783e+00 };
+		final double d[] = { 7.784695709041462e-03, 3.224671290700398e-01,
+				2.445134137142996e+00, 3.754408661907416e+00 };
+		double q;
+		if (p < 0.02425) {
+			q = Math.sqrt(-2 * Math.log(p));
+			return (((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4])
+					* q + c[5])
+					/ ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+		}
+		if (p > 1 - 0.02425) {
+			q = Math.sqrt(-2 * Math.log(1 - p));
+			return -(((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4])
+					* q + c[5])
+					/ ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+		}
+		q = p - 0.5;
+		double r = q * q;
+		return (((((a[0] * r + a[1]) * r + a[2]) * r + a[3]) * r + a[4]) * r + a[5])
+				* q
+				/ (((((b[0] * r + b[1]) * r + b[2]) * r + b[3]) * r + b[4]) * r + 1);
+	}
+}
@@ -0,0 +1,96 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+public class ThreadPool {
+	private static int myThreadNum = 1;
+	private static ExecutorService myExecutor = null;
+
+	/**
+	 * Set the number of worker threads used for parallel work. 1 (the
+	 * default) means everything runs in the calling thread.
+	 * 
+	 * @param threadNum
+	 *            a positive integer, which indicates the number of threads
+	 */
+	public static synchronized void setThreadNum(int threadNum) {
+		if (threadNum <= 0) {
+			System.out
+					.println("ERROR thread number should be positive, given "
+							+ threadNum);
+			System.exit(1);
+		}
+		if (myExecutor != null && threadNum != myThreadNum) {
+			myExecutor.shutdown();
+			myExecutor = null;
+		}
+		myThreadNum = threadNum;
+	}
+
+	/**
+	 * Return the number of worker threads.
+	 * 
+	 * @return the number of worker threads
+	 */
+	public static int getThreadNum() {
+		return myThreadNum;
+	}
+
+	/**
+	 * Return true if there is more than one worker thread.
+	 * 
+	 * @return true if there is more than one worker thread
+	 */
+	public static boolean isParallel() {
+		return myThreadNum > 1;
+	}
+
+	/**
+	 * Run the given tasks on the worker threads, wait for all of them, and
+	 * return their results in the same order as the tasks. The worker threads
+	 * are daemon threads, so they do not keep the program alive.
+	 * 
+	 * @param tasks
+	 *            a list of tasks
+	 * @return a list of results, one for each task
+	 */
+	public static <T> ArrayList<T> invokeAll(List<? extends Callable<T>> tasks) {
+		ArrayList<T> result = new ArrayList<T>();
+		try {
+			for (Future<T> future : getExecutor().invokeAll(tasks)) {
+				result.add(future.get());
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+		return result;
+	}
+
+	/**
+	 * Return the executor of the worker threads, create it when called for
+	 * the first time.
+	 * 
+	 * @return the executor of the worker threads
+	 */
+	public static synchronized ExecutorService getExecutor() {
+		if (myExecutor == null) {
+			myExecutor = Executors.newFixedThreadPool(myThreadNum,
+					new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread t = new Thread(r);
+							t.setDaemon(true);
+							return t;
+						}
+					});
+		}
+		return myExecutor;
+	}
+}